@@ -0,0 +1,38 @@
+package net.opecko.http;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks like {@code org.openjdk.jmh.Main}, but writes the results as JSON to
+ * {@code jmh-result.json} unless {@code -rf} or {@code -rff} say otherwise, so every run leaves a
+ * file to compare against other commits.
+ */
+public final class BenchmarkMain {
+
+  private static final String DEFAULT_RESULT = "jmh-result.json";
+
+  private BenchmarkMain() {
+  }
+
+  public static void main(final String[] args) throws Exception {
+    CommandLineOptions options = new CommandLineOptions(args);
+    if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+        || options.shouldListProfilers() || options.shouldListResultFormats()) {
+      org.openjdk.jmh.Main.main(args);
+      return;
+    }
+    ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+    if (!options.getResultFormat().hasValue()) {
+      builder.resultFormat(ResultFormatType.JSON);
+    }
+    if (!options.getResult().hasValue()) {
+      builder.result(DEFAULT_RESULT);
+    }
+    new Runner(builder.build()).run();
+  }
+
+}
@@ -0,0 +1,316 @@
+package net.opecko.http.client;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Throwables;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+import net.opecko.http.flags.FlagsModuleBuilder;
+import net.opecko.http.metrics.MetricsModule;
+
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Points the {@link OutboundHttpClient} bound by {@link HttpClientModule} at a stub server on a
+ * local port and checks its pool, its queue bound, its timeouts and its metrics: bursts of
+ * requests share {@link #MAX_CONNECTIONS} kept-alive connections, the requests beyond those and
+ * the {@link #MAX_QUEUED} queued ones are rejected, a response slower than the request timeout
+ * fails as a timeout, a refused connection as neither, and every counter, timer and gauge adds up
+ * to what happened. Exits with status 1 otherwise, so a build running it fails.
+ */
+public final class HttpClientCheckMain {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientCheckMain.class);
+  private static final int MAX_CONNECTIONS = 2;
+  private static final int MAX_QUEUED = 4;
+  private static final long REQUEST_TIMEOUT_MILLIS = 500;
+  private static final long OK_MILLIS = 100;
+  private static final long SLOW_MILLIS = 3 * REQUEST_TIMEOUT_MILLIS;
+  private static final long BURST_TIMEOUT_SECONDS = 10;
+  private static final String OK_PATH = "/ok";
+  private static final String SLOW_PATH = "/slow";
+  private static final String ERROR_PATH = "/error";
+
+  private HttpClientCheckMain() {
+  }
+
+  public static void main(final String[] args) {
+    HttpClientCheckMain check = new HttpClientCheckMain();
+    boolean success = false;
+    try {
+      success = check.run();
+    } catch (final Exception e) {
+      LOGGER.error("HTTP client check failure", e);
+    } finally {
+      // exits even when a failed start left non-daemon threads behind
+      Runtime.getRuntime().exit(success ? 0 : 1);
+    }
+  }
+
+  private boolean run() throws Exception {
+    StubHandler stub = new StubHandler();
+    Server server = new Server();
+    ServerConnector connector = new ServerConnector(server);
+    connector.setHost("127.0.0.1");
+    connector.setPort(0);
+    server.addConnector(connector);
+    server.setHandler(stub);
+    server.start();
+    String base = "http://127.0.0.1:" + connector.getLocalPort();
+    String refused = "http://127.0.0.1:" + freePort() + OK_PATH;
+
+    HttpClientModule httpClientModule = new HttpClientModule();
+    Injector injector = Guice.createInjector(
+      Stage.PRODUCTION,
+      new FlagsModuleBuilder()
+        .addModules(Arrays.<Module>asList(new MetricsModule(), httpClientModule))
+        .build(
+          "--http_client=true",
+          "--http_client_max_connections_per_destination=" + MAX_CONNECTIONS,
+          "--http_client_max_queued_per_destination=" + MAX_QUEUED,
+          "--http_client_request_timeout=" + REQUEST_TIMEOUT_MILLIS
+        )
+    );
+    OutboundHttpClient client = injector.getInstance(OutboundHttpClient.class);
+    MetricsRegistry metricsRegistry = injector.getInstance(MetricsRegistry.class);
+    client.startAsync().awaitRunning();
+
+    List<String> failures = new ArrayList<>();
+    try {
+      // a cold destination queues every request while its connections open, so only the queue fits
+      Outcomes cold = send(client, base + OK_PATH, MAX_QUEUED);
+      check(failures, "requests to a cold destination succeeding", cold.succeeded, MAX_QUEUED);
+      check(failures, "connections opened for them", stub.getClientPorts().size(), MAX_CONNECTIONS);
+
+      // with the pooled connections idle, they take requests at once and the queue the next ones
+      int burst = 2 * (MAX_CONNECTIONS + MAX_QUEUED);
+      Outcomes warm = send(client, base + OK_PATH, burst);
+      check(failures, "burst requests succeeding", warm.succeeded, MAX_CONNECTIONS + MAX_QUEUED);
+      check(failures, "burst requests rejected", warm.rejected, burst - MAX_CONNECTIONS - MAX_QUEUED);
+      check(failures, "connections opened, kept alive between bursts", stub.getClientPorts().size(), MAX_CONNECTIONS);
+
+      Outcomes error = send(client, base + ERROR_PATH, 1);
+      Outcomes slow = send(client, base + SLOW_PATH, 1);
+      check(failures, "slow requests timed out", slow.timedOut, 1);
+      Outcomes down = send(client, refused, 1);
+      check(failures, "requests to a closed port refused", down.refused, 1);
+
+      check(failures, "unexpected outcomes", cold.unexpected() + warm.unexpected() + error.unexpected()
+          + slow.unexpected() + down.unexpected(), 0);
+      long succeeded = cold.succeeded + warm.succeeded;
+      long failed = cold.failed() + warm.failed() + error.failed() + slow.failed() + down.failed();
+      long began = succeeded + error.status5xx + slow.timedOut;
+      check(failures, "responses 2xx", counter(metricsRegistry, "responses 2xx"), succeeded);
+      check(failures, "responses 5xx", counter(metricsRegistry, "responses 5xx"), error.status5xx);
+      check(failures, "failed requests", counter(metricsRegistry, "failed requests"), failed);
+      check(failures, "timed out requests", counter(metricsRegistry, "timed out requests"), slow.timedOut);
+      check(failures, "rejected requests", counter(metricsRegistry, "rejected requests"), warm.rejected);
+      // rejected requests never queued, so are not timed
+      check(failures, "request latency count", timer(metricsRegistry, "request latency").count(), began + down.refused);
+      check(failures, "queue wait count", timer(metricsRegistry, "queue wait").count(), began);
+      check(failures, "in-flight requests", gauge(metricsRegistry, "in-flight requests"), 0);
+      check(failures, "destinations", gauge(metricsRegistry, "destinations"), 2);
+      // the timeout may fire a little early, but well after any successful request completed
+      if (timer(metricsRegistry, "request latency").max() < 0.9 * REQUEST_TIMEOUT_MILLIS) {
+        failures.add("the longest request latency is below the request timeout the slow request hit");
+      }
+    } finally {
+      client.stopAsync().awaitTerminated();
+      server.stop();
+    }
+    for (String failure : failures) {
+      LOGGER.error("HTTP client regression: {}", failure);
+    }
+    return failures.isEmpty();
+  }
+
+  /**
+   * Sends {@code count} requests to {@code uri} at once and waits for all their outcomes.
+   */
+  private static Outcomes send(final OutboundHttpClient client, final String uri, final int count)
+      throws InterruptedException {
+    final Outcomes outcomes = new Outcomes();
+    final CountDownLatch done = new CountDownLatch(count);
+    for (int i = 0; i < count; i++) {
+      client.newRequest(uri).send(new Response.CompleteListener() {
+        @Override
+        public void onComplete(final Result result) {
+          outcomes.add(result);
+          done.countDown();
+        }
+      });
+    }
+    if (!done.await(BURST_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+      throw new IllegalStateException("Requests to " + uri + " did not complete");
+    }
+    LOGGER.info("{} requests to {}: {}", count, uri, outcomes);
+    return outcomes;
+  }
+
+  private static void check(final List<String> failures, final String what, final long actual, final long expected) {
+    if (actual != expected) {
+      failures.add(String.format("%s is %d, expected %d", what, actual, expected));
+    }
+  }
+
+  private static long counter(final MetricsRegistry metricsRegistry, final String name) {
+    return metricsRegistry.newCounter(OutboundHttpClient.class, name).count();
+  }
+
+  private static Timer timer(final MetricsRegistry metricsRegistry, final String name) {
+    return metricsRegistry.newTimer(OutboundHttpClient.class, name);
+  }
+
+  private static long gauge(final MetricsRegistry metricsRegistry, final String name) {
+    Metric gauge = metricsRegistry.allMetrics().get(new MetricName(OutboundHttpClient.class, name));
+    return ((Number) ((Gauge<?>) gauge).value()).longValue();
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  /**
+   * What became of a batch of requests.
+   */
+  private static final class Outcomes {
+
+    private int succeeded;
+    private int status5xx;
+    private int timedOut;
+    private int rejected;
+    private int refused;
+    private int unexpectedStatus;
+    private int unexpectedFailure;
+
+    synchronized void add(final Result result) {
+      if (!result.isFailed()) {
+        if (result.getResponse().getStatus() / 100 == 2) {
+          succeeded++;
+        } else if (result.getResponse().getStatus() / 100 == 5) {
+          status5xx++;
+        } else {
+          unexpectedStatus++;
+        }
+        return;
+      }
+      List<Throwable> causes = Throwables.getCausalChain(result.getFailure());
+      if (contains(causes, TimeoutException.class)) {
+        timedOut++;
+      } else if (contains(causes, RejectedExecutionException.class)) {
+        rejected++;
+      } else if (contains(causes, ConnectException.class)) {
+        refused++;
+      } else {
+        LOGGER.warn("Unexpected failure", result.getFailure());
+        unexpectedFailure++;
+      }
+    }
+
+    synchronized int failed() {
+      return timedOut + rejected + refused + unexpectedFailure;
+    }
+
+    synchronized int unexpected() {
+      return unexpectedStatus + unexpectedFailure;
+    }
+
+    private static boolean contains(final List<Throwable> causes, final Class<? extends Throwable> type) {
+      for (Throwable cause : causes) {
+        if (type.isInstance(cause)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public synchronized String toString() {
+      return String.format(
+        "%d succeeded, %d 5xx, %d timed out, %d rejected, %d refused, %d unexpected",
+        succeeded, status5xx, timedOut, rejected, refused, unexpected()
+      );
+    }
+
+  }
+
+  /**
+   * Answers {@link #OK_PATH} after {@link #OK_MILLIS}, long enough for a burst to queue,
+   * {@link #SLOW_PATH} only after the request timeout and {@link #ERROR_PATH} with a 500, and
+   * notes the client port of every connection.
+   */
+  private static final class StubHandler extends AbstractHandler {
+
+    private final Set<Integer> clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    @Override
+    public void handle(
+        final String target,
+        final Request baseRequest,
+        final HttpServletRequest request,
+        final HttpServletResponse response
+    ) throws IOException {
+      baseRequest.setHandled(true);
+      clientPorts.add(request.getRemotePort());
+      try {
+        switch (target) {
+          case OK_PATH:
+            Thread.sleep(OK_MILLIS);
+            response.setStatus(HttpServletResponse.SC_OK);
+            break;
+          case SLOW_PATH:
+            Thread.sleep(SLOW_MILLIS);
+            response.setStatus(HttpServletResponse.SC_OK);
+            break;
+          case ERROR_PATH:
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            break;
+          default:
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            break;
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      }
+    }
+
+    Set<Integer> getClientPorts() {
+      return clientPorts;
+    }
+
+  }
+
+}
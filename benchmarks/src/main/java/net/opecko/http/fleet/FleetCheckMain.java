@@ -0,0 +1,377 @@
+package net.opecko.http.fleet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+
+import net.opecko.http.client.HttpClientModule;
+import net.opecko.http.config.server.HttpStackServer;
+import net.opecko.http.flags.DynamicFlagsModule;
+import net.opecko.http.flags.FlagsModuleBuilder;
+import net.opecko.http.jetty.JettyModule;
+import net.opecko.http.lifecycle.LifecycleModule;
+import net.opecko.http.lifecycle.ServiceLifecycleManager;
+import net.opecko.http.metrics.MetricsModule;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.NetworkConnector;
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs two peers and an aggregator in one JVM, the aggregator also pointed at a port nothing
+ * listens on, records a known distribution into the peers' {@link LatencyHistograms} and checks
+ * what the aggregator serves: the window and totals per route and for {@link FleetAggregator#ALL_ROUTES}
+ * must match histograms of the recorded values merged locally, and be within a bucket of the exact
+ * percentiles of those values, and the unreachable peer must be reported down. Exits with status 1
+ * otherwise, so a build running it fails.
+ * <p>
+ * One peer is much slower than the other on a shared route, where the fleet's p99 is the slow
+ * peer's latency rather than the average of the two peers' p99s. Peers serve their histograms on
+ * an admin connector, so the aggregator's own pulls are not recorded.
+ */
+@Parameters(separators = "=")
+public final class FleetCheckMain {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FleetCheckMain.class);
+  private static final long POLL_INTERVAL_MILLIS = 200;
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+  private static final String[] PERCENTILE_FIELDS = { "p50", "p90", "p99", "p999" };
+  private static final String SHARED_ROUTE = "FleetCheck.shared";
+  private static final String FAST_PEER_ROUTE = "FleetCheck.fastPeerOnly";
+
+  @Parameter(names = "--timeout_seconds", description = "Seconds to wait for the aggregator to see each phase")
+  private int timeoutSeconds = 30;
+
+  private final ObjectMapper objectMapper;
+
+  private FleetCheckMain() {
+    this.objectMapper = new ObjectMapper();
+  }
+
+  public static void main(final String[] args) {
+    FleetCheckMain check = new FleetCheckMain();
+    new JCommander(check, args);
+    boolean success = false;
+    try {
+      success = check.run();
+    } catch (final Exception e) {
+      LOGGER.error("Fleet check failure", e);
+    } finally {
+      // exits even when a failed server start left non-daemon threads behind
+      Runtime.getRuntime().exit(success ? 0 : 1);
+    }
+  }
+
+  private boolean run() throws Exception {
+    int fastAdminPort = freePort();
+    int slowAdminPort = freePort();
+    int deadPort = freePort();
+    String fastPeer = "http://127.0.0.1:" + fastAdminPort;
+    String slowPeer = "http://127.0.0.1:" + slowAdminPort;
+    String deadPeer = "http://127.0.0.1:" + deadPort;
+    Map<String, List<Long>> window = new TreeMap<>();
+    Map<String, List<Long>> total = new TreeMap<>();
+    List<String> failures = new ArrayList<>();
+
+    List<Node> nodes = new ArrayList<>();
+    try {
+      Node fast = Node.start(nodes, "--admin_port=" + fastAdminPort);
+      Node slow = Node.start(nodes, "--admin_port=" + slowAdminPort);
+      // before the aggregator's first pull, which only sets each peer's baseline
+      record(fast, SHARED_ROUTE, 7, 0, 300, total);
+      Node aggregator = Node.start(
+        nodes,
+        "--fleet_peers=" + fastPeer + "," + slowPeer + "," + deadPeer,
+        "--fleet_poll_interval=" + POLL_INTERVAL_MILLIS,
+        "--fleet_window=60000"
+      );
+      URL fleet = new URL("http://127.0.0.1:" + aggregator.getLocalPort() + "/metrics/fleet");
+
+      JsonNode baseline = awaitFleet(fleet, new Condition() {
+        @Override
+        public boolean isMet(final JsonNode json) {
+          // peers are listed in the order given
+          JsonNode peers = json.path("peers");
+          return peers.path(0).path("up").asBoolean()
+              && peers.path(1).path("up").asBoolean()
+              && peers.path(2).has("lastError");
+        }
+      });
+      if (null == baseline) {
+        failures.add("peers were not pulled within " + timeoutSeconds + " seconds");
+      } else {
+        record(fast, SHARED_ROUTE, 500, 1, 1000, window, total);
+        record(fast, FAST_PEER_ROUTE, 20000, 10, 200, window, total);
+        record(slow, SHARED_ROUTE, 100000, 1, 100, window, total);
+        final long expectedCount = window.get(FleetAggregator.ALL_ROUTES).size();
+        JsonNode json = awaitFleet(fleet, new Condition() {
+          @Override
+          public boolean isMet(final JsonNode json) {
+            return json.path("window").path(FleetAggregator.ALL_ROUTES).path("count").asLong() >= expectedCount;
+          }
+        });
+        if (null == json) {
+          failures.add("the window did not reach " + expectedCount + " requests within " + timeoutSeconds + " seconds");
+        } else {
+          LOGGER.info("Fleet: {}", json);
+          checkHistograms(failures, "window", json.path("window"), window);
+          checkHistograms(failures, "total", json.path("total"), total);
+          checkPeers(failures, json.path("peers"), ImmutableList.of(fastPeer, slowPeer), deadPeer);
+        }
+      }
+    } finally {
+      for (Node node : Lists.reverse(nodes)) {
+        node.stop();
+      }
+    }
+    for (String failure : failures) {
+      LOGGER.error("Fleet aggregation regression: {}", failure);
+    }
+    return failures.isEmpty();
+  }
+
+  /**
+   * Records {@code count} values from {@code first} {@code step} apart into {@code route} on
+   * {@code node}, and adds them to the expected values of each of {@code expectations}.
+   */
+  @SafeVarargs
+  private static void record(
+      final Node node,
+      final String route,
+      final long first,
+      final long step,
+      final int count,
+      final Map<String, List<Long>>... expectations
+  ) {
+    LatencyHistograms histograms = node.getLatencyHistograms();
+    for (int i = 0; i < count; i++) {
+      long micros = first + i * step;
+      histograms.record(route, micros);
+      for (Map<String, List<Long>> expected : expectations) {
+        valuesOf(expected, route).add(micros);
+        valuesOf(expected, FleetAggregator.ALL_ROUTES).add(micros);
+      }
+    }
+  }
+
+  private static List<Long> valuesOf(final Map<String, List<Long>> expected, final String route) {
+    List<Long> values = expected.get(route);
+    if (null == values) {
+      values = new ArrayList<>();
+      expected.put(route, values);
+    }
+    return values;
+  }
+
+  private static void checkHistograms(
+      final List<String> failures,
+      final String section,
+      final JsonNode actual,
+      final Map<String, List<Long>> expected
+  ) {
+    List<String> routes = Lists.newArrayList(actual.fieldNames());
+    if (!new TreeSet<>(routes).equals(expected.keySet())) {
+      failures.add(String.format("%s has routes %s, expected %s", section, routes, expected.keySet()));
+    }
+    for (Map.Entry<String, List<Long>> entry : expected.entrySet()) {
+      JsonNode histogram = actual.path(entry.getKey());
+      List<Long> values = entry.getValue();
+      LatencyHistogram merged = new LatencyHistogram();
+      for (long value : values) {
+        merged.record(value);
+      }
+      String prefix = section + " " + entry.getKey() + " ";
+      checkValue(failures, prefix + "count", histogram.path("count").asLong(-1), values.size(), 0);
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        long value = histogram.path(PERCENTILE_FIELDS[i]).asLong(-1);
+        checkValue(failures, prefix + PERCENTILE_FIELDS[i], value, merged.getValueAtPercentile(PERCENTILES[i]), 0);
+        long exact = nearestRank(values, PERCENTILES[i]);
+        checkValue(failures, prefix + PERCENTILE_FIELDS[i] + " against the exact value", value, exact, exact / 64 + 1);
+      }
+      long max = Collections.max(values);
+      checkValue(failures, prefix + "max", histogram.path("max").asLong(-1), max, max / 64 + 1);
+    }
+  }
+
+  private static void checkValue(
+      final List<String> failures,
+      final String what,
+      final long actual,
+      final long expected,
+      final long tolerance
+  ) {
+    if (Math.abs(actual - expected) > tolerance) {
+      failures.add(String.format("%s is %d, expected %d within %d", what, actual, expected, tolerance));
+    }
+  }
+
+  private static void checkPeers(
+      final List<String> failures,
+      final JsonNode peers,
+      final List<String> livePeers,
+      final String deadPeer
+  ) {
+    Map<String, JsonNode> byUri = new TreeMap<>();
+    for (JsonNode peer : peers) {
+      byUri.put(peer.path("uri").asText(), peer);
+    }
+    for (String livePeer : livePeers) {
+      JsonNode peer = byUri.get(livePeer + "/metrics/histograms");
+      if (null == peer || !peer.path("up").asBoolean() || peer.has("lastError")) {
+        failures.add("peer " + livePeer + " is not reported up: " + peer);
+      }
+    }
+    JsonNode dead = byUri.get(deadPeer + "/metrics/histograms");
+    if (null == dead || dead.path("up").asBoolean() || !dead.has("lastError")
+        || dead.path("lastSuccessMillis").asLong() != 0) {
+      failures.add("peer " + deadPeer + " is not reported down: " + dead);
+    }
+  }
+
+  /**
+   * The nearest-rank percentile, as {@link LatencyHistogram#getValueAtPercentile} ranks values.
+   */
+  private static long nearestRank(final List<Long> values, final double percentile) {
+    List<Long> sorted = new ArrayList<>(values);
+    Collections.sort(sorted);
+    long rank = Math.max(1L, (long) Math.ceil(percentile / 100 * sorted.size()));
+    return sorted.get((int) rank - 1);
+  }
+
+  /**
+   * Polls the aggregator until its JSON meets {@code condition}, returning it, or {@code null}
+   * after {@code --timeout_seconds}.
+   */
+  @Nullable
+  private JsonNode awaitFleet(final URL fleet, final Condition condition) throws IOException, InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+    while (System.nanoTime() < deadline) {
+      JsonNode json = get(fleet);
+      if (condition.isMet(json)) {
+        return json;
+      }
+      Thread.sleep(POLL_INTERVAL_MILLIS / 2);
+    }
+    return null;
+  }
+
+  private JsonNode get(final URL url) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+    try {
+      if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+        throw new IOException("HTTP " + connection.getResponseCode() + " from " + url);
+      }
+      try (InputStream in = connection.getInputStream()) {
+        return objectMapper.readTree(in);
+      }
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private interface Condition {
+
+    boolean isMet(JsonNode json);
+
+  }
+
+  /**
+   * A server with latency histograms installed, and fleet aggregation if given peers.
+   */
+  private static final class Node {
+
+    private final Injector injector;
+    private final ServiceLifecycleManager lifecycleManager;
+    private final Service httpStackServer;
+
+    private Node(final Injector injector) {
+      this.injector = injector;
+      this.lifecycleManager = injector.getInstance(ServiceLifecycleManager.class);
+      this.httpStackServer = injector.getInstance(Key.get(Service.class, HttpStackServer.class));
+    }
+
+    /**
+     * Starts a node, adding it to {@code nodes} to be stopped even if starting it fails.
+     */
+    static Node start(final List<Node> nodes, final String... flags) {
+      HttpClientModule httpClientModule = new HttpClientModule();
+      List<Module> modules = Arrays.<Module>asList(
+        new JettyModule(),
+        new LifecycleModule(),
+        new DynamicFlagsModule(),
+        new MetricsModule(),
+        httpClientModule,
+        new FleetModule(httpClientModule)
+      );
+      List<String> args = Lists.newArrayList("--server_port=0", "--bind_address=127.0.0.1");
+      args.addAll(Arrays.asList(flags));
+      Node node = new Node(Guice.createInjector(
+        Stage.PRODUCTION,
+        new FlagsModuleBuilder().addModules(modules).build(args.toArray(new String[args.size()]))
+      ));
+      nodes.add(node);
+      if (!node.lifecycleManager.startAll()) {
+        throw new IllegalStateException("Failure starting services");
+      }
+      node.httpStackServer.startAsync().awaitRunning();
+      return node;
+    }
+
+    LatencyHistograms getLatencyHistograms() {
+      return injector.getInstance(LatencyHistograms.class);
+    }
+
+    /**
+     * The port of the server's connector, for nodes without an admin one.
+     */
+    int getLocalPort() {
+      for (Connector connector : injector.getInstance(Server.class).getConnectors()) {
+        if (connector instanceof NetworkConnector) {
+          return ((NetworkConnector) connector).getLocalPort();
+        }
+      }
+      throw new IllegalStateException("No network connector");
+    }
+
+    void stop() {
+      httpStackServer.stopAsync().awaitTerminated();
+      lifecycleManager.stopAll();
+    }
+
+  }
+
+}
@@ -0,0 +1,125 @@
+package net.opecko.http.jersey;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import com.google.inject.Guice;
+import com.google.inject.Stage;
+import com.sun.jersey.core.header.OutBoundHeaders;
+
+import net.opecko.http.flags.FlagsModuleBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Response entity serialization through the {@link JacksonJsonProvider} bound by
+ * {@link JerseyModule}, the way Jersey writes a resource method's return value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class JacksonSerializationBenchmark {
+
+  private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+  @Param({ "1", "100" })
+  private int widgets;
+
+  private JacksonJsonProvider provider;
+  private List<Widget> entity;
+  private OutBoundHeaders headers;
+  private ByteArrayOutputStream out;
+
+  @Setup
+  public void setUp() {
+    provider = Guice.createInjector(Stage.DEVELOPMENT, new FlagsModuleBuilder().addModule(new JerseyModule()).build())
+        .getInstance(JacksonJsonProvider.class);
+    entity = new ArrayList<>(widgets);
+    for (int i = 0; i < widgets; i++) {
+      entity.add(new Widget(i));
+    }
+    headers = new OutBoundHeaders();
+    out = new ByteArrayOutputStream(1 << 16);
+  }
+
+  @Benchmark
+  public int serialize() throws IOException {
+    out.reset();
+    provider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, headers, out);
+    return out.size();
+  }
+
+  /**
+   * A typical response entity: scalars, a list and a map.
+   */
+  public static class Widget {
+
+    private final long id;
+    private final String name;
+    private final double price;
+    private final boolean available;
+    private final List<String> tags;
+    private final Map<String, String> attributes;
+
+    Widget(final int index) {
+      this.id = 100000L + index;
+      this.name = "widget-" + index;
+      this.price = index * 1.25;
+      this.available = index % 2 == 0;
+      this.tags = new ArrayList<>();
+      this.attributes = new TreeMap<>();
+      for (int i = 0; i < 4; i++) {
+        tags.add("tag" + i);
+        attributes.put("attribute" + i, "value " + index + "/" + i);
+      }
+    }
+
+    public long getId() {
+      return id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public double getPrice() {
+      return price;
+    }
+
+    public boolean isAvailable() {
+      return available;
+    }
+
+    public List<String> getTags() {
+      return tags;
+    }
+
+    public Map<String, String> getAttributes() {
+      return attributes;
+    }
+
+  }
+
+}
@@ -0,0 +1,200 @@
+package net.opecko.http.jetty;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.multibindings.Multibinder;
+
+import net.opecko.http.accesslog.AccessLogModule;
+import net.opecko.http.config.server.HttpStackServer;
+import net.opecko.http.deadline.DeadlineModule;
+import net.opecko.http.flags.DynamicFlagsModule;
+import net.opecko.http.flags.FlagsModuleBuilder;
+import net.opecko.http.jersey.JerseyModule;
+import net.opecko.http.jfr.JfrModule;
+import net.opecko.http.lifecycle.LifecycleModule;
+import net.opecko.http.lifecycle.ServiceLifecycleManager;
+import net.opecko.http.load.SampleResource;
+import net.opecko.http.metrics.MetricsModule;
+import net.opecko.http.profiler.ProfilerModule;
+import net.opecko.http.slowlog.SlowRequestModule;
+import net.opecko.http.tracing.TracingModule;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sends each of {@link #BUDGETS}' requests through the {@link JettyModule} handler chain over a
+ * {@link LocalConnector}, with the production modules installed, and measures the bytes the server
+ * allocates per request: parsing, filters, Jersey, Jackson and response generation. Exits with
+ * status 1 when a route allocates more than its budget, so a build running it fails.
+ * <p>
+ * Allocation is counted on every thread but the one sending the requests, so it includes the odd
+ * background task; averaged over {@code --requests_per_route} sequential requests that is noise.
+ */
+@Parameters(separators = "=")
+public final class AllocationCheckMain {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AllocationCheckMain.class);
+  private static final long REQUEST_TIMEOUT_SECONDS = 10;
+
+  /**
+   * Bytes per request on JDK 8 with compressed oops, about a tenth above the measured figures.
+   * Lower a budget when a change saves allocation, so the saving is kept.
+   */
+  private static final List<RouteBudget> BUDGETS = ImmutableList.of(
+    new RouteBudget("/metrics/ping", 35000),
+    new RouteBudget("/api/sample/widgets/42", 45000),
+    new RouteBudget("/api/sample/widgets?count=50", 95000),
+    new RouteBudget("/api/sample/missing", 44000)
+  );
+
+  @Parameter(names = "--warmup_requests_per_route", description = "Unmeasured requests per route, for the JIT")
+  private int warmupRequestsPerRoute = 5000;
+
+  @Parameter(names = "--requests_per_route", description = "Measured requests per route")
+  private int requestsPerRoute = 2000;
+
+  @Parameter(names = "--enforce", description = "Fail when a route exceeds its budget", arity = 1)
+  private boolean enforce = true;
+
+  private AllocationCheckMain() {
+  }
+
+  public static void main(final String[] args) {
+    AllocationCheckMain check = new AllocationCheckMain();
+    new JCommander(check, args);
+    boolean success = false;
+    try {
+      success = check.run();
+    } catch (final Exception e) {
+      LOGGER.error("Allocation check failure", e);
+    } finally {
+      // exits even when a failed server start left non-daemon threads behind
+      Runtime.getRuntime().exit(success ? 0 : 1);
+    }
+  }
+
+  private boolean run() throws Exception {
+    ThreadAllocation.enable();
+    Injector injector = Guice.createInjector(
+      Stage.PRODUCTION,
+      new FlagsModuleBuilder()
+        .addModules(Arrays.<Module>asList(
+          new JettyModule(),
+          new LifecycleModule(),
+          new DynamicFlagsModule(),
+          new MetricsModule(),
+          new SlowRequestModule(),
+          new AccessLogModule(),
+          new DeadlineModule(),
+          new JfrModule(),
+          new TracingModule(),
+          new ProfilerModule(),
+          new JerseyModule(),
+          new AllocationCheckModule()
+        ))
+        .build("--server_port=0", "--bind_address=127.0.0.1")
+    );
+    ServiceLifecycleManager lifecycleManager = injector.getInstance(ServiceLifecycleManager.class);
+    Service httpStackServer = injector.getInstance(Key.get(Service.class, HttpStackServer.class));
+    if (!lifecycleManager.startAll()) {
+      throw new IllegalStateException("Failure starting services");
+    }
+    httpStackServer.startAsync().awaitRunning();
+    LocalConnector connector = injector.getInstance(LocalConnector.class);
+
+    List<String> overruns = new ArrayList<>();
+    try {
+      for (RouteBudget budget : BUDGETS) {
+        ByteBuffer raw = ByteBuffer.wrap(budget.getRequest().toRawRequest().getBytes(StandardCharsets.UTF_8));
+        send(connector, raw, warmupRequestsPerRoute);
+        ThreadAllocation before = ThreadAllocation.snapshot();
+        send(connector, raw, requestsPerRoute);
+        long bytesPerRequest = ThreadAllocation.snapshot().since(before) / requestsPerRoute;
+        LOGGER.info(
+          "{} {}: {} bytes per request, budget {}",
+          budget.getRequest().getMethod(),
+          budget.getRequest().getPath(),
+          bytesPerRequest,
+          budget.getMaxBytes()
+        );
+        if (bytesPerRequest > budget.getMaxBytes()) {
+          overruns.add(String.format(
+            "%s %s allocates %d bytes per request, over its budget of %d",
+            budget.getRequest().getMethod(),
+            budget.getRequest().getPath(),
+            bytesPerRequest,
+            budget.getMaxBytes()
+          ));
+        }
+      }
+    } finally {
+      httpStackServer.stopAsync().awaitTerminated();
+      lifecycleManager.stopAll();
+    }
+    for (String overrun : overruns) {
+      LOGGER.error("Allocation regression: {}", overrun);
+    }
+    return overruns.isEmpty() || !enforce;
+  }
+
+  private static void send(final LocalConnector connector, final ByteBuffer raw, final int times) throws Exception {
+    for (int i = 0; i < times; i++) {
+      ByteBuffer response = connector.getResponses(raw.duplicate(), REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      if (null == response || !response.hasRemaining()) {
+        throw new IllegalStateException("No response to " + StandardCharsets.UTF_8.decode(raw.duplicate()));
+      }
+    }
+  }
+
+  private static final class AllocationCheckModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      bind(SampleResource.class);
+      bind(LocalConnector.class).toProvider(LocalConnectorProvider.class).in(Scopes.SINGLETON);
+      Multibinder.newSetBinder(binder(), Connector.class).addBinding().to(LocalConnector.class);
+    }
+
+  }
+
+  private static final class LocalConnectorProvider implements Provider<LocalConnector> {
+
+    private final Server server;
+
+    @Inject
+    private LocalConnectorProvider(final Server server) {
+      this.server = server;
+    }
+
+    @Override
+    public LocalConnector get() {
+      return new LocalConnector(server);
+    }
+
+  }
+
+}
@@ -0,0 +1,180 @@
+package net.opecko.http.jetty;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Scopes;
+import com.google.inject.Stage;
+import com.google.inject.multibindings.Multibinder;
+
+import net.opecko.http.accesslog.AccessLogModule;
+import net.opecko.http.config.server.HttpStackServer;
+import net.opecko.http.flags.FlagsModuleBuilder;
+import net.opecko.http.jersey.JerseyModule;
+import net.opecko.http.lifecycle.LifecycleModule;
+import net.opecko.http.lifecycle.ServiceLifecycleManager;
+import net.opecko.http.metrics.MetricsModule;
+
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full in-process request dispatch through the {@link JettyModule} handler: HTTP parsing, the
+ * installed filters, Jersey with its resource filters, Jackson and response generation, through
+ * a Jetty {@link LocalConnector}. {@code accessLog} measures the request-path cost of the access
+ * log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DispatchBenchmark {
+
+  private static final String JERSEY_REQUEST =
+      "GET /api/bench HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+  private static final String SERVLET_REQUEST =
+      "GET /metrics/ping HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n";
+
+  @Param({ "false", "true" })
+  private boolean accessLog;
+
+  private File accessLogFile;
+  private ServiceLifecycleManager lifecycleManager;
+  private Service httpStackServer;
+  private LocalConnector connector;
+
+  @Setup
+  public void setUp() throws IOException {
+    List<String> args = new ArrayList<>();
+    args.add("--server_port=0");
+    args.add("--bind_address=127.0.0.1");
+    if (accessLog) {
+      accessLogFile = File.createTempFile("dispatch-benchmark", ".log");
+      args.add("--access_log=" + accessLogFile.getPath());
+      args.add("--access_log_max_file_size=" + (16 * 1024 * 1024));
+      args.add("--access_log_max_files=1");
+    }
+    Injector injector = Guice.createInjector(
+      Stage.PRODUCTION,
+      new FlagsModuleBuilder()
+        .addModules(Arrays.<Module>asList(
+          new JettyModule(),
+          new LifecycleModule(),
+          new MetricsModule(),
+          new AccessLogModule(),
+          new JerseyModule(),
+          new BenchmarkModule()
+        ))
+        .build(args.toArray(new String[args.size()]))
+    );
+    lifecycleManager = injector.getInstance(ServiceLifecycleManager.class);
+    httpStackServer = injector.getInstance(Key.get(Service.class, HttpStackServer.class));
+    if (!lifecycleManager.startAll()) {
+      throw new IllegalStateException("Failure starting services");
+    }
+    httpStackServer.startAsync().awaitRunning();
+    connector = injector.getInstance(LocalConnector.class);
+  }
+
+  @TearDown
+  public void tearDown() {
+    httpStackServer.stopAsync().awaitTerminated();
+    lifecycleManager.stopAll();
+    if (null != accessLogFile) {
+      File[] rotated = accessLogFile.getParentFile().listFiles();
+      for (File file : null == rotated ? new File[0] : rotated) {
+        if (file.getName().startsWith(accessLogFile.getName())) {
+          file.delete();
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public String jersey() throws Exception {
+    return connector.getResponses(JERSEY_REQUEST);
+  }
+
+  @Benchmark
+  public String servlet() throws Exception {
+    return connector.getResponses(SERVLET_REQUEST);
+  }
+
+  @Path("/bench")
+  public static class BenchmarkResource {
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Object> get() {
+      Map<String, Object> entity = new TreeMap<>();
+      entity.put("id", 12345L);
+      entity.put("name", "benchmark");
+      entity.put("tags", Collections.singletonList("jmh"));
+      return entity;
+    }
+
+  }
+
+  private static final class BenchmarkModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      bind(BenchmarkResource.class);
+      bind(LocalConnector.class).toProvider(LocalConnectorProvider.class).in(Scopes.SINGLETON);
+      Multibinder.newSetBinder(binder(), Connector.class).addBinding().to(LocalConnector.class);
+    }
+
+  }
+
+  private static final class LocalConnectorProvider implements Provider<LocalConnector> {
+
+    private final Server server;
+
+    @Inject
+    private LocalConnectorProvider(final Server server) {
+      this.server = server;
+    }
+
+    @Override
+    public LocalConnector get() {
+      return new LocalConnector(server);
+    }
+
+  }
+
+}
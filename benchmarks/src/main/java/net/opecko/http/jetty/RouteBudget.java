@@ -0,0 +1,39 @@
+package net.opecko.http.jetty;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A request to check and the bytes the server may allocate serving it.
+ */
+final class RouteBudget {
+
+  private final WarmupRequest request;
+  private final long maxBytes;
+
+  /**
+   * @param request {@code [METHOD] path}, as in {@link WarmupRequest#parse}
+   */
+  RouteBudget(final String request, final long maxBytes) {
+    Preconditions.checkArgument(maxBytes > 0, "Allocation budget must be positive");
+    this.request = WarmupRequest.parse(request);
+    this.maxBytes = maxBytes;
+  }
+
+  WarmupRequest getRequest() {
+    return request;
+  }
+
+  long getMaxBytes() {
+    return maxBytes;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("request", request)
+      .add("maxBytes", maxBytes)
+      .toString();
+  }
+
+}
@@ -0,0 +1,72 @@
+package net.opecko.http.jetty;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * The bytes allocated by every live thread but the calling one, from HotSpot's per-thread
+ * allocation counters. The difference of two snapshots is what the rest of the JVM allocated in
+ * between; threads that died in between are not counted.
+ */
+final class ThreadAllocation {
+
+  private final Map<Long, Long> allocatedBytes;
+
+  private ThreadAllocation(final Map<Long, Long> allocatedBytes) {
+    this.allocatedBytes = allocatedBytes;
+  }
+
+  static ThreadAllocation snapshot() {
+    ThreadMXBean threadMXBean = threadMXBean();
+    long[] ids = threadMXBean.getAllThreadIds();
+    long[] bytes = threadMXBean.getThreadAllocatedBytes(ids);
+    long self = Thread.currentThread().getId();
+    Map<Long, Long> allocatedBytes = new HashMap<>(ids.length * 2);
+    for (int i = 0; i < ids.length; i++) {
+      // -1 for threads that died since getAllThreadIds
+      if (ids[i] != self && bytes[i] >= 0) {
+        allocatedBytes.put(ids[i], bytes[i]);
+      }
+    }
+    return new ThreadAllocation(allocatedBytes);
+  }
+
+  /**
+   * @return the bytes allocated between {@code earlier} and this snapshot, by threads alive at
+   *     this snapshot
+   */
+  long since(final ThreadAllocation earlier) {
+    long total = 0;
+    for (Map.Entry<Long, Long> entry : allocatedBytes.entrySet()) {
+      Long before = earlier.allocatedBytes.get(entry.getKey());
+      total += entry.getValue() - (null == before ? 0L : before);
+    }
+    return total;
+  }
+
+  /**
+   * @throws IllegalStateException if the JVM has no per-thread allocation counters
+   */
+  static void enable() {
+    ThreadMXBean threadMXBean = threadMXBean();
+    Preconditions.checkState(
+      threadMXBean.isThreadAllocatedMemorySupported(),
+      "Thread allocation counters are not supported by this JVM"
+    );
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  private static ThreadMXBean threadMXBean() {
+    java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    Preconditions.checkState(
+      threadMXBean instanceof ThreadMXBean,
+      "Thread allocation counters need a HotSpot-compatible JVM"
+    );
+    return (ThreadMXBean) threadMXBean;
+  }
+
+}
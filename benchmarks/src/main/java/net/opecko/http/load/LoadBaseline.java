@@ -0,0 +1,94 @@
+package net.opecko.http.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The stored p99 latency and throughput per rate that a load test run is compared to, kept as a
+ * properties file: {@code <rate>.p99_micros} and {@code <rate>.throughput}.
+ */
+final class LoadBaseline {
+
+  private static final String P99 = ".p99_micros";
+  private static final String THROUGHPUT = ".throughput";
+
+  private final Properties properties;
+
+  private LoadBaseline(final Properties properties) {
+    this.properties = properties;
+  }
+
+  static LoadBaseline of(final List<RateResult> results) {
+    Properties properties = new Properties();
+    for (RateResult result : results) {
+      properties.setProperty(result.getRate() + P99, Long.toString(result.getP99()));
+      properties.setProperty(result.getRate() + THROUGHPUT, String.format(Locale.ROOT, "%.1f", result.getThroughput()));
+    }
+    return new LoadBaseline(properties);
+  }
+
+  static LoadBaseline read(final File file) throws IOException {
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    }
+    return new LoadBaseline(properties);
+  }
+
+  void write(final File file, final String comments) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      properties.store(writer, comments);
+    }
+  }
+
+  /**
+   * Compares {@code results} to this baseline. Rates the baseline doesn't know are not compared.
+   *
+   * @param maxP99Regression the largest allowed relative p99 increase, {@code 0.2} for 20%
+   * @param maxThroughputRegression the largest allowed relative throughput decrease
+   * @return a description of each regression, empty when there are none
+   */
+  List<String> regressions(
+    final List<RateResult> results,
+    final double maxP99Regression,
+    final double maxThroughputRegression
+  ) {
+    Preconditions.checkArgument(maxP99Regression >= 0, "Negative p99 regression threshold");
+    Preconditions.checkArgument(maxThroughputRegression >= 0, "Negative throughput regression threshold");
+    List<String> regressions = new ArrayList<>();
+    for (RateResult result : results) {
+      String p99 = properties.getProperty(result.getRate() + P99);
+      if (null != p99) {
+        long baseline = Long.parseLong(p99);
+        if (result.getP99() > baseline * (1 + maxP99Regression)) {
+          regressions.add(String.format(
+            "%d req/s: p99 %d us exceeds baseline %d us by more than %.0f%%",
+            result.getRate(), result.getP99(), baseline, maxP99Regression * 100
+          ));
+        }
+      }
+      String throughput = properties.getProperty(result.getRate() + THROUGHPUT);
+      if (null != throughput) {
+        double baseline = Double.parseDouble(throughput);
+        if (result.getThroughput() < baseline * (1 - maxThroughputRegression)) {
+          regressions.add(String.format(
+            "%d req/s: throughput %.1f req/s is below baseline %.1f req/s by more than %.0f%%",
+            result.getRate(), result.getThroughput(), baseline, maxThroughputRegression * 100
+          ));
+        }
+      }
+    }
+    return regressions;
+  }
+
+}
@@ -0,0 +1,163 @@
+package net.opecko.http.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Boots a {@link LoadTestServer} on loopback, drives it with {@link OpenLoopLoad} at each of
+ * {@code --rates}, writes the latency histograms and results to {@code --results_dir}, and compares
+ * p99 latency, throughput and error rate to the {@code --baseline}. Exits with status 1 on a
+ * regression, or when there is no baseline to compare with, so a build running it fails.
+ */
+@Parameters(separators = "=")
+public final class LoadTestMain {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LoadTestMain.class);
+  private static final Splitter COMMA_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+  private static final String JETTY_HOME = "jetty.home";
+  private static final double MICROS_PER_MILLI = 1000.0;
+
+  @Parameter(names = "--rates", description = "Comma separated request rates per second, each run in turn")
+  private String rates = "250,1000";
+
+  @Parameter(names = "--paths", description = "Comma separated paths requested in turn")
+  private String paths = "/api/sample/widgets/42,/api/sample/widgets?count=50";
+
+  @Parameter(names = "--connections", description = "Keep-alive connections sending requests")
+  private int connections = 32;
+
+  @Parameter(names = "--warmup_seconds", description = "Unmeasured seconds at each rate")
+  private int warmupSeconds = 15;
+
+  @Parameter(names = "--duration_seconds", description = "Measured seconds at each rate")
+  private int durationSeconds = 30;
+
+  @Parameter(names = "--server_port", description = "Loopback port of the server under test")
+  private int serverPort = 18280;
+
+  @Parameter(names = "--baseline", description = "Baseline properties file")
+  private String baseline = "load-baseline.properties";
+
+  @Parameter(names = "--update_baseline", description = "Write this run's results as the baseline", arity = 1)
+  private boolean updateBaseline = false;
+
+  @Parameter(names = "--max_p99_regression", description = "Allowed relative p99 increase over the baseline")
+  private double maxP99Regression = 0.25;
+
+  @Parameter(names = "--max_throughput_regression", description = "Allowed relative throughput decrease")
+  private double maxThroughputRegression = 0.05;
+
+  @Parameter(names = "--max_error_rate", description = "Allowed share of failed requests at any rate")
+  private double maxErrorRate = 0.001;
+
+  @Parameter(names = "--results_dir", description = "Directory for the results and histograms")
+  private String resultsDir = "target/load-test";
+
+  private LoadTestMain() {
+  }
+
+  public static void main(final String[] args) {
+    LoadTestMain loadTest = new LoadTestMain();
+    new JCommander(loadTest, args);
+    boolean success = false;
+    try {
+      success = loadTest.run();
+    } catch (final Exception e) {
+      LOGGER.error("Load test failure", e);
+    } finally {
+      // exits even when a failed server start left non-daemon threads behind
+      Runtime.getRuntime().exit(success ? 0 : 1);
+    }
+  }
+
+  private boolean run() throws IOException, InterruptedException {
+    File results = new File(resultsDir);
+    if (!results.isDirectory() && !results.mkdirs()) {
+      throw new IOException("Cannot create " + results);
+    }
+    if (Strings.isNullOrEmpty(System.getProperty(JETTY_HOME))) {
+      System.setProperty(JETTY_HOME, results.getAbsolutePath());
+    }
+    List<URL> targets = new ArrayList<>();
+    for (String path : COMMA_SPLITTER.split(paths)) {
+      targets.add(new URL("http", "127.0.0.1", serverPort, path));
+    }
+
+    LoadTestServer server = new LoadTestServer(new String[] {
+      "--bind_address=127.0.0.1",
+      "--server_port=" + serverPort,
+    });
+    server.startAsync().awaitRunning();
+    List<RateResult> measured = new ArrayList<>();
+    try {
+      OpenLoopLoad load = new OpenLoopLoad(targets, connections);
+      for (String rate : COMMA_SPLITTER.split(rates)) {
+        RateResult result = load.run(Integer.parseInt(rate), warmupSeconds * 1000L, durationSeconds * 1000L);
+        LOGGER.info("{}", result);
+        writeHistogram(new File(results, "rate-" + rate + ".hgrm"), result.getLatency());
+        writeHistogram(new File(results, "rate-" + rate + "-service.hgrm"), result.getServiceTime());
+        measured.add(result);
+      }
+    } finally {
+      server.stopAsync().awaitTerminated();
+    }
+
+    LoadBaseline current = LoadBaseline.of(measured);
+    current.write(new File(results, "results.properties"), "load test results");
+    File baselineFile = new File(baseline);
+    if (updateBaseline) {
+      current.write(baselineFile, "load test baseline, p99 latency in microseconds and throughput in req/s");
+      LOGGER.info("Baseline written to {}", baselineFile);
+      return true;
+    }
+
+    List<String> failures = new ArrayList<>();
+    for (RateResult result : measured) {
+      if (result.getErrorRate() > maxErrorRate) {
+        failures.add(String.format(
+          "%d req/s: %d of %d requests failed", result.getRate(), result.getErrors(), result.getScheduled()
+        ));
+      }
+    }
+    if (baselineFile.isFile()) {
+      failures.addAll(
+        LoadBaseline.read(baselineFile).regressions(measured, maxP99Regression, maxThroughputRegression)
+      );
+    } else {
+      failures.add(String.format(
+        "no baseline at %s to compare p99 and throughput with, run with --update_baseline=true to record one",
+        baselineFile
+      ));
+    }
+    for (String failure : failures) {
+      LOGGER.error("Load test regression: {}", failure);
+    }
+    return failures.isEmpty();
+  }
+
+  /**
+   * Writes a percentile distribution, in milliseconds, in the HdrHistogram text format that its
+   * plotter reads.
+   */
+  private static void writeHistogram(final File file, final Histogram histogram) throws IOException {
+    try (PrintStream out = new PrintStream(new FileOutputStream(file), false, "UTF-8")) {
+      histogram.outputPercentileDistribution(out, MICROS_PER_MILLI);
+    }
+  }
+
+}
@@ -0,0 +1,40 @@
+package net.opecko.http.load;
+
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import net.opecko.http.HttpServer;
+import net.opecko.http.jersey.JerseyModule;
+
+/**
+ * The production {@link HttpServer} with every primary module, plus Jersey serving
+ * {@link SampleResource}.
+ */
+public class LoadTestServer extends HttpServer {
+
+  public LoadTestServer(final String[] args) {
+    super(args);
+  }
+
+  @Override
+  protected List<Module> getModules() {
+    return ImmutableList.<Module>builder()
+      .addAll(super.getModules())
+      .add(new JerseyModule())
+      .add(new SampleResourceModule())
+      .build();
+  }
+
+  private static final class SampleResourceModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      bind(SampleResource.class);
+    }
+
+  }
+
+}
@@ -0,0 +1,164 @@
+package net.opecko.http.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * An open-loop load generator: requests are due at fixed intervals whatever the server does, and
+ * each one's latency is taken from when it was due rather than from when a connection got around
+ * to sending it. A closed-loop tester waits for each response before sending the next request, so
+ * a server stall delays the requests that would have measured it (coordinated omission); here the
+ * stall shows up in every request due during it.
+ * <p>
+ * Requests go round-robin over {@code targets} through a pool of {@code connections} keep-alive
+ * connections. Requests due while all connections are busy wait, and their wait is latency.
+ */
+final class OpenLoopLoad {
+
+  private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+  private static final int SIGNIFICANT_DIGITS = 3;
+  private static final int TIMEOUT_MILLIS = 30000;
+
+  private final List<URL> targets;
+  private final int connections;
+
+  OpenLoopLoad(final List<URL> targets, final int connections) {
+    Preconditions.checkArgument(!targets.isEmpty(), "No load test targets");
+    Preconditions.checkArgument(connections > 0, "Connections must be positive");
+    this.targets = ImmutableList.copyOf(targets);
+    this.connections = connections;
+    // the JDK keeps at most this many idle keep-alive connections per destination
+    System.setProperty("http.maxConnections", Integer.toString(connections));
+  }
+
+  /**
+   * Sends {@code rate} requests per second for {@code warmupMillis} unmeasured, then for
+   * {@code durationMillis} measured, and waits for the measured requests to finish.
+   */
+  RateResult run(final int rate, final long warmupMillis, final long durationMillis) throws InterruptedException {
+    Preconditions.checkArgument(rate > 0, "Rate must be positive");
+    final Recorder latency = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    final Recorder serviceTime = new Recorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    final AtomicLong lastCompletion = new AtomicLong();
+
+    long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+    long start = System.nanoTime();
+    final long measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+    long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+    long scheduled = 0;
+
+    ExecutorService executor = Executors.newFixedThreadPool(connections, new LoadThreadFactory(rate));
+    try {
+      for (long i = 0; ; i++) {
+        final long intended = start + i * intervalNanos;
+        if (intended >= end) {
+          break;
+        }
+        long delay;
+        while ((delay = intended - System.nanoTime()) > 0) {
+          LockSupport.parkNanos(delay);
+        }
+        final boolean measured = intended >= measureStart;
+        if (measured) {
+          scheduled++;
+        }
+        final URL target = targets.get((int) (i % targets.size()));
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            long sent = System.nanoTime();
+            boolean success = send(target);
+            long done = System.nanoTime();
+            if (measured && success) {
+              latency.recordValue(toMicros(done - intended));
+              serviceTime.recordValue(toMicros(done - sent));
+              long last;
+              while ((last = lastCompletion.get()) < done && !lastCompletion.compareAndSet(last, done)) {
+                // retry
+              }
+            }
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+    }
+    if (!executor.awaitTermination(durationMillis + TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+      executor.shutdownNow();
+    }
+
+    // failed and unfinished requests are the ones missing from the latencies
+    Histogram latencies = latency.getIntervalHistogram();
+    long finished = latencies.getTotalCount();
+    long window = Math.max(end, lastCompletion.get()) - measureStart;
+    return new RateResult(
+      rate,
+      scheduled,
+      scheduled - finished,
+      finished / (window / (double) TimeUnit.SECONDS.toNanos(1)),
+      latencies,
+      serviceTime.getIntervalHistogram()
+    );
+  }
+
+  private static long toMicros(final long nanos) {
+    return Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS);
+  }
+
+  /**
+   * @return whether the target answered with a success status
+   */
+  private static boolean send(final URL target) {
+    try {
+      HttpURLConnection connection = (HttpURLConnection) target.openConnection();
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+      int status = connection.getResponseCode();
+      // reading the body to its end and closing it hands the connection back for keep-alive
+      try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        if (null != in) {
+          ByteStreams.copy(in, ByteStreams.nullOutputStream());
+        }
+      }
+      return status < 400;
+    } catch (final IOException e) {
+      return false;
+    }
+  }
+
+  private static final class LoadThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final int rate;
+
+    LoadThreadFactory(final int rate) {
+      this.rate = rate;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      Thread thread = new Thread(runnable, "load-" + rate + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+
+  }
+
+}
@@ -0,0 +1,104 @@
+package net.opecko.http.load;
+
+import java.util.Locale;
+
+import com.google.common.base.Objects;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * What one fixed-rate phase of the load test measured. Latencies are in microseconds.
+ */
+final class RateResult {
+
+  private final int rate;
+  private final long scheduled;
+  private final long errors;
+  private final double throughput;
+  private final Histogram latency;
+  private final Histogram serviceTime;
+
+  RateResult(
+    final int rate,
+    final long scheduled,
+    final long errors,
+    final double throughput,
+    final Histogram latency,
+    final Histogram serviceTime
+  ) {
+    this.rate = rate;
+    this.scheduled = scheduled;
+    this.errors = errors;
+    this.throughput = throughput;
+    this.latency = latency;
+    this.serviceTime = serviceTime;
+  }
+
+  /**
+   * @return the requested rate in requests per second
+   */
+  int getRate() {
+    return rate;
+  }
+
+  /**
+   * @return the number of requests due in the measurement window
+   */
+  long getScheduled() {
+    return scheduled;
+  }
+
+  /**
+   * @return the number of requests that failed, answered with an error status or never finished
+   */
+  long getErrors() {
+    return errors;
+  }
+
+  double getErrorRate() {
+    return scheduled == 0 ? 0 : (double) errors / scheduled;
+  }
+
+  /**
+   * @return successful responses per second over the measurement window, until the last of them
+   *     arrived
+   */
+  double getThroughput() {
+    return throughput;
+  }
+
+  /**
+   * @return latency from each request's intended start, so requests delayed behind a stalled
+   *     server count the stall
+   */
+  Histogram getLatency() {
+    return latency;
+  }
+
+  /**
+   * @return latency from each request's actual send, what a closed-loop tester would report
+   */
+  Histogram getServiceTime() {
+    return serviceTime;
+  }
+
+  long getP99() {
+    return latency.getValueAtPercentile(99.0);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("rate", rate)
+      .add("scheduled", scheduled)
+      .add("errors", errors)
+      .add("throughput", String.format(Locale.ROOT, "%.1f", throughput))
+      .add("p50", latency.getValueAtPercentile(50.0))
+      .add("p99", getP99())
+      .add("p999", latency.getValueAtPercentile(99.9))
+      .add("max", latency.getMaxValue())
+      .add("serviceP99", serviceTime.getValueAtPercentile(99.0))
+      .toString();
+  }
+
+}
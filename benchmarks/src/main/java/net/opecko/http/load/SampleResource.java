@@ -0,0 +1,57 @@
+package net.opecko.http.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * The Jersey resource the load test drives: a single widget and a page of widgets, serialized by
+ * Jackson like a typical JSON API.
+ */
+@Path("/sample")
+@Produces(MediaType.APPLICATION_JSON)
+public class SampleResource {
+
+  private static final int MAX_COUNT = 1000;
+
+  @GET
+  @Path("/widgets/{id}")
+  public Map<String, Object> get(@PathParam("id") final long id) {
+    return widget(id);
+  }
+
+  @GET
+  @Path("/widgets")
+  public List<Map<String, Object>> list(@QueryParam("count") @DefaultValue("10") final int count) {
+    int size = Math.max(0, Math.min(count, MAX_COUNT));
+    List<Map<String, Object>> widgets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      widgets.add(widget(i));
+    }
+    return widgets;
+  }
+
+  private static Map<String, Object> widget(final long id) {
+    Map<String, Object> widget = new TreeMap<>();
+    widget.put("id", id);
+    widget.put("name", "widget-" + id);
+    widget.put("price", id * 1.25);
+    widget.put("available", id % 2 == 0);
+    List<String> tags = new ArrayList<>(4);
+    for (int i = 0; i < 4; i++) {
+      tags.add("tag" + i);
+    }
+    widget.put("tags", tags);
+    return widget;
+  }
+
+}
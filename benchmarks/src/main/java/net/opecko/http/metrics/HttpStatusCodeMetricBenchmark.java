@@ -0,0 +1,88 @@
+package net.opecko.http.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+
+import com.sun.jersey.api.model.AbstractResource;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.server.impl.modelapi.annotation.IntrospectionModeller;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-request status code counting of {@link HttpStatusCodeMetricResourceFilter}, and the
+ * metric naming done by {@link HttpStatusCodeMetricResourceFilterFactory} once per resource method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HttpStatusCodeMetricBenchmark {
+
+  @Param({ "200", "503" })
+  private int status;
+
+  private HttpStatusCodeMetricResourceFilter filter;
+  private ContainerResponse response;
+  private AbstractResourceMethod resourceMethod;
+  private AbstractResourceMethod subResourceMethod;
+
+  @Setup
+  public void setUp() {
+    filter = new HttpStatusCodeMetricResourceFilter("/widgets GET", WidgetResource.class, new MetricsRegistry());
+    response = new ContainerResponse(null, null, null);
+    response.setStatus(status);
+    AbstractResource resource = IntrospectionModeller.createResource(WidgetResource.class);
+    resourceMethod = resource.getResourceMethods().get(0);
+    subResourceMethod = resource.getSubResourceMethods().get(0);
+  }
+
+  @Benchmark
+  public ContainerResponse filter() {
+    return filter.filter(null, response);
+  }
+
+  @Benchmark
+  public String metricBaseName() {
+    return HttpStatusCodeMetricResourceFilterFactory.getMetricBaseName(resourceMethod);
+  }
+
+  @Benchmark
+  public String subResourceMetricBaseName() {
+    return HttpStatusCodeMetricResourceFilterFactory.getMetricBaseName(subResourceMethod);
+  }
+
+  @Path("/widgets/")
+  public static class WidgetResource {
+
+    @GET
+    public String list() {
+      return "";
+    }
+
+    @GET
+    @Path("/{id}/")
+    public String get(@PathParam("id") final String id) {
+      return id;
+    }
+
+  }
+
+}
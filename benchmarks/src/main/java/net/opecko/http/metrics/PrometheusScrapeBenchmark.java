@@ -0,0 +1,86 @@
+package net.opecko.http.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A full Prometheus scrape by {@link PrometheusFormatter} of a registry holding {@code routes}
+ * routes' worth of counters, gauges, histograms and timers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PrometheusScrapeBenchmark {
+
+  @Param({ "10", "100" })
+  private int routes;
+
+  @Param({ "false", "true" })
+  private boolean openMetrics;
+
+  private PrometheusFormatter formatter;
+  private StringWriter out;
+
+  @Setup
+  public void setUp() {
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    for (int i = 0; i < routes; i++) {
+      String route = "/route" + i + " GET";
+      for (int status : new int[] { 200, 404, 500 }) {
+        Counter counter = metricsRegistry.newCounter(PrometheusScrapeBenchmark.class, route + " " + status + " counter");
+        counter.inc(i + status);
+      }
+      final int value = i;
+      metricsRegistry.newGauge(PrometheusScrapeBenchmark.class, route + " active", new Gauge<Integer>() {
+        @Override
+        public Integer value() {
+          return value;
+        }
+      });
+      Histogram histogram = metricsRegistry.newHistogram(PrometheusScrapeBenchmark.class, route + " allocated bytes", true);
+      Timer timer = metricsRegistry.newTimer(
+        PrometheusScrapeBenchmark.class,
+        route + " latency",
+        TimeUnit.MILLISECONDS,
+        TimeUnit.SECONDS
+      );
+      for (int j = 0; j < 1000; j++) {
+        histogram.update(j * 64L);
+        timer.update(j, TimeUnit.MICROSECONDS);
+      }
+    }
+    formatter = new PrometheusFormatter(metricsRegistry);
+    out = new StringWriter(1 << 20);
+  }
+
+  @Benchmark
+  public int scrape() throws IOException {
+    out.getBuffer().setLength(0);
+    formatter.write(out, Collections.<String>emptyList(), openMetrics);
+    return out.getBuffer().length();
+  }
+
+}
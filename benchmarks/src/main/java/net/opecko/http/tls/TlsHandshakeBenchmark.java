@@ -0,0 +1,184 @@
+package net.opecko.http.tls;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Module;
+import com.google.inject.Stage;
+
+import net.opecko.http.config.server.HttpStackServer;
+import net.opecko.http.flags.FlagsModuleBuilder;
+import net.opecko.http.jetty.JettyModule;
+import net.opecko.http.lifecycle.LifecycleModule;
+import net.opecko.http.lifecycle.ServiceLifecycleManager;
+import net.opecko.http.metrics.MetricsModule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handshakes per second against the {@link TlsModule} connector over loopback, with a self-signed
+ * certificate generated by {@code keytool} at setup. {@code full} handshakes with a new session
+ * each time; {@code resumed} resumes the client's cached session. Each operation also fetches
+ * {@code /metrics/ping}: TLS 1.3 servers send the session ticket after the handshake, so a client
+ * that never reads has nothing to resume.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TlsHandshakeBenchmark {
+
+  private static final String PASSWORD = "benchmark";
+  private static final int PORT = 18443;
+  private static final String KEYSTORE_TYPE = "PKCS12";
+  private static final byte[] PING_REQUEST =
+      "GET /metrics/ping HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+  @Param({ "TLSv1.2", "TLSv1.3" })
+  private String protocol;
+
+  @Param({ "EC", "RSA" })
+  private String keyAlgorithm;
+
+  private File keystore;
+  private ServiceLifecycleManager lifecycleManager;
+  private Service httpStackServer;
+  private SSLSocketFactory fullFactory;
+  private SSLSocketFactory resumingFactory;
+
+  @Setup
+  public void setUp() throws Exception {
+    keystore = File.createTempFile("tls-benchmark", ".p12");
+    keystore.delete();
+    generateSelfSigned(keystore, keyAlgorithm);
+    Injector injector = Guice.createInjector(
+      Stage.PRODUCTION,
+      new FlagsModuleBuilder()
+        .addModules(Arrays.<Module>asList(
+          new JettyModule(),
+          new TlsModule(),
+          new LifecycleModule(),
+          new MetricsModule()
+        ))
+        .build(
+          "--server_port=0",
+          "--bind_address=127.0.0.1",
+          "--tls_port=" + PORT,
+          "--tls_keystore=" + keystore.getPath(),
+          "--tls_keystore_type=" + KEYSTORE_TYPE,
+          "--tls_keystore_password=" + PASSWORD,
+          "--tls_protocols=" + protocol
+        )
+    );
+    lifecycleManager = injector.getInstance(ServiceLifecycleManager.class);
+    httpStackServer = injector.getInstance(Key.get(Service.class, HttpStackServer.class));
+    if (!lifecycleManager.startAll()) {
+      throw new IllegalStateException("Failure starting services");
+    }
+    httpStackServer.startAsync().awaitRunning();
+    fullFactory = newClientContext().getSocketFactory();
+    resumingFactory = newClientContext().getSocketFactory();
+  }
+
+  @TearDown
+  public void tearDown() {
+    httpStackServer.stopAsync().awaitTerminated();
+    lifecycleManager.stopAll();
+    keystore.delete();
+  }
+
+  @Benchmark
+  public SSLSession full() throws IOException {
+    SSLSession session = handshake(fullFactory);
+    // so the next handshake cannot resume it
+    session.invalidate();
+    return session;
+  }
+
+  @Benchmark
+  public SSLSession resumed() throws IOException {
+    return handshake(resumingFactory);
+  }
+
+  private SSLSession handshake(final SSLSocketFactory factory) throws IOException {
+    Socket plain = new Socket();
+    // without it the client's last handshake flight waits on a delayed ACK
+    plain.setTcpNoDelay(true);
+    plain.connect(new InetSocketAddress("127.0.0.1", PORT));
+    try (SSLSocket socket = (SSLSocket) factory.createSocket(plain, "127.0.0.1", PORT, true)) {
+      socket.setEnabledProtocols(new String[] {protocol});
+      socket.startHandshake();
+      socket.getOutputStream().write(PING_REQUEST);
+      ByteStreams.toByteArray(socket.getInputStream());
+      return socket.getSession();
+    }
+  }
+
+  private SSLContext newClientContext() throws IOException, GeneralSecurityException {
+    KeyStore trusted = KeyStore.getInstance(KEYSTORE_TYPE);
+    try (InputStream in = new FileInputStream(keystore)) {
+      trusted.load(in, PASSWORD.toCharArray());
+    }
+    TrustManagerFactory trustManagerFactory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+    trustManagerFactory.init(trusted);
+    SSLContext context = SSLContext.getInstance("TLS");
+    context.init(null, trustManagerFactory.getTrustManagers(), null);
+    return context;
+  }
+
+  private static void generateSelfSigned(final File file, final String keyAlgorithm) throws IOException, InterruptedException {
+    Process keytool = new ProcessBuilder(
+      new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+      "-genkeypair",
+      "-alias", "server",
+      "-keyalg", keyAlgorithm,
+      "-keysize", "EC".equals(keyAlgorithm) ? "256" : "2048",
+      "-dname", "CN=localhost",
+      "-validity", "30",
+      "-storetype", KEYSTORE_TYPE,
+      "-keystore", file.getPath(),
+      "-storepass", PASSWORD,
+      "-keypass", PASSWORD
+    ).redirectErrorStream(true).start();
+    String output = CharStreams.toString(new InputStreamReader(keytool.getInputStream(), StandardCharsets.UTF_8));
+    if (keytool.waitFor() != 0) {
+      throw new IllegalStateException("keytool failed generating " + file + ": " + output);
+    }
+  }
+
+}
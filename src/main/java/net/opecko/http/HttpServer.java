@@ -1,12 +1,8 @@
 package net.opecko.http;
 
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -14,11 +10,9 @@ import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.AbstractService;
 import com.google.common.util.concurrent.Service;
-import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.Key;
@@ -27,10 +21,29 @@ import com.google.inject.Stage;
 import com.google.inject.TypeLiteral;
 import com.google.inject.util.Types;
 
+import net.opecko.http.accesslog.AccessLogModule;
+import net.opecko.http.client.HttpClientModule;
 import net.opecko.http.config.server.HttpStackServer;
+import net.opecko.http.deadline.DeadlineModule;
+import net.opecko.http.flags.DynamicFlagsModule;
 import net.opecko.http.flags.FlagsModuleBuilder;
+import net.opecko.http.fleet.FleetModule;
 import net.opecko.http.jetty.JettyModule;
+import net.opecko.http.jfr.JfrModule;
+import net.opecko.http.lifecycle.LifecycleModule;
+import net.opecko.http.lifecycle.ServiceLifecycleManager;
+import net.opecko.http.lifecycle.ServiceTransitionListener;
+import net.opecko.http.lifecycle.ServiceTransitions;
 import net.opecko.http.metrics.MetricsModule;
+import net.opecko.http.priority.PriorityModule;
+import net.opecko.http.profiler.ProfilerModule;
+import net.opecko.http.slowlog.SlowRequestModule;
+import net.opecko.http.sse.EventStreamModule;
+import net.opecko.http.tls.TlsModule;
+import net.opecko.http.tracing.TracingModule;
+import net.opecko.http.training.TrainingRun;
+import net.opecko.http.training.TrainingRunModule;
+import net.opecko.http.upload.UploadModule;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,40 +55,6 @@ public class HttpServer extends AbstractService {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(HttpServer.class);
   private static final String JETTY_HOME = "jetty.home";
-  private static final Function<Service, Future<Service.State>> START = new Function<Service, Future<Service.State>>() {
-    @Override
-    public Future<Service.State> apply(final Service service) {
-      final SettableFuture<Service.State> future = SettableFuture.create();
-      service.addListener(
-        new Service.Listener() {
-          @Override
-          public void running() {
-            future.set(Service.State.RUNNING);
-          }
-        },
-        Executors.newSingleThreadExecutor()
-      );
-      service.startAsync();
-      return future;
-    }
-  };
-  private static final Function<Service, Future<Service.State>> STOP = new Function<Service, Future<Service.State>>() {
-    @Override
-    public Future<Service.State> apply(final Service service) {
-      final SettableFuture<Service.State> future = SettableFuture.create();
-      service.addListener(
-        new Service.Listener() {
-          @Override
-          public void terminated(final Service.State from) {
-            future.set(Service.State.TERMINATED);
-          }
-        },
-        Executors.newSingleThreadExecutor()
-      );
-      service.stopAsync();
-      return future;
-    }
-  };
   private static final Function<Service, String> NAME = new Function<Service, String>() {
     @Override public String apply(final Service service) {
       return service.getClass().getSimpleName();
@@ -84,6 +63,7 @@ public class HttpServer extends AbstractService {
 
   private final String[] args;
   @Nullable private Thread shutdownHook;
+  @Nullable private volatile TrainingRun trainingRun;
 
   public HttpServer(final String[] args) {
     this.args = Arrays.copyOf(args, args.length);
@@ -102,6 +82,12 @@ public class HttpServer extends AbstractService {
     try {
       startAsync().awaitRunning();
       success = isRunning();
+      TrainingRun training = trainingRun;
+      if (success && null != training && training.isEnabled()) {
+        success = training.run();
+        stopAsync().awaitTerminated();
+        Runtime.getRuntime().exit(success ? 0 : 1);
+      }
     } catch (final Exception e) {
       LOGGER.error("Initialization failure", e);
     } finally {
@@ -151,7 +137,17 @@ public class HttpServer extends AbstractService {
     TypeLiteral<Set<Service>> typeLiteral = (TypeLiteral<Set<Service>>)
         TypeLiteral.get(Types.newParameterizedType(Set.class, Service.class));
     final Set<Service> services = injector.getInstance(Key.get(typeLiteral));
+    final ServiceLifecycleManager lifecycleManager = injector.getInstance(ServiceLifecycleManager.class);
     final Service httpStackServer = injector.getInstance(Key.get(Service.class, HttpStackServer.class));
+    trainingRun = injector.getInstance(TrainingRun.class);
+
+    @SuppressWarnings("unchecked")
+    TypeLiteral<Set<ServiceTransitionListener>> listenersLiteral = (TypeLiteral<Set<ServiceTransitionListener>>)
+        TypeLiteral.get(Types.newParameterizedType(Set.class, ServiceTransitionListener.class));
+    Set<ServiceTransitionListener> listeners = injector.getInstance(Key.get(listenersLiteral));
+    for (Service service : Iterables.concat(services, Arrays.asList(httpStackServer))) {
+      ServiceTransitions.listen(service, listeners);
+    }
 
     Runtime.getRuntime().addShutdownHook(shutdownHook = new Thread() {
       @Override
@@ -159,7 +155,7 @@ public class HttpServer extends AbstractService {
         LOGGER.info("Shutdown initiated. Shutting down server...");
         httpStackServer.stopAsync().awaitTerminated();
 
-        if (!applyAndWait(services, Service.State.TERMINATED, STOP)) {
+        if (!lifecycleManager.stopAll()) {
           LOGGER.error("Failure stopping services");
         }
       }
@@ -167,7 +163,7 @@ public class HttpServer extends AbstractService {
 
     LOGGER.info("Services installed: {}", Joiner.on(", ").join(Iterables.transform(services, NAME)));
 
-    if (applyAndWait(services, Service.State.RUNNING, START)) {
+    if (lifecycleManager.startAll()) {
       httpStackServer.startAsync().awaitRunning();
       notifyStarted();
     } else {
@@ -175,39 +171,30 @@ public class HttpServer extends AbstractService {
     }
   }
 
-  private boolean applyAndWait(
-      final Collection<Service> services,
-      final Service.State expectedState,
-      final Function<Service, Future<Service.State>> function
-  ) {
-    boolean success = true;
-
-    try {
-      Collection<Future<Service.State>> futures = Collections2.transform(services, function);
-      for (Future<Service.State> future : futures) {
-        try {
-          if (future.get() != expectedState) {
-            success = false;
-          }
-        } catch (final InterruptedException e) {
-          Thread.currentThread().interrupt();
-          LOGGER.warn("Service control failure", e);
-        }
-      }
-    } catch (final ExecutionException e) {
-      LOGGER.warn("Service control failure", e);
-    }
-    return success;
-  }
-
   /**
    * Configures the server with all primary modules to load.
    * You can override this to add or remove modules.
    */
   protected List<Module> getModules() {
+    HttpClientModule httpClientModule = new HttpClientModule();
     return Arrays.<Module>asList(
       new JettyModule(),
-      new MetricsModule()
+      new TlsModule(),
+      new LifecycleModule(),
+      new DynamicFlagsModule(),
+      new MetricsModule(),
+      new SlowRequestModule(),
+      new FleetModule(httpClientModule),
+      new UploadModule(),
+      new AccessLogModule(),
+      new DeadlineModule(),
+      new PriorityModule(),
+      new JfrModule(),
+      new TracingModule(),
+      new ProfilerModule(),
+      new EventStreamModule(),
+      httpClientModule,
+      new TrainingRunModule()
     );
   }
 
@@ -0,0 +1,110 @@
+package net.opecko.http.accesslog;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Bounded, lock-free, multi-producer single-consumer ring of preallocated
+ * {@link AccessLogRecord}s.
+ * <p>
+ * Request threads claim a slot with a compare-and-set on the claim sequence, fill it in place and
+ * publish it; when the ring is full the record is dropped rather than waiting for the writer. The
+ * writer thread takes published records in sequence order and releases each slot once it has
+ * encoded it.
+ */
+final class AccessLogBuffer {
+
+  private final AccessLogRecord[] records;
+  private final int mask;
+  private final AtomicLong claimed;
+  private final AtomicLong released;
+  private final AtomicLong dropped;
+  // next sequence to take, only touched by the writer thread
+  private long next;
+
+  AccessLogBuffer(final int capacity) {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 24, "capacity out of range: %s", capacity);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.records = new AccessLogRecord[size];
+    for (int i = 0; i < size; i++) {
+      records[i] = new AccessLogRecord();
+    }
+    this.mask = size - 1;
+    this.claimed = new AtomicLong();
+    this.released = new AtomicLong();
+    this.dropped = new AtomicLong();
+  }
+
+  /**
+   * Claims the next slot for the calling request thread, or returns {@code null} and counts a drop
+   * if the writer is a full ring behind. A claimed slot must be {@link #publish published}.
+   */
+  @Nullable
+  AccessLogRecord claim() {
+    long sequence;
+    do {
+      sequence = claimed.get();
+      if (sequence - released.get() >= records.length) {
+        dropped.incrementAndGet();
+        return null;
+      }
+    } while (!claimed.compareAndSet(sequence, sequence + 1));
+    AccessLogRecord record = records[(int) (sequence & mask)];
+    record.claimedSequence = sequence;
+    return record;
+  }
+
+  /**
+   * Makes a filled record visible to the writer thread.
+   */
+  void publish(final AccessLogRecord record) {
+    record.publish();
+  }
+
+  /**
+   * Returns the next record in sequence if it has been published, for the writer thread.
+   */
+  @Nullable
+  AccessLogRecord take() {
+    AccessLogRecord record = records[(int) (next & mask)];
+    return record.getSequence() == next ? record : null;
+  }
+
+  /**
+   * Hands the slot of the record last {@link #take taken} back to request threads.
+   */
+  void release(final AccessLogRecord record) {
+    record.clear();
+    next++;
+    released.lazySet(next);
+  }
+
+  long getBacklog() {
+    return claimed.get() - released.get();
+  }
+
+  long getDropped() {
+    return dropped.get();
+  }
+
+  int getCapacity() {
+    return records.length;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("capacity", records.length)
+      .add("backlog", getBacklog())
+      .add("dropped", dropped.get())
+      .toString();
+  }
+
+}
@@ -0,0 +1,89 @@
+package net.opecko.http.accesslog;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+
+import org.eclipse.jetty.server.HttpChannel;
+
+/**
+ * Publishes a record of every request to the {@link AccessLogBuffer}, leaving all formatting and
+ * I/O to the {@link AccessLogWriter} thread.
+ */
+public class AccessLogFilter implements Filter {
+
+  private final AccessLogBuffer buffer;
+
+  public AccessLogFilter(final AccessLogWriter writer) {
+    this.buffer = Preconditions.checkNotNull(writer).getBuffer();
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    long startNanos = System.nanoTime();
+    boolean failed = true;
+    try {
+      chain.doFilter(request, response);
+      failed = false;
+    } finally {
+      AccessLogRecord record = buffer.claim();
+      if (null != record) {
+        try {
+          fill(record, (HttpServletRequest) request, (HttpServletResponse) response, startNanos, failed);
+        } finally {
+          // the writer waits for every claimed slot, so it must be published no matter what
+          buffer.publish(record);
+        }
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+  private static void fill(
+      final AccessLogRecord record,
+      final HttpServletRequest request,
+      final HttpServletResponse response,
+      final long startNanos,
+      final boolean failed
+  ) {
+    HttpChannel<?> channel = HttpChannel.getCurrentHttpChannel();
+    long timestamp = null == channel ? 0L : channel.getRequest().getTimeStamp();
+    InetSocketAddress remote = null == channel ? null : channel.getRemoteAddress();
+    record.timestampMillis = timestamp > 0 ? timestamp : System.currentTimeMillis();
+    record.durationMicros = (System.nanoTime() - startNanos) / 1000;
+    record.remoteAddress = null == remote ? null : remote.getAddress();
+    record.bytes = null == channel ? -1L : channel.getResponse().getHttpOutput().getWritten();
+    record.status = failed && !response.isCommitted()
+        ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR
+        : response.getStatus();
+    record.setMethod(request.getMethod());
+    record.setUri(request.getRequestURI(), request.getQueryString());
+    record.setRoute(RouteResourceFilterFactory.getRoute(request));
+  }
+
+}
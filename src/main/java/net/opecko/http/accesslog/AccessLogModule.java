@@ -0,0 +1,111 @@
+package net.opecko.http.accesslog;
+
+import java.nio.file.Paths;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.config.accesslog.AccessLogBufferSize;
+import net.opecko.http.config.accesslog.AccessLogFile;
+import net.opecko.http.config.accesslog.AccessLogMaxFileSize;
+import net.opecko.http.config.accesslog.AccessLogMaxFiles;
+import net.opecko.http.servlet.FilterDefinition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for the asynchronous access log.
+ */
+@Parameters(separators = "=")
+public class AccessLogModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogModule.class);
+
+  @Parameter(names = "--access_log", description = "Access log file (empty = disabled)")
+  private String accessLog = "";
+
+  @Parameter(names = "--access_log_buffer_size",
+      description = "Records buffered for the access log writer before new ones are dropped")
+  private int accessLogBufferSize = 65536;
+
+  @Parameter(names = "--access_log_max_file_size", description = "Size in bytes at which the access log is rotated")
+  private long accessLogMaxFileSize = 100L * 1024 * 1024;
+
+  @Parameter(names = "--access_log_max_files", description = "Number of rotated access log files kept")
+  private int accessLogMaxFiles = 10;
+
+  @Override
+  protected void configure() {
+    if (Strings.isNullOrEmpty(accessLog)) {
+      LOGGER.info("Access log not installed");
+      return;
+    }
+    bind(String.class).annotatedWith(AccessLogFile.class).toInstance(accessLog);
+    bind(Integer.class).annotatedWith(AccessLogBufferSize.class).toInstance(accessLogBufferSize);
+    bind(Long.class).annotatedWith(AccessLogMaxFileSize.class).toInstance(accessLogMaxFileSize);
+    bind(Integer.class).annotatedWith(AccessLogMaxFiles.class).toInstance(accessLogMaxFiles);
+    bind(AccessLogWriter.class).toProvider(AccessLogWriterProvider.class).in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), Service.class).addBinding().to(AccessLogWriter.class);
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(AccessLogFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+  }
+
+  private static final class AccessLogWriterProvider implements Provider<AccessLogWriter> {
+
+    private final String file;
+    private final int bufferSize;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final MetricsRegistry metricsRegistry;
+
+    @Inject
+    private AccessLogWriterProvider(
+        @AccessLogFile final String file,
+        @AccessLogBufferSize final Integer bufferSize,
+        @AccessLogMaxFileSize final Long maxFileSize,
+        @AccessLogMaxFiles final Integer maxFiles,
+        final MetricsRegistry metricsRegistry
+    ) {
+      this.file = file;
+      this.bufferSize = bufferSize;
+      this.maxFileSize = maxFileSize;
+      this.maxFiles = maxFiles;
+      this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public AccessLogWriter get() {
+      return new AccessLogWriter(Paths.get(file), bufferSize, maxFileSize, maxFiles, metricsRegistry);
+    }
+
+  }
+
+  private static final class AccessLogFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final AccessLogWriter accessLogWriter;
+
+    @Inject
+    private AccessLogFilterDefinitionProvider(final AccessLogWriter accessLogWriter) {
+      this.accessLogWriter = accessLogWriter;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(new AccessLogFilter(accessLogWriter), "/*");
+    }
+
+  }
+
+}
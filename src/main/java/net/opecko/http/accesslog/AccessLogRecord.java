@@ -0,0 +1,77 @@
+package net.opecko.http.accesslog;
+
+import java.net.InetAddress;
+
+import javax.annotation.Nullable;
+
+/**
+ * A fixed-layout slot of the {@link AccessLogBuffer}.
+ * <p>
+ * Text fields are copied into preallocated arrays and truncated to their capacity, so filling a
+ * record allocates nothing. A record belongs to the request thread that claimed it until it is
+ * published, then to the writer thread until it is released.
+ */
+final class AccessLogRecord {
+
+  static final int METHOD_CAPACITY = 16;
+  static final int URI_CAPACITY = 512;
+  static final int ROUTE_CAPACITY = 128;
+
+  final char[] method = new char[METHOD_CAPACITY];
+  final char[] uri = new char[URI_CAPACITY];
+  final char[] route = new char[ROUTE_CAPACITY];
+  int methodLength;
+  int uriLength;
+  int routeLength;
+  boolean uriTruncated;
+  InetAddress remoteAddress;
+  long timestampMillis;
+  long durationMicros;
+  long bytes;
+  int status;
+  long claimedSequence;
+
+  // sequence of the record published into this slot, written last by the request thread
+  private volatile long sequence = -1;
+
+  void setMethod(final String value) {
+    methodLength = copy(value, method);
+  }
+
+  void setUri(final String path, @Nullable final String query) {
+    uriLength = copy(path, uri);
+    uriTruncated = path.length() > URI_CAPACITY;
+    if (null != query && !uriTruncated) {
+      if (uriLength < URI_CAPACITY) {
+        uri[uriLength++] = '?';
+        int length = Math.min(query.length(), URI_CAPACITY - uriLength);
+        query.getChars(0, length, uri, uriLength);
+        uriLength += length;
+      }
+      uriTruncated = uriLength < path.length() + 1 + query.length();
+    }
+  }
+
+  void setRoute(final String value) {
+    routeLength = null == value ? 0 : copy(value, route);
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  void publish() {
+    sequence = claimedSequence;
+  }
+
+  void clear() {
+    remoteAddress = null;
+  }
+
+  private static int copy(final String value, final char[] into) {
+    int length = Math.min(value.length(), into.length);
+    value.getChars(0, length, into, 0);
+    return length;
+  }
+
+}
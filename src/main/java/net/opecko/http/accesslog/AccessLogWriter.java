@@ -0,0 +1,279 @@
+package net.opecko.http.accesslog;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single thread draining the {@link AccessLogBuffer} into the access log file.
+ * <p>
+ * Records are encoded into a direct buffer and written to the file channel a batch at a time:
+ * whenever the buffer fills up, or as soon as the ring runs dry. Lines use the NCSA common log
+ * layout, followed by the duration in microseconds and the Jersey route. The file is rotated by
+ * size, keeping a bounded number of numbered predecessors.
+ */
+public class AccessLogWriter extends AbstractExecutionThreadService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AccessLogWriter.class);
+  private static final int BATCH_BYTES = 64 * 1024;
+  private static final int MAX_LINE_BYTES = 1024;
+  private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final AccessLogBuffer buffer;
+  private final Path path;
+  private final long maxFileSize;
+  private final int maxFiles;
+  private final ByteBuffer batch;
+  private final SimpleDateFormat dateFormat;
+  private final Counter written;
+  private final Counter rotations;
+  private final Counter failures;
+  @Nullable private FileChannel channel;
+  private long fileSize;
+  private long formattedSecond = -1;
+  private byte[] formattedDate = new byte[0];
+
+  public AccessLogWriter(
+      final Path path,
+      final int capacity,
+      final long maxFileSize,
+      final int maxFiles,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(maxFileSize > 0, "maximum file size must be positive");
+    Preconditions.checkArgument(maxFiles >= 0, "maximum number of files must not be negative");
+    this.buffer = new AccessLogBuffer(capacity);
+    this.path = Preconditions.checkNotNull(path);
+    this.maxFileSize = maxFileSize;
+    this.maxFiles = maxFiles;
+    this.batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+    this.dateFormat = new SimpleDateFormat("dd/MMM/yyyy:HH:mm:ss Z", Locale.US);
+    this.written = metricsRegistry.newCounter(AccessLogWriter.class, "written records");
+    this.rotations = metricsRegistry.newCounter(AccessLogWriter.class, "rotations");
+    this.failures = metricsRegistry.newCounter(AccessLogWriter.class, "write failures");
+    metricsRegistry.newGauge(AccessLogWriter.class, "dropped records", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return buffer.getDropped();
+      }
+    });
+    metricsRegistry.newGauge(AccessLogWriter.class, "backlog", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return buffer.getBacklog();
+      }
+    });
+  }
+
+  AccessLogBuffer getBuffer() {
+    return buffer;
+  }
+
+  @Override
+  protected void startUp() throws IOException {
+    LOGGER.info(
+      "Writing access log to {}, rotating at {} bytes and keeping {} files, buffering {} records",
+      path,
+      maxFileSize,
+      maxFiles,
+      buffer.getCapacity()
+    );
+    open();
+  }
+
+  @Override
+  protected void run() {
+    while (isRunning()) {
+      if (!drain()) {
+        LockSupport.parkNanos(IDLE_PARK_NANOS);
+      }
+    }
+  }
+
+  @Override
+  protected void shutDown() throws IOException {
+    drain();
+    if (null != channel) {
+      channel.force(false);
+      channel.close();
+    }
+  }
+
+  @Override
+  protected String serviceName() {
+    return "access-log-writer";
+  }
+
+  /**
+   * Writes out every record published so far, returning whether there was any.
+   */
+  private boolean drain() {
+    boolean drained = false;
+    AccessLogRecord record;
+    while (null != (record = buffer.take())) {
+      drained = true;
+      if (batch.remaining() < MAX_LINE_BYTES) {
+        flush();
+      }
+      encode(record);
+      buffer.release(record);
+      written.inc();
+    }
+    if (drained) {
+      flush();
+    }
+    return drained;
+  }
+
+  private void encode(final AccessLogRecord record) {
+    putLiteral(null == record.remoteAddress ? "-" : record.remoteAddress.getHostAddress());
+    putLiteral(" - - [");
+    long second = record.timestampMillis / 1000;
+    if (second != formattedSecond) {
+      formattedSecond = second;
+      formattedDate = dateFormat.format(new Date(record.timestampMillis)).getBytes(StandardCharsets.US_ASCII);
+    }
+    batch.put(formattedDate);
+    putLiteral("] \"");
+    putAscii(record.method, record.methodLength);
+    batch.put((byte) ' ');
+    putAscii(record.uri, record.uriLength);
+    if (record.uriTruncated) {
+      putLiteral("...");
+    }
+    putLiteral("\" ");
+    putLong(record.status);
+    batch.put((byte) ' ');
+    putLong(record.bytes);
+    batch.put((byte) ' ');
+    putLong(record.durationMicros);
+    putLiteral(" \"");
+    if (record.routeLength > 0) {
+      putAscii(record.route, record.routeLength);
+    } else {
+      batch.put((byte) '-');
+    }
+    putLiteral("\"\n");
+  }
+
+  private void putLiteral(final String value) {
+    for (int i = 0; i < value.length(); i++) {
+      batch.put((byte) value.charAt(i));
+    }
+  }
+
+  private void putAscii(final char[] value, final int length) {
+    for (int i = 0; i < length; i++) {
+      putAscii(value[i]);
+    }
+  }
+
+  private void putAscii(final char c) {
+    // keeps each record on one line, whatever the client sent
+    batch.put(c < 0x20 || c > 0x7e || c == '"' ? (byte) '?' : (byte) c);
+  }
+
+  private void putLong(final long value) {
+    if (value < 0) {
+      batch.put((byte) '-');
+      return;
+    }
+    long divisor = 1;
+    while (divisor <= value / 10) {
+      divisor *= 10;
+    }
+    for (; divisor > 0; divisor /= 10) {
+      batch.put((byte) ('0' + (value / divisor) % 10));
+    }
+  }
+
+  private void flush() {
+    batch.flip();
+    try {
+      if (null == channel) {
+        open();
+      }
+      while (batch.hasRemaining()) {
+        fileSize += channel.write(batch);
+      }
+      if (fileSize >= maxFileSize) {
+        rotate();
+      }
+    } catch (final IOException e) {
+      failures.inc();
+      LOGGER.warn("Access log write failure, discarding {} bytes", batch.remaining(), e);
+      closeQuietly();
+    } finally {
+      batch.clear();
+    }
+  }
+
+  private void rotate() throws IOException {
+    channel.close();
+    channel = null;
+    if (maxFiles == 0) {
+      Files.delete(path);
+    } else {
+      Files.deleteIfExists(rotated(maxFiles));
+      for (int i = maxFiles - 1; i >= 1; i--) {
+        if (Files.exists(rotated(i))) {
+          Files.move(rotated(i), rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+      }
+      Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+    rotations.inc();
+    open();
+  }
+
+  private Path rotated(final int index) {
+    return path.resolveSibling(path.getFileName() + "." + index);
+  }
+
+  private void open() throws IOException {
+    channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    fileSize = channel.size();
+  }
+
+  private void closeQuietly() {
+    if (null != channel) {
+      try {
+        channel.close();
+      } catch (final IOException e) {
+        LOGGER.debug("Failure closing access log", e);
+      }
+      channel = null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("path", path)
+      .add("buffer", buffer)
+      .toString();
+  }
+
+}
@@ -0,0 +1,69 @@
+package net.opecko.http.admission;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The admission permits, such as bulkhead and scheduler slots, held by the request on the current
+ * thread.
+ * <p>
+ * Jersey dispatches a resource method on the request thread, so a limiter admitting a request
+ * {@link #hold holds} its permit here. The resource filter that took it hands it back when the
+ * response goes out, and {@link AdmissionReleaseFilter} hands back whatever is still held when the
+ * request leaves Jersey without one.
+ */
+public final class AdmissionPermits {
+
+  /**
+   * A permit taken from a limiter, given back by {@link #release()}.
+   */
+  public interface Permit {
+
+    void release();
+
+  }
+
+  private static final ThreadLocal<List<Permit>> HELD = new ThreadLocal<>();
+
+  private AdmissionPermits() {
+  }
+
+  /**
+   * Remembers {@code permit} as held by the current thread.
+   */
+  public static void hold(final Permit permit) {
+    List<Permit> held = HELD.get();
+    if (null == held) {
+      held = new ArrayList<>(2);
+      HELD.set(held);
+    }
+    held.add(permit);
+  }
+
+  /**
+   * Gives {@code permit} back, if the current thread holds it.
+   */
+  public static void release(final Permit permit) {
+    List<Permit> held = HELD.get();
+    if (null != held && held.remove(permit)) {
+      if (held.isEmpty()) {
+        HELD.remove();
+      }
+      permit.release();
+    }
+  }
+
+  /**
+   * Gives back every permit the current thread holds, the latest first.
+   */
+  public static void releaseAll() {
+    List<Permit> held = HELD.get();
+    if (null != held) {
+      HELD.remove();
+      for (int i = held.size() - 1; i >= 0; i--) {
+        held.get(i).release();
+      }
+    }
+  }
+
+}
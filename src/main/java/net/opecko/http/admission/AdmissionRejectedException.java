@@ -0,0 +1,37 @@
+package net.opecko.http.admission;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Thrown when a limiter, such as a bulkhead or the priority scheduler, cannot admit a request.
+ * <p>
+ * Carries no stack trace, since rejections come in bulk under overload, and is answered by
+ * {@link AdmissionRejectedExceptionMapper} so Jersey does not log each one as a server error.
+ */
+public final class AdmissionRejectedException extends WebApplicationException {
+
+  private static final long serialVersionUID = 20261019L;
+
+  private final String reason;
+
+  /**
+   * @param reason the plain text body of the 503 response
+   */
+  public AdmissionRejectedException(final String reason) {
+    super(Response.Status.SERVICE_UNAVAILABLE);
+    this.reason = Preconditions.checkNotNull(reason);
+  }
+
+  public String getReason() {
+    return reason;
+  }
+
+  @Override
+  public synchronized Throwable fillInStackTrace() {
+    return this;
+  }
+
+}
@@ -0,0 +1,24 @@
+package net.opecko.http.admission;
+
+import javax.inject.Singleton;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Answers {@link AdmissionRejectedException} with 503.
+ */
+@Provider
+@Singleton
+public class AdmissionRejectedExceptionMapper implements ExceptionMapper<AdmissionRejectedException> {
+
+  @Override
+  public Response toResponse(final AdmissionRejectedException exception) {
+    return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+        .type(MediaType.TEXT_PLAIN_TYPE)
+        .entity(exception.getReason())
+        .build();
+  }
+
+}
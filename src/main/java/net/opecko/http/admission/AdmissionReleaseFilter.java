@@ -0,0 +1,46 @@
+package net.opecko.http.admission;
+
+import java.io.IOException;
+
+import javax.inject.Singleton;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Servlet filter placed in front of Jersey that gives back any {@link AdmissionPermits} still held
+ * when the request leaves Jersey.
+ * <p>
+ * Jersey skips resource response filters when a resource throws an exception that no
+ * {@code ExceptionMapper} handles, which would otherwise leak the permits.
+ */
+@Singleton
+public class AdmissionReleaseFilter implements Filter {
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      AdmissionPermits.releaseAll();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+}
@@ -0,0 +1,46 @@
+package net.opecko.http.bulkhead;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Bounds the number of requests concurrently executing a Jersey resource method.
+ * <p>
+ * On a method, the limit applies to that method alone. On a resource class, all methods of the
+ * class share one limit, unless a method carries its own annotation. Methods or classes that
+ * declare the same {@link #name()} share a single limit.
+ * <p>
+ * Requests that find the bulkhead full wait in a queue of at most {@link #maxQueue()} entries for
+ * up to {@link #maxWaitMillis()}; everything else is rejected with 503 right away.
+ */
+@Documented
+@Target({ TYPE, METHOD })
+@Retention(RUNTIME)
+public @interface Bulkhead {
+
+  /**
+   * Name of the bulkhead, used for sharing and for metric names. Defaults to the resource route.
+   */
+  String name() default "";
+
+  /**
+   * Maximum number of requests executing at once.
+   */
+  int maxConcurrent();
+
+  /**
+   * Maximum number of requests waiting for a free slot.
+   */
+  int maxQueue() default 0;
+
+  /**
+   * Maximum time a queued request waits for a free slot, in milliseconds.
+   */
+  long maxWaitMillis() default 1000;
+
+}
@@ -0,0 +1,185 @@
+package net.opecko.http.bulkhead;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.admission.AdmissionPermits;
+
+/**
+ * Semaphore-backed concurrency limit for one {@link Bulkhead}, with its metrics.
+ * <p>
+ * The slot taken by a request is held in {@link AdmissionPermits} and handed back by whichever of
+ * {@link BulkheadResourceFilter} or {@link net.opecko.http.admission.AdmissionReleaseFilter} sees
+ * the request finish first.
+ */
+final class BulkheadLimiter implements AdmissionPermits.Permit {
+
+  private static final Joiner SPACE_JOINER = Joiner.on(" ");
+
+  private final String name;
+  private final Bulkhead bulkhead;
+  private volatile int maxConcurrent;
+  private volatile int maxQueue;
+  private final long maxWaitMillis;
+  private final AdjustableSemaphore permits;
+  private final AtomicInteger queued;
+  private final Counter rejected;
+
+  BulkheadLimiter(
+      final String name,
+      final Bulkhead bulkhead,
+      final Class<?> klass,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(bulkhead.maxConcurrent() > 0, "maxConcurrent must be positive: %s", name);
+    Preconditions.checkArgument(bulkhead.maxQueue() >= 0, "maxQueue must not be negative: %s", name);
+    this.name = name;
+    this.bulkhead = bulkhead;
+    this.maxConcurrent = bulkhead.maxConcurrent();
+    this.maxQueue = bulkhead.maxQueue();
+    this.maxWaitMillis = bulkhead.maxWaitMillis();
+    this.permits = new AdjustableSemaphore(maxConcurrent);
+    this.queued = new AtomicInteger();
+    this.rejected = metricsRegistry.newCounter(klass, SPACE_JOINER.join(name, "bulkhead rejected"));
+    metricsRegistry.newGauge(klass, SPACE_JOINER.join(name, "bulkhead active"), new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getActive();
+      }
+    });
+    metricsRegistry.newGauge(klass, SPACE_JOINER.join(name, "bulkhead queued"), new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return queued.get();
+      }
+    });
+    metricsRegistry.newGauge(klass, SPACE_JOINER.join(name, "bulkhead utilization"), new Gauge<Double>() {
+      @Override
+      public Double value() {
+        return (double) getActive() / maxConcurrent;
+      }
+    });
+  }
+
+  /**
+   * Takes a slot for the current thread, queueing if allowed.
+   *
+   * @return {@code false} if the request must be rejected
+   */
+  boolean enter() {
+    if (!permits.tryAcquire() && !await()) {
+      rejected.inc();
+      return false;
+    }
+    AdmissionPermits.hold(this);
+    return true;
+  }
+
+  private boolean await() {
+    if (queued.incrementAndGet() > maxQueue) {
+      queued.decrementAndGet();
+      return false;
+    }
+    try {
+      return permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  /**
+   * Returns a slot taken by {@link #enter()}.
+   */
+  @Override
+  public void release() {
+    permits.release();
+  }
+
+  /**
+   * Returns whether {@code other} declares the same limits as this one's declaration.
+   */
+  boolean isCompatible(@Nullable final Bulkhead other) {
+    return null != other
+        && other.maxConcurrent() == bulkhead.maxConcurrent()
+        && other.maxQueue() == bulkhead.maxQueue()
+        && other.maxWaitMillis() == bulkhead.maxWaitMillis();
+  }
+
+  String getName() {
+    return name;
+  }
+
+  int getMaxConcurrent() {
+    return maxConcurrent;
+  }
+
+  /**
+   * Changes the concurrency limit. Lowering it below the number of active requests lets them
+   * finish, admitting no one until they have.
+   */
+  synchronized void setMaxConcurrent(final int maxConcurrent) {
+    Preconditions.checkArgument(maxConcurrent > 0, "maxConcurrent must be positive: %s", name);
+    int delta = maxConcurrent - this.maxConcurrent;
+    if (delta > 0) {
+      permits.release(delta);
+    } else {
+      permits.reducePermits(-delta);
+    }
+    this.maxConcurrent = maxConcurrent;
+  }
+
+  int getMaxQueue() {
+    return maxQueue;
+  }
+
+  void setMaxQueue(final int maxQueue) {
+    Preconditions.checkArgument(maxQueue >= 0, "maxQueue must not be negative: %s", name);
+    this.maxQueue = maxQueue;
+  }
+
+  int getActive() {
+    return maxConcurrent - permits.availablePermits();
+  }
+
+  /**
+   * Exposes {@link Semaphore#reducePermits} for resizing.
+   */
+  private static final class AdjustableSemaphore extends Semaphore {
+
+    private static final long serialVersionUID = 20261019L;
+
+    AdjustableSemaphore(final int permits) {
+      super(permits);
+    }
+
+    @Override
+    protected void reducePermits(final int reduction) {
+      super.reducePermits(reduction);
+    }
+
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("name", name)
+        .add("maxConcurrent", maxConcurrent)
+        .add("maxQueue", maxQueue)
+        .add("maxWaitMillis", maxWaitMillis)
+        .toString();
+  }
+
+}
@@ -0,0 +1,48 @@
+package net.opecko.http.bulkhead;
+
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+
+import net.opecko.http.admission.AdmissionPermits;
+import net.opecko.http.admission.AdmissionRejectedException;
+
+/**
+ * Admits requests to a resource method through its {@link BulkheadLimiter}, answering 503 when
+ * the bulkhead is full.
+ */
+public class BulkheadResourceFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+  private final BulkheadLimiter limiter;
+
+  BulkheadResourceFilter(final BulkheadLimiter limiter) {
+    this.limiter = limiter;
+  }
+
+  @Override
+  public ContainerRequest filter(final ContainerRequest request) {
+    if (!limiter.enter()) {
+      throw new AdmissionRejectedException("Bulkhead full");
+    }
+    return request;
+  }
+
+  @Override
+  public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+    AdmissionPermits.release(limiter);
+    return response;
+  }
+
+  @Override
+  public ContainerRequestFilter getRequestFilter() {
+    return this;
+  }
+
+  @Override
+  public ContainerResponseFilter getResponseFilter() {
+    return this;
+  }
+
+}
@@ -0,0 +1,122 @@
+package net.opecko.http.bulkhead;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Range;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceLocator;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.flags.DynamicFlag;
+import net.opecko.http.flags.DynamicFlags;
+import net.opecko.http.metrics.HttpStatusCodeMetricResourceFilterFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Installs a {@link BulkheadResourceFilter} on every resource method covered by {@link Bulkhead},
+ * registering {@code "<name> bulkhead max_concurrent"} and {@code "<name> bulkhead max_queue"}
+ * {@link DynamicFlag}s for each bulkhead.
+ */
+@Singleton
+public class BulkheadResourceFilterFactory implements ResourceFilterFactory {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(BulkheadResourceFilterFactory.class);
+
+  private final MetricsRegistry metricsRegistry;
+  private final DynamicFlags dynamicFlags;
+  private final ConcurrentMap<String, BulkheadLimiter> limiters;
+
+  @Inject
+  BulkheadResourceFilterFactory(final MetricsRegistry metricsRegistry, final DynamicFlags dynamicFlags) {
+    this.metricsRegistry = metricsRegistry;
+    this.dynamicFlags = dynamicFlags;
+    this.limiters = new ConcurrentHashMap<>();
+  }
+
+  @Override
+  public List<ResourceFilter> create(final AbstractMethod am) {
+
+    if (am instanceof AbstractSubResourceLocator || !(am instanceof AbstractResourceMethod)) {
+      // locators are not invoked per request
+      return null;
+    }
+
+    Class<?> klass = am.getResource().getResourceClass();
+    Bulkhead bulkhead = am.getAnnotation(Bulkhead.class);
+    String name;
+    if (null != bulkhead) {
+      name = bulkhead.name();
+      if (Strings.isNullOrEmpty(name)) {
+        name = HttpStatusCodeMetricResourceFilterFactory.getMetricBaseName((AbstractResourceMethod) am);
+      }
+    } else {
+      bulkhead = klass.getAnnotation(Bulkhead.class);
+      if (null == bulkhead) {
+        return null;
+      }
+      name = bulkhead.name();
+      if (Strings.isNullOrEmpty(name)) {
+        name = klass.getSimpleName();
+      }
+    }
+
+    return Lists.<ResourceFilter>newArrayList(new BulkheadResourceFilter(getLimiter(name, bulkhead, klass)));
+  }
+
+  private BulkheadLimiter getLimiter(final String name, final Bulkhead bulkhead, final Class<?> klass) {
+    BulkheadLimiter limiter = limiters.get(name);
+    if (null == limiter) {
+      BulkheadLimiter newLimiter = new BulkheadLimiter(name, bulkhead, klass, metricsRegistry);
+      limiter = limiters.putIfAbsent(name, newLimiter);
+      if (null == limiter) {
+        limiter = newLimiter;
+        LOGGER.info("Installed bulkhead {}", limiter);
+        registerFlags(limiter);
+      }
+    }
+    if (!limiter.isCompatible(bulkhead)) {
+      LOGGER.warn("Bulkhead {} declared with conflicting limits on {}, using {}", name, klass.getName(), limiter);
+    }
+    return limiter;
+  }
+
+  private void registerFlags(final BulkheadLimiter limiter) {
+    dynamicFlags.register(DynamicFlag.ofInteger(
+      limiter.getName() + " bulkhead max_concurrent",
+      "Maximum concurrent requests admitted by the bulkhead",
+      limiter.getMaxConcurrent(),
+      Range.atLeast(1),
+      new DynamicFlag.Listener<Integer>() {
+        @Override
+        public void apply(final Integer value) {
+          limiter.setMaxConcurrent(value);
+        }
+      }
+    ));
+    dynamicFlags.register(DynamicFlag.ofInteger(
+      limiter.getName() + " bulkhead max_queue",
+      "Maximum requests waiting for the bulkhead",
+      limiter.getMaxQueue(),
+      Range.atLeast(0),
+      new DynamicFlag.Listener<Integer>() {
+        @Override
+        public void apply(final Integer value) {
+          limiter.setMaxQueue(value);
+        }
+      }
+    ));
+  }
+
+}
@@ -0,0 +1,118 @@
+package net.opecko.http.client;
+
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for the {@link OutboundHttpClient} shared by everything in the server that calls
+ * other services, started before and stopped after the server itself.
+ * <p>
+ * The client and its threads are only installed with {@code --http_client}, or by the modules
+ * that need them installing {@link #getClientModule}, so a server calling nothing starts neither.
+ */
+@Parameters(separators = "=")
+public class HttpClientModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HttpClientModule.class);
+
+  @Parameter(names = "--http_client",
+      description = "Install the HTTP client even when no other module needs it", arity = 1)
+  private boolean httpClient;
+
+  @Parameter(names = "--http_client_max_connections_per_destination",
+      description = "Most connections the HTTP client keeps open to one scheme, host and port")
+  private int httpClientMaxConnectionsPerDestination = 64;
+
+  @Parameter(names = "--http_client_max_queued_per_destination",
+      description = "Most HTTP client requests waiting for a connection to one destination before more fail")
+  private int httpClientMaxQueuedPerDestination = 1024;
+
+  @Parameter(names = "--http_client_connect_timeout",
+      description = "Milliseconds the HTTP client waits to establish a connection")
+  private long httpClientConnectTimeout = 2000;
+
+  @Parameter(names = "--http_client_idle_timeout",
+      description = "Milliseconds an idle HTTP client connection is kept alive for reuse")
+  private long httpClientIdleTimeout = 30000;
+
+  @Parameter(names = "--http_client_request_timeout",
+      description = "Default milliseconds for an HTTP client request to complete (0 = no timeout)")
+  private long httpClientRequestTimeout = 10000;
+
+  @Parameter(names = "--http_client_threads",
+      description = "Most threads the HTTP client uses for I/O and response callbacks")
+  private int httpClientThreads = 32;
+
+  @Parameter(names = "--http_client_verify_hostname",
+      description = "Check that HTTPS certificates name the host called (false allows man-in-the-middle attacks)",
+      arity = 1)
+  private boolean httpClientVerifyHostname = true;
+
+  private final Module clientModule = new ClientModule();
+
+  @Override
+  protected void configure() {
+    if (httpClient) {
+      install(clientModule);
+    }
+  }
+
+  /**
+   * Returns the module binding the client, for modules that call other services to install
+   * whatever {@code --http_client} says. However often it is installed, it binds one client.
+   */
+  public Module getClientModule() {
+    return clientModule;
+  }
+
+  /**
+   * Binds the {@link OutboundHttpClient} and starts it with the other services.
+   */
+  private final class ClientModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      LOGGER.info("HTTP client installed");
+      Multibinder.newSetBinder(binder(), Service.class).addBinding().to(OutboundHttpClient.class);
+    }
+
+    @Provides
+    @Singleton
+    public OutboundHttpClient provideOutboundHttpClient(final MetricsRegistry metricsRegistry) {
+      QueuedThreadPool executor = new QueuedThreadPool(httpClientThreads);
+      executor.setName("http-client");
+      executor.setDaemon(true);
+      SslContextFactory sslContextFactory = new SslContextFactory();
+      if (httpClientVerifyHostname) {
+        // Jetty 9.0 leaves it unset, accepting any trusted certificate for any host
+        sslContextFactory.setEndpointIdentificationAlgorithm("HTTPS");
+      } else {
+        LOGGER.warn("HTTP client not verifying that HTTPS certificates match the host");
+      }
+      HttpClient client = new HttpClient(sslContextFactory);
+      client.setExecutor(executor);
+      client.setMaxConnectionsPerDestination(httpClientMaxConnectionsPerDestination);
+      client.setMaxRequestsQueuedPerDestination(httpClientMaxQueuedPerDestination);
+      client.setConnectTimeout(httpClientConnectTimeout);
+      client.setIdleTimeout(httpClientIdleTimeout);
+      client.setFollowRedirects(false);
+      return new OutboundHttpClient(client, httpClientRequestTimeout, metricsRegistry);
+    }
+
+  }
+
+}
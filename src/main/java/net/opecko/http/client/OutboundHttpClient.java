@@ -0,0 +1,203 @@
+package net.opecko.http.client;
+
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+import net.opecko.http.tracing.Trace;
+import net.opecko.http.tracing.TraceContext;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The shared client for calls to other services: a Jetty {@link HttpClient}, non-blocking, with a
+ * pool of keep-alive connections per destination, started and stopped as a {@link Service}.
+ * <p>
+ * {@link #newRequest} hands out requests with the default timeout, the caller's trace context
+ * and metrics attached; send them with {@link Request#send(Response.CompleteListener)} to wait on
+ * no thread, or {@link Request#send()} to block. When a destination's connections are all busy,
+ * requests queue for the next free one, up to a bound beyond which they fail at once.
+ */
+public class OutboundHttpClient extends AbstractIdleService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OutboundHttpClient.class);
+
+  private final HttpClient httpClient;
+  private final long requestTimeoutMillis;
+  private final AtomicInteger inFlight;
+  private final Timer queueWait;
+  private final Timer latency;
+  private final Counter[] responses;
+  private final Counter failures;
+  private final Counter timeouts;
+  private final Counter rejections;
+
+  public OutboundHttpClient(
+      final HttpClient httpClient,
+      final long requestTimeoutMillis,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(requestTimeoutMillis >= 0, "request timeout must not be negative");
+    this.httpClient = Preconditions.checkNotNull(httpClient);
+    this.requestTimeoutMillis = requestTimeoutMillis;
+    this.inFlight = new AtomicInteger();
+    this.queueWait = metricsRegistry.newTimer(OutboundHttpClient.class, "queue wait");
+    this.latency = metricsRegistry.newTimer(OutboundHttpClient.class, "request latency");
+    this.responses = new Counter[5];
+    for (int i = 0; i < responses.length; i++) {
+      responses[i] = metricsRegistry.newCounter(OutboundHttpClient.class, "responses " + (i + 1) + "xx");
+    }
+    this.failures = metricsRegistry.newCounter(OutboundHttpClient.class, "failed requests");
+    this.timeouts = metricsRegistry.newCounter(OutboundHttpClient.class, "timed out requests");
+    this.rejections = metricsRegistry.newCounter(OutboundHttpClient.class, "rejected requests");
+    metricsRegistry.newGauge(OutboundHttpClient.class, "in-flight requests", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return inFlight.get();
+      }
+    });
+    metricsRegistry.newGauge(OutboundHttpClient.class, "destinations", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return httpClient.getDestinations().size();
+      }
+    });
+  }
+
+  /**
+   * Returns a new request for {@code uri}, ready to send.
+   */
+  public Request newRequest(final String uri) {
+    return newRequest(URI.create(uri));
+  }
+
+  /**
+   * Returns a new request for {@code uri}, ready to send.
+   */
+  public Request newRequest(final URI uri) {
+    Request request = httpClient.newRequest(uri);
+    if (requestTimeoutMillis > 0) {
+      request.timeout(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+    Trace trace = Trace.current();
+    if (null != trace) {
+      request.header(TraceContext.TRACEPARENT_HEADER, trace.getContext().toTraceparent());
+    }
+    // Jetty hands each listener every event of the kinds it implements, so once per list will do
+    ExchangeMetrics metrics = new ExchangeMetrics();
+    return request.onRequestQueued(metrics).onResponseSuccess(metrics);
+  }
+
+  /**
+   * The underlying client, for what {@link #newRequest} does not cover.
+   */
+  public HttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    LOGGER.info(
+      "Starting HTTP client with {} connections and {} queued requests per destination",
+      httpClient.getMaxConnectionsPerDestination(),
+      httpClient.getMaxRequestsQueuedPerDestination()
+    );
+    httpClient.start();
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    httpClient.stop();
+  }
+
+  /**
+   * Times one exchange from when it queues for a connection to the end of its response. Only the
+   * first outcome counts, and a request rejected by a full queue, never having queued, is not timed.
+   */
+  private final class ExchangeMetrics implements Request.QueuedListener, Request.BeginListener,
+      Response.SuccessListener, Response.FailureListener {
+
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile long queuedNanos;
+
+    @Override
+    public void onQueued(final Request request) {
+      queuedNanos = System.nanoTime();
+      inFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onBegin(final Request request) {
+      queueWait.update(System.nanoTime() - queuedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onSuccess(final Response response) {
+      if (!complete()) {
+        return;
+      }
+      int statusClass = response.getStatus() / 100;
+      if (statusClass >= 1 && statusClass <= responses.length) {
+        responses[statusClass - 1].inc();
+      }
+    }
+
+    @Override
+    public void onFailure(final Response response, final Throwable failure) {
+      if (!complete()) {
+        return;
+      }
+      failures.inc();
+      for (Throwable cause : Throwables.getCausalChain(failure)) {
+        if (cause instanceof TimeoutException) {
+          timeouts.inc();
+          break;
+        } else if (cause instanceof RejectedExecutionException) {
+          rejections.inc();
+          break;
+        }
+      }
+    }
+
+    /**
+     * Returns whether this is the exchange's first outcome, recording its latency if so.
+     */
+    private boolean complete() {
+      if (!completed.compareAndSet(false, true)) {
+        return false;
+      }
+      long start = queuedNanos;
+      if (start != 0) {
+        inFlight.decrementAndGet();
+        latency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      }
+      return true;
+    }
+
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("maxConnectionsPerDestination", httpClient.getMaxConnectionsPerDestination())
+      .add("requestTimeoutMillis", requestTimeoutMillis)
+      .toString();
+  }
+
+}
@@ -0,0 +1,107 @@
+package net.opecko.http.deadline;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+
+/**
+ * Point in time by which the client no longer needs the response to the current request.
+ * <p>
+ * Resources get the deadline of the request being served by injecting {@code Deadline} (or a
+ * {@code Provider<Deadline>} from singletons) and should use {@link #getRemainingMillis()} to
+ * bound or cancel downstream work.
+ */
+public final class Deadline {
+
+  private static final Deadline NONE = new Deadline(Long.MAX_VALUE);
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final long expiresAtMillis;
+
+  private Deadline(final long expiresAtMillis) {
+    this.expiresAtMillis = expiresAtMillis;
+  }
+
+  /**
+   * Deadline at the given wall-clock time, in milliseconds since the epoch.
+   */
+  public static Deadline at(final long expiresAtMillis) {
+    return new Deadline(expiresAtMillis);
+  }
+
+  /**
+   * Deadline that never expires.
+   */
+  public static Deadline none() {
+    return NONE;
+  }
+
+  /**
+   * Deadline of the request served by the current thread, or {@link #none()}.
+   */
+  public static Deadline current() {
+    Deadline deadline = CURRENT.get();
+    return null == deadline ? NONE : deadline;
+  }
+
+  static void setCurrent(@Nullable final Deadline deadline) {
+    if (null == deadline) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(deadline);
+    }
+  }
+
+  public boolean isBounded() {
+    return expiresAtMillis != Long.MAX_VALUE;
+  }
+
+  public boolean isExpired() {
+    return System.currentTimeMillis() >= expiresAtMillis;
+  }
+
+  public long getExpiresAtMillis() {
+    return expiresAtMillis;
+  }
+
+  /**
+   * Remaining time budget in milliseconds; zero once expired, {@link Long#MAX_VALUE} if unbounded.
+   */
+  public long getRemainingMillis() {
+    if (!isBounded()) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(0L, expiresAtMillis - System.currentTimeMillis());
+  }
+
+  /**
+   * Returns the earlier of this deadline and {@code other}.
+   */
+  public Deadline min(final Deadline other) {
+    return other.expiresAtMillis < expiresAtMillis ? other : this;
+  }
+
+  @Override
+  public boolean equals(@Nullable final Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof Deadline)) {
+      return false;
+    }
+    return expiresAtMillis == ((Deadline) o).expiresAtMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(expiresAtMillis);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("expiresAtMillis", isBounded() ? expiresAtMillis : null)
+        .omitNullValues()
+        .toString();
+  }
+
+}
@@ -0,0 +1,118 @@
+package net.opecko.http.deadline;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.jetty.RequestArrival;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Computes the {@link Deadline} of each request and drops requests that expired while they were
+ * waiting for a server thread.
+ * <p>
+ * Relative timeouts are measured from the request's {@link RequestArrival arrival}, so the time
+ * it spent queued for a server thread counts against the budget.
+ */
+public class DeadlineFilter implements Filter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineFilter.class);
+
+  private final String deadlineHeader;
+  private final String timeoutHeader;
+  private final long defaultTimeoutMillis;
+  private final Counter expired;
+
+  DeadlineFilter(
+      final String deadlineHeader,
+      final String timeoutHeader,
+      final long defaultTimeoutMillis,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(defaultTimeoutMillis >= 0);
+    this.deadlineHeader = deadlineHeader;
+    this.timeoutHeader = timeoutHeader;
+    this.defaultTimeoutMillis = defaultTimeoutMillis;
+    this.expired = metricsRegistry.newCounter(DeadlineFilter.class, "expired requests");
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    Deadline deadline = getDeadline((HttpServletRequest) request);
+    if (deadline.isExpired()) {
+      expired.inc();
+      ((HttpServletResponse) response).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Deadline expired");
+      return;
+    }
+    Deadline.setCurrent(deadline);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      Deadline.setCurrent(null);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+  private Deadline getDeadline(final HttpServletRequest request) {
+    long receivedMillis = RequestArrival.getArrivalMillis();
+    Deadline deadline = Deadline.none();
+    if (defaultTimeoutMillis > 0) {
+      deadline = Deadline.at(receivedMillis + defaultTimeoutMillis);
+    }
+    Long timeoutMillis = parseHeader(request, timeoutHeader);
+    if (null != timeoutMillis) {
+      deadline = deadline.min(Deadline.at(receivedMillis + timeoutMillis));
+    }
+    Long deadlineMillis = parseHeader(request, deadlineHeader);
+    if (null != deadlineMillis) {
+      deadline = deadline.min(Deadline.at(deadlineMillis));
+    }
+    return deadline;
+  }
+
+  @Nullable
+  private static Long parseHeader(final HttpServletRequest request, final String header) {
+    if (Strings.isNullOrEmpty(header)) {
+      return null;
+    }
+    String value = request.getHeader(header);
+    if (Strings.isNullOrEmpty(value)) {
+      return null;
+    }
+    try {
+      return Long.valueOf(Math.max(0L, Long.parseLong(value.trim())));
+    } catch (final NumberFormatException e) {
+      LOGGER.debug("Ignoring malformed {} header: {}", header, value);
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+package net.opecko.http.deadline;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.servlet.FilterDefinition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for request deadlines.
+ * <p>
+ * Binds {@link Deadline} to the deadline of the request served by the current thread.
+ */
+@Parameters(separators = "=")
+public class DeadlineModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DeadlineModule.class);
+
+  @Parameter(names = "--default_request_timeout",
+      description = "Default request timeout in milliseconds, counted from arrival (0 = none)")
+  private long defaultRequestTimeout;
+
+  @Parameter(names = "--request_deadline_header",
+      description = "Request header holding the absolute deadline in milliseconds since the epoch")
+  private String requestDeadlineHeader = "X-Request-Deadline";
+
+  @Parameter(names = "--request_timeout_header",
+      description = "Request header holding the client timeout in milliseconds")
+  private String requestTimeoutHeader = "X-Request-Timeout-Ms";
+
+  @Override
+  protected void configure() {
+    LOGGER.info(
+      "Request deadlines from headers {} and {}, default timeout = {} ms",
+      requestDeadlineHeader,
+      requestTimeoutHeader,
+      defaultRequestTimeout
+    );
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(DeadlineFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+    bind(Deadline.class).toProvider(CurrentDeadlineProvider.class);
+  }
+
+  @Provides
+  @Singleton
+  public DeadlineFilter provideDeadlineFilter(final MetricsRegistry metricsRegistry) {
+    return new DeadlineFilter(requestDeadlineHeader, requestTimeoutHeader, defaultRequestTimeout, metricsRegistry);
+  }
+
+  private static final class CurrentDeadlineProvider implements Provider<Deadline> {
+
+    @Inject
+    private CurrentDeadlineProvider() {
+    }
+
+    @Override
+    public Deadline get() {
+      return Deadline.current();
+    }
+
+  }
+
+  private static final class DeadlineFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final DeadlineFilter deadlineFilter;
+
+    @Inject
+    private DeadlineFilterDefinitionProvider(final DeadlineFilter deadlineFilter) {
+      this.deadlineFilter = deadlineFilter;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(deadlineFilter, "/*");
+    }
+
+  }
+
+}
@@ -0,0 +1,145 @@
+package net.opecko.http.flags;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Range;
+
+/**
+ * A numeric setting that can be changed while the server runs, through {@link DynamicFlags}.
+ * <p>
+ * The owner of the setting supplies a {@link Listener} applying each new value to the live
+ * component; the value only changes once the listener has accepted it.
+ *
+ * @param <T> value type
+ */
+public abstract class DynamicFlag<T extends Number & Comparable<? super T>> {
+
+  /**
+   * Applies a new flag value.
+   */
+  public interface Listener<T> {
+
+    /**
+     * Applies {@code value}, throwing {@link IllegalArgumentException} to refuse it.
+     */
+    void apply(T value);
+
+  }
+
+  private final String name;
+  private final String description;
+  private final Range<T> range;
+  private final Listener<T> listener;
+  private volatile T value;
+
+  DynamicFlag(
+      final String name,
+      final String description,
+      final T initial,
+      final Range<T> range,
+      final Listener<T> listener
+  ) {
+    this.name = Preconditions.checkNotNull(name);
+    this.description = Preconditions.checkNotNull(description);
+    this.range = Preconditions.checkNotNull(range);
+    this.listener = Preconditions.checkNotNull(listener);
+    Preconditions.checkArgument(range.contains(initial), "Flag %s initial value %s outside %s", name, initial, range);
+    this.value = initial;
+  }
+
+  public static DynamicFlag<Integer> ofInteger(
+      final String name,
+      final String description,
+      final int initial,
+      final Range<Integer> range,
+      final Listener<Integer> listener
+  ) {
+    return new DynamicFlag<Integer>(name, description, initial, range, listener) {
+      @Override
+      Integer parse(final String text) {
+        return Integer.valueOf(text);
+      }
+    };
+  }
+
+  public static DynamicFlag<Long> ofLong(
+      final String name,
+      final String description,
+      final long initial,
+      final Range<Long> range,
+      final Listener<Long> listener
+  ) {
+    return new DynamicFlag<Long>(name, description, initial, range, listener) {
+      @Override
+      Long parse(final String text) {
+        return Long.valueOf(text);
+      }
+    };
+  }
+
+  public static DynamicFlag<Double> ofDouble(
+      final String name,
+      final String description,
+      final double initial,
+      final Range<Double> range,
+      final Listener<Double> listener
+  ) {
+    return new DynamicFlag<Double>(name, description, initial, range, listener) {
+      @Override
+      Double parse(final String text) {
+        return Double.valueOf(text);
+      }
+    };
+  }
+
+  /**
+   * Parses {@code text}, throwing {@link NumberFormatException} if it is not a value.
+   */
+  abstract T parse(String text);
+
+  public String getName() {
+    return name;
+  }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public Range<T> getRange() {
+    return range;
+  }
+
+  public T get() {
+    return value;
+  }
+
+  /**
+   * Parses, validates and applies {@code text}.
+   *
+   * @return the previous value
+   * @throws IllegalArgumentException if the value is malformed, out of range or refused
+   */
+  synchronized T set(final String text) {
+    T newValue;
+    try {
+      newValue = parse(text.trim());
+    } catch (final NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed value for " + name + ": " + text);
+    }
+    Preconditions.checkArgument(range.contains(newValue), "Value for %s outside %s: %s", name, range, newValue);
+    listener.apply(newValue);
+    T previous = value;
+    value = newValue;
+    return previous;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("name", name)
+      .add("value", value)
+      .add("range", range)
+      .toString();
+  }
+
+}
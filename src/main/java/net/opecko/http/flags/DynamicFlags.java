@@ -0,0 +1,93 @@
+package net.opecko.http.flags;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Registry of the {@link DynamicFlag}s changeable at runtime.
+ * <p>
+ * Flags are bound through a {@code Multibinder<DynamicFlag<?>>}, or registered later by components
+ * created on demand. Every change, applied or refused, is logged with its source and counted, and
+ * each flag's current value is exported as a {@code "<name> flag"} gauge.
+ */
+@Singleton
+public class DynamicFlags {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DynamicFlags.class);
+
+  private final ConcurrentMap<String, DynamicFlag<?>> flags;
+  private final MetricsRegistry metricsRegistry;
+  private final Counter changes;
+  private final Counter rejectedChanges;
+
+  @Inject
+  DynamicFlags(final Set<DynamicFlag<?>> flags, final MetricsRegistry metricsRegistry) {
+    this.flags = new ConcurrentSkipListMap<>();
+    this.metricsRegistry = Preconditions.checkNotNull(metricsRegistry);
+    this.changes = metricsRegistry.newCounter(DynamicFlags.class, "flag changes");
+    this.rejectedChanges = metricsRegistry.newCounter(DynamicFlags.class, "rejected flag changes");
+    for (DynamicFlag<?> flag : flags) {
+      register(flag);
+    }
+  }
+
+  /**
+   * Registers {@code flag}, failing if another flag already has its name.
+   */
+  public void register(final DynamicFlag<?> flag) {
+    Preconditions.checkState(null == flags.putIfAbsent(flag.getName(), flag), "Duplicate flag %s", flag.getName());
+    metricsRegistry.newGauge(DynamicFlags.class, flag.getName() + " flag", new Gauge<Number>() {
+      @Override
+      public Number value() {
+        return flag.get();
+      }
+    });
+    LOGGER.info("Registered dynamic flag {}", flag);
+  }
+
+  @Nullable
+  public DynamicFlag<?> get(final String name) {
+    return flags.get(name);
+  }
+
+  /**
+   * All flags, ordered by name.
+   */
+  public Collection<DynamicFlag<?>> getFlags() {
+    return flags.values();
+  }
+
+  /**
+   * Changes flag {@code name} to {@code value} on behalf of {@code source}.
+   *
+   * @throws IllegalArgumentException if there is no such flag or the value is refused
+   */
+  public void set(final String name, final String value, final String source) {
+    DynamicFlag<?> flag = flags.get(name);
+    try {
+      Preconditions.checkArgument(null != flag, "Unknown flag %s", name);
+      Object previous = flag.set(value);
+      changes.inc();
+      LOGGER.warn("Flag {} changed from {} to {} by {}", name, previous, flag.get(), source);
+    } catch (final IllegalArgumentException e) {
+      rejectedChanges.inc();
+      LOGGER.warn("Flag {} change to {} by {} refused: {}", name, value, source, e.getMessage());
+      throw e;
+    }
+  }
+
+}
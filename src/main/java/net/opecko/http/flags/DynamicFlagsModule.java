@@ -0,0 +1,80 @@
+package net.opecko.http.flags;
+
+import java.lang.annotation.Annotation;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+
+import net.opecko.http.config.flags.DynamicFlagsPath;
+import net.opecko.http.config.server.AdminConnectorEndpoint;
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.servlet.ServletEndpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module serving the {@link DynamicFlags} admin endpoint. Its POST changes the server, and
+ * it has no authentication, so it is served on the admin connector only, and not at all without
+ * one, unless {@code --flags_on_application_port} allows it on the application port too.
+ */
+@Parameters(separators = "=")
+public class DynamicFlagsModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(DynamicFlagsModule.class);
+
+  @Parameter(names = "--flags_path", description = "Dynamic flags path under context root (empty = disabled)")
+  private String flagsPath = "/metrics/flags";
+
+  @Parameter(names = "--flags_on_application_port",
+      description = "Serve the dynamic flags with the application when there is no admin port", arity = 1)
+  private boolean flagsOnApplicationPort;
+
+  @Override
+  protected void configure() {
+    Multibinder.newSetBinder(binder(), new TypeLiteral<DynamicFlag<?>>() { });
+    if (Strings.isNullOrEmpty(flagsPath)) {
+      LOGGER.info("Dynamic flags endpoint not installed");
+      return;
+    }
+    LOGGER.info("Dynamic flags at: {}", flagsPath);
+    bind(String.class).annotatedWith(DynamicFlagsPath.class).toInstance(flagsPath);
+    Class<? extends Annotation> endpoints =
+        flagsOnApplicationPort ? AdminEndpoint.class : AdminConnectorEndpoint.class;
+    Multibinder.newSetBinder(binder(), ServletEndpoint.class, endpoints)
+        .addBinding()
+        .toProvider(DynamicFlagsEndpointProvider.class)
+        .in(Scopes.SINGLETON);
+  }
+
+  private static final class DynamicFlagsEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final DynamicFlagsServlet dynamicFlagsServlet;
+    private final String flagsPath;
+
+    @Inject
+    private DynamicFlagsEndpointProvider(
+        final DynamicFlagsServlet dynamicFlagsServlet,
+        @DynamicFlagsPath final String flagsPath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(flagsPath));
+      this.dynamicFlagsServlet = Preconditions.checkNotNull(dynamicFlagsServlet);
+      this.flagsPath = flagsPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(dynamicFlagsServlet, flagsPath);
+    }
+  }
+
+}
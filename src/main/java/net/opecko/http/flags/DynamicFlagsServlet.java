@@ -0,0 +1,109 @@
+package net.opecko.http.flags;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.Range;
+
+/**
+ * Lists the {@link DynamicFlags} as JSON on {@code GET}, and changes one on {@code POST} with the
+ * {@code name} and {@code value} parameters.
+ */
+@Singleton
+public class DynamicFlagsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+
+  private final transient DynamicFlags dynamicFlags;
+  private final transient JsonFactory jsonFactory;
+
+  @Inject
+  DynamicFlagsServlet(final DynamicFlags dynamicFlags) {
+    this.dynamicFlags = Preconditions.checkNotNull(dynamicFlags);
+    this.jsonFactory = new JsonFactory();
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    JsonGenerator json = startJson(response);
+    try {
+      json.writeStartObject();
+      for (DynamicFlag<?> flag : dynamicFlags.getFlags()) {
+        writeFlag(json, flag);
+      }
+      json.writeEndObject();
+    } finally {
+      json.close();
+    }
+  }
+
+  @Override
+  protected void doPost(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    String name = Strings.nullToEmpty(request.getParameter("name"));
+    String value = request.getParameter("value");
+    DynamicFlag<?> flag = dynamicFlags.get(name);
+    if (null == flag) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Unknown flag " + name);
+      return;
+    }
+    if (Strings.isNullOrEmpty(value)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Missing value");
+      return;
+    }
+    try {
+      dynamicFlags.set(name, value, request.getRemoteAddr());
+    } catch (final IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+      return;
+    }
+    JsonGenerator json = startJson(response);
+    try {
+      json.writeStartObject();
+      writeFlag(json, flag);
+      json.writeEndObject();
+    } finally {
+      json.close();
+    }
+  }
+
+  private JsonGenerator startJson(final HttpServletResponse response) throws IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    return jsonFactory.createGenerator(response.getOutputStream());
+  }
+
+  private static void writeFlag(final JsonGenerator json, final DynamicFlag<?> flag) throws IOException {
+    json.writeObjectFieldStart(flag.getName());
+    json.writeFieldName("value");
+    json.writeNumber(flag.get().toString());
+    Range<?> range = flag.getRange();
+    if (range.hasLowerBound()) {
+      json.writeFieldName("min");
+      json.writeNumber(range.lowerEndpoint().toString());
+    }
+    if (range.hasUpperBound()) {
+      json.writeFieldName("max");
+      json.writeNumber(range.upperEndpoint().toString());
+    }
+    json.writeStringField("description", flag.getDescription());
+    json.writeEndObject();
+  }
+
+}
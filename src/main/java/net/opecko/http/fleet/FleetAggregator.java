@@ -0,0 +1,313 @@
+package net.opecko.http.fleet;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+import net.opecko.http.client.OutboundHttpClient;
+import net.opecko.http.lifecycle.ServiceLifecycle;
+
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.util.FutureResponseListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pulls the {@link LatencyHistograms} of a list of peers at a fixed interval and merges them into
+ * fleet-wide histograms per route, plus one of all routes together under {@link #ALL_ROUTES}.
+ * <p>
+ * Peers serve histograms cumulative since they started, so two consecutive pulls from a peer give
+ * what it recorded in between; the fleet-wide window merges those differences over the last polls
+ * that fit in the window. A peer's first pull only sets its baseline; the first after it restarts
+ * counts everything it has recorded since. Either way, a difference covers every poll since the
+ * peer's last successful pull, so a peer answering again after several failed polls puts more
+ * than one poll interval of its requests into a single slot of the window. The totals merge every
+ * peer's latest cumulative histograms, so they cover unequal periods; the window is what
+ * dashboards want.
+ */
+@ServiceLifecycle(dependsOn = OutboundHttpClient.class)
+public class FleetAggregator extends AbstractScheduledService {
+
+  public static final String ALL_ROUTES = "(all)";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FleetAggregator.class);
+  private static final int MAX_RESPONSE_BYTES = 4 * 1024 * 1024;
+
+  private final OutboundHttpClient httpClient;
+  private final List<Peer> peers;
+  private final long pollIntervalMillis;
+  private final int windowPolls;
+  private final Deque<SortedMap<String, LatencyHistogram>> window;
+  private final Timer pollTimer;
+  private final Counter failures;
+  private volatile SortedMap<String, LatencyHistogram> windowHistograms;
+  private volatile SortedMap<String, LatencyHistogram> totalHistograms;
+
+  public FleetAggregator(
+      final OutboundHttpClient httpClient,
+      final List<URI> peerUris,
+      final long pollIntervalMillis,
+      final long windowMillis,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(!peerUris.isEmpty(), "no peers to aggregate");
+    Preconditions.checkArgument(pollIntervalMillis > 0, "poll interval must be positive");
+    Preconditions.checkArgument(windowMillis >= pollIntervalMillis, "window must span at least one poll");
+    this.httpClient = Preconditions.checkNotNull(httpClient);
+    ImmutableList.Builder<Peer> builder = ImmutableList.builder();
+    for (URI uri : peerUris) {
+      builder.add(new Peer(uri));
+    }
+    this.peers = builder.build();
+    this.pollIntervalMillis = pollIntervalMillis;
+    this.windowPolls = (int) (windowMillis / pollIntervalMillis);
+    this.window = new ArrayDeque<>();
+    this.windowHistograms = ImmutableSortedMap.of();
+    this.totalHistograms = ImmutableSortedMap.of();
+    this.pollTimer = metricsRegistry.newTimer(FleetAggregator.class, "poll");
+    this.failures = metricsRegistry.newCounter(FleetAggregator.class, "failed peer pulls");
+    metricsRegistry.newGauge(FleetAggregator.class, "peers up", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        int up = 0;
+        for (Peer peer : peers) {
+          if (peer.up) {
+            up++;
+          }
+        }
+        return up;
+      }
+    });
+  }
+
+  @Override
+  protected void runOneIteration() {
+    TimerContext context = pollTimer.time();
+    try {
+      poll();
+    } finally {
+      context.stop();
+    }
+  }
+
+  private void poll() {
+    // send every request before waiting on any, so peers are pulled concurrently
+    List<FutureResponseListener> responses = new ArrayList<>(peers.size());
+    for (Peer peer : peers) {
+      Request request = httpClient.newRequest(peer.uri).timeout(pollIntervalMillis, TimeUnit.MILLISECONDS);
+      FutureResponseListener listener = new FutureResponseListener(request, MAX_RESPONSE_BYTES);
+      request.send(listener);
+      responses.add(listener);
+    }
+    SortedMap<String, LatencyHistogram> pollDelta = new TreeMap<>();
+    SortedMap<String, LatencyHistogram> total = new TreeMap<>();
+    for (int i = 0; i < peers.size(); i++) {
+      Peer peer = peers.get(i);
+      SortedMap<String, LatencyHistogram> histograms = pull(peer, responses.get(i));
+      if (null != histograms) {
+        merge(pollDelta, peer.advance(histograms));
+      }
+      merge(total, peer.cumulative);
+    }
+    synchronized (window) {
+      window.addLast(pollDelta);
+      while (window.size() > windowPolls) {
+        window.removeFirst();
+      }
+      SortedMap<String, LatencyHistogram> merged = new TreeMap<>();
+      for (SortedMap<String, LatencyHistogram> delta : window) {
+        merge(merged, delta);
+      }
+      windowHistograms = withAllRoutes(merged);
+    }
+    totalHistograms = withAllRoutes(total);
+  }
+
+  /**
+   * Waits for a peer's histograms, returning {@code null} if it could not serve them.
+   */
+  @Nullable
+  private SortedMap<String, LatencyHistogram> pull(final Peer peer, final FutureResponseListener response) {
+    try {
+      ContentResponse content = response.get(pollIntervalMillis, TimeUnit.MILLISECONDS);
+      if (content.getStatus() != 200) {
+        throw new IOException("HTTP " + content.getStatus());
+      }
+      SortedMap<String, LatencyHistogram> histograms =
+          LatencyHistograms.readFrom(new DataInputStream(new ByteArrayInputStream(content.getContent())));
+      peer.up = true;
+      peer.lastSuccessMillis = System.currentTimeMillis();
+      peer.lastError = null;
+      return histograms;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      response.cancel(true);
+      return failed(peer, e);
+    } catch (final ExecutionException e) {
+      return failed(peer, e.getCause());
+    } catch (final TimeoutException | IOException e) {
+      response.cancel(true);
+      return failed(peer, e);
+    }
+  }
+
+  @Nullable
+  private SortedMap<String, LatencyHistogram> failed(final Peer peer, final Throwable cause) {
+    failures.inc();
+    if (peer.up || null == peer.lastError) {
+      LOGGER.warn("Pulling latency histograms from {} failed: {}", peer.uri, cause.toString());
+    }
+    peer.up = false;
+    peer.lastError = cause.toString();
+    return null;
+  }
+
+  private static void merge(
+      final Map<String, LatencyHistogram> into,
+      final Map<String, LatencyHistogram> histograms
+  ) {
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = into.get(entry.getKey());
+      if (null == histogram) {
+        histogram = new LatencyHistogram();
+        into.put(entry.getKey(), histogram);
+      }
+      histogram.add(entry.getValue());
+    }
+  }
+
+  private static SortedMap<String, LatencyHistogram> withAllRoutes(final SortedMap<String, LatencyHistogram> byRoute) {
+    LatencyHistogram all = new LatencyHistogram();
+    for (LatencyHistogram histogram : byRoute.values()) {
+      all.add(histogram);
+    }
+    byRoute.put(ALL_ROUTES, all);
+    return Collections.unmodifiableSortedMap(byRoute);
+  }
+
+  /**
+   * Fleet-wide histograms by route over the window.
+   */
+  public SortedMap<String, LatencyHistogram> getWindowHistograms() {
+    return windowHistograms;
+  }
+
+  /**
+   * Fleet-wide histograms by route since each peer started.
+   */
+  public SortedMap<String, LatencyHistogram> getTotalHistograms() {
+    return totalHistograms;
+  }
+
+  public long getWindowMillis() {
+    return windowPolls * pollIntervalMillis;
+  }
+
+  public List<Peer> getPeers() {
+    return peers;
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * A peer and its latest histograms. Only the polling thread writes its fields.
+   */
+  public static final class Peer {
+
+    private final URI uri;
+    private volatile boolean up;
+    private volatile long lastSuccessMillis;
+    @Nullable private volatile String lastError;
+    private SortedMap<String, LatencyHistogram> cumulative;
+    private boolean seen;
+
+    Peer(final URI uri) {
+      this.uri = Preconditions.checkNotNull(uri);
+      this.cumulative = ImmutableSortedMap.of();
+    }
+
+    /**
+     * Replaces the peer's cumulative histograms, returning what it recorded since the last ones,
+     * however many polls ago they were: nothing the first time, everything since it started if it
+     * has restarted since.
+     */
+    private SortedMap<String, LatencyHistogram> advance(final SortedMap<String, LatencyHistogram> histograms) {
+      SortedMap<String, LatencyHistogram> delta = new TreeMap<>();
+      if (seen) {
+        for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+          LatencyHistogram previous = cumulative.get(entry.getKey());
+          LatencyHistogram since = null == previous ? entry.getValue() : entry.getValue().since(previous);
+          if (null == since) {
+            delta = histograms;
+            break;
+          }
+          delta.put(entry.getKey(), since);
+        }
+      }
+      seen = true;
+      cumulative = histograms;
+      return delta;
+    }
+
+    public URI getUri() {
+      return uri;
+    }
+
+    public boolean isUp() {
+      return up;
+    }
+
+    public long getLastSuccessMillis() {
+      return lastSuccessMillis;
+    }
+
+    @Nullable
+    public String getLastError() {
+      return lastError;
+    }
+
+  }
+
+  @Override
+  public String toString() {
+    List<URI> uris = new ArrayList<>(peers.size());
+    for (Peer peer : peers) {
+      uris.add(peer.uri);
+    }
+    return Objects.toStringHelper(this)
+        .add("peers", uris)
+        .add("pollIntervalMillis", pollIntervalMillis)
+        .add("windowMillis", getWindowMillis())
+        .toString();
+  }
+
+}
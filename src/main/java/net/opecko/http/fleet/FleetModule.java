@@ -0,0 +1,188 @@
+package net.opecko.http.fleet;
+
+import java.net.URI;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.client.HttpClientModule;
+import net.opecko.http.client.OutboundHttpClient;
+import net.opecko.http.config.fleet.FleetPath;
+import net.opecko.http.config.fleet.LatencyHistogramsPath;
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.servlet.FilterDefinition;
+import net.opecko.http.servlet.ServletEndpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for mergeable latency histograms: every node records them per route and serves
+ * them at {@code --latency_histograms_path}, and a node given {@code --fleet_peers} also pulls
+ * them from those peers and serves fleet-wide percentiles at {@code --fleet_path}, installing the
+ * {@link HttpClientModule}'s client to do so.
+ */
+@Parameters(separators = "=")
+public class FleetModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FleetModule.class);
+  private static final Splitter COMMA_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+
+  @Parameter(names = "--latency_histograms_path",
+      description = "Mergeable latency histograms path under context root (empty = disabled)")
+  private String latencyHistogramsPath = "/metrics/histograms";
+
+  @Parameter(names = "--fleet_peers",
+      description = "Comma-separated host:port or base URLs of the admin connectors to aggregate histograms from")
+  private String fleetPeers = "";
+
+  @Parameter(names = "--fleet_path", description = "Fleet-wide latency percentiles path under context root")
+  private String fleetPath = "/metrics/fleet";
+
+  @Parameter(names = "--fleet_poll_interval", description = "Milliseconds between pulls of the peers' histograms")
+  private long fleetPollInterval = 10000;
+
+  @Parameter(names = "--fleet_window", description = "Milliseconds of recent latency the fleet-wide percentiles cover")
+  private long fleetWindow = 60000;
+
+  private final HttpClientModule httpClientModule;
+
+  /**
+   * @param httpClientModule the module whose client pulls the peers' histograms, listed with the
+   *     others so that its flags are parsed
+   */
+  public FleetModule(final HttpClientModule httpClientModule) {
+    this.httpClientModule = Preconditions.checkNotNull(httpClientModule);
+  }
+
+  @Override
+  protected void configure() {
+    if (Strings.isNullOrEmpty(latencyHistogramsPath)) {
+      LOGGER.info("Latency histograms not installed");
+      return;
+    }
+    LOGGER.info("Latency histograms installed at: {}", latencyHistogramsPath);
+    bind(String.class).annotatedWith(LatencyHistogramsPath.class).toInstance(latencyHistogramsPath);
+    bind(LatencyHistograms.class).in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(LatencyHistogramFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+    Multibinder<ServletEndpoint> adminEndpoints =
+        Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class);
+    adminEndpoints.addBinding().toProvider(LatencyHistogramsEndpointProvider.class).in(Scopes.SINGLETON);
+
+    if (Strings.isNullOrEmpty(fleetPeers)) {
+      LOGGER.info("Fleet aggregation not installed");
+      return;
+    }
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(fleetPath), "--fleet_peers needs a --fleet_path");
+    LOGGER.info("Fleet-wide latency percentiles installed at: {}", fleetPath);
+    install(httpClientModule.getClientModule());
+    install(new AggregatorModule());
+    bind(String.class).annotatedWith(FleetPath.class).toInstance(fleetPath);
+    adminEndpoints.addBinding().toProvider(FleetEndpointProvider.class).in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), Service.class).addBinding().to(FleetAggregator.class);
+  }
+
+  /**
+   * Binds the {@link FleetAggregator}, installed only when there are peers to aggregate.
+   */
+  private final class AggregatorModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      // everything is provided
+    }
+
+    @Provides
+    @Singleton
+    FleetAggregator provideFleetAggregator(
+        final OutboundHttpClient httpClient,
+        final MetricsRegistry metricsRegistry
+    ) {
+      ImmutableList.Builder<URI> peers = ImmutableList.builder();
+      for (String peer : COMMA_SPLITTER.split(fleetPeers)) {
+        String base = peer.contains("://") ? peer : "http://" + peer;
+        peers.add(URI.create(base.replaceAll("/+$", "") + latencyHistogramsPath));
+      }
+      List<URI> peerUris = peers.build();
+      FleetAggregator fleetAggregator =
+          new FleetAggregator(httpClient, peerUris, fleetPollInterval, fleetWindow, metricsRegistry);
+      LOGGER.info("Fleet aggregation: {}", fleetAggregator);
+      return fleetAggregator;
+    }
+
+  }
+
+  private static final class LatencyHistogramFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final LatencyHistograms latencyHistograms;
+
+    @Inject
+    private LatencyHistogramFilterDefinitionProvider(final LatencyHistograms latencyHistograms) {
+      this.latencyHistograms = latencyHistograms;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(new LatencyHistogramFilter(latencyHistograms), "/*");
+    }
+
+  }
+
+  private static final class LatencyHistogramsEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final LatencyHistogramsServlet latencyHistogramsServlet;
+    private final String latencyHistogramsPath;
+
+    @Inject
+    private LatencyHistogramsEndpointProvider(
+        final LatencyHistogramsServlet latencyHistogramsServlet,
+        @LatencyHistogramsPath final String latencyHistogramsPath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(latencyHistogramsPath));
+      this.latencyHistogramsServlet = Preconditions.checkNotNull(latencyHistogramsServlet);
+      this.latencyHistogramsPath = latencyHistogramsPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(latencyHistogramsServlet, latencyHistogramsPath);
+    }
+  }
+
+  private static final class FleetEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final FleetServlet fleetServlet;
+    private final String fleetPath;
+
+    @Inject
+    private FleetEndpointProvider(final FleetServlet fleetServlet, @FleetPath final String fleetPath) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(fleetPath));
+      this.fleetServlet = Preconditions.checkNotNull(fleetServlet);
+      this.fleetPath = fleetPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(fleetServlet, fleetPath);
+    }
+  }
+
+}
@@ -0,0 +1,88 @@
+package net.opecko.http.fleet;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+
+/**
+ * Serves the fleet-wide percentiles merged by the {@link FleetAggregator} as JSON, over the window
+ * and since each peer started, along with the state of every peer. Latencies are in microseconds.
+ */
+@Singleton
+public class FleetServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+  private static final String[] PERCENTILE_FIELDS = { "p50", "p90", "p99", "p999" };
+
+  private final transient FleetAggregator fleetAggregator;
+  private final transient JsonFactory jsonFactory;
+
+  @Inject
+  FleetServlet(final FleetAggregator fleetAggregator) {
+    this.fleetAggregator = Preconditions.checkNotNull(fleetAggregator);
+    this.jsonFactory = new JsonFactory();
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    JsonGenerator json = jsonFactory.createGenerator(response.getOutputStream());
+    try {
+      json.writeStartObject();
+      json.writeNumberField("windowMillis", fleetAggregator.getWindowMillis());
+      json.writeArrayFieldStart("peers");
+      for (FleetAggregator.Peer peer : fleetAggregator.getPeers()) {
+        json.writeStartObject();
+        json.writeStringField("uri", peer.getUri().toString());
+        json.writeBooleanField("up", peer.isUp());
+        json.writeNumberField("lastSuccessMillis", peer.getLastSuccessMillis());
+        if (null != peer.getLastError()) {
+          json.writeStringField("lastError", peer.getLastError());
+        }
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+      writeHistograms(json, "window", fleetAggregator.getWindowHistograms());
+      writeHistograms(json, "total", fleetAggregator.getTotalHistograms());
+      json.writeEndObject();
+    } finally {
+      json.close();
+    }
+  }
+
+  private static void writeHistograms(
+      final JsonGenerator json,
+      final String field,
+      final Map<String, LatencyHistogram> histograms
+  ) throws IOException {
+    json.writeObjectFieldStart(field);
+    for (Map.Entry<String, LatencyHistogram> entry : histograms.entrySet()) {
+      LatencyHistogram histogram = entry.getValue();
+      json.writeObjectFieldStart(entry.getKey());
+      json.writeNumberField("count", histogram.getCount());
+      for (int i = 0; i < PERCENTILES.length; i++) {
+        json.writeNumberField(PERCENTILE_FIELDS[i], histogram.getValueAtPercentile(PERCENTILES[i]));
+      }
+      json.writeNumberField("max", histogram.getMax());
+      json.writeEndObject();
+    }
+    json.writeEndObject();
+  }
+
+}
@@ -0,0 +1,220 @@
+package net.opecko.http.fleet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * A latency histogram in microseconds that histograms recorded elsewhere can be added to, so that
+ * percentiles across nodes come from the merged distribution rather than from averaging per-node
+ * percentiles, which is meaningless.
+ * <p>
+ * Buckets are log-linear: values below 128 have a bucket each, and every power of two above that
+ * is split into 64 equal buckets, so a value is known to within 1/64 of itself, and percentiles
+ * report the middle of their bucket. Values above {@link #MAX_VALUE}, over an hour, count as that.
+ * Every histogram has the same buckets, which is what makes them mergeable.
+ * <p>
+ * Recording is lock-free. Reading while others record sees each bucket at some point during the
+ * read, which is fine for percentiles.
+ */
+public final class LatencyHistogram {
+
+  public static final long MAX_VALUE = (1L << 32) - 1;
+
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int BUCKETS = index(MAX_VALUE) + 1;
+  private static final byte FORMAT_VERSION = 1;
+
+  private final AtomicLongArray counts;
+
+  public LatencyHistogram() {
+    this.counts = new AtomicLongArray(BUCKETS);
+  }
+
+  /**
+   * Records one value, in microseconds.
+   */
+  public void record(final long micros) {
+    counts.incrementAndGet(index(Math.min(Math.max(micros, 0L), MAX_VALUE)));
+  }
+
+  /**
+   * Adds every value recorded in {@code other} to this histogram.
+   */
+  public void add(final LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+      }
+    }
+  }
+
+  /**
+   * Returns the values recorded in this histogram but not in {@code earlier}, an earlier copy of
+   * the same histogram, or {@code null} if this one has fewer values in any bucket, as it does
+   * once the node recording it has restarted.
+   */
+  public LatencyHistogram since(final LatencyHistogram earlier) {
+    LatencyHistogram delta = new LatencyHistogram();
+    for (int i = 0; i < BUCKETS; i++) {
+      long count = counts.get(i) - earlier.counts.get(i);
+      if (count < 0) {
+        return null;
+      }
+      delta.counts.set(i, count);
+    }
+    return delta;
+  }
+
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+    return count;
+  }
+
+  /**
+   * Returns the value below which {@code percentile} percent of the recorded values fall, or 0 if
+   * there are none.
+   */
+  public long getValueAtPercentile(final double percentile) {
+    Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "percentile must be within [0, 100]");
+    long[] snapshot = snapshot();
+    long total = 0;
+    for (long count : snapshot) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = Math.max(1L, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        return middle(i);
+      }
+    }
+    return middle(BUCKETS - 1);
+  }
+
+  /**
+   * Returns the largest recorded value, to within its bucket, or 0 if there are none.
+   */
+  public long getMax() {
+    for (int i = BUCKETS - 1; i >= 0; i--) {
+      if (counts.get(i) != 0) {
+        return middle(i);
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Writes the histogram as a version byte and the number of non-empty buckets, followed by each
+   * one's distance from the previous and its count, all as variable-length integers. A typical
+   * latency distribution takes a few hundred bytes.
+   */
+  public void writeTo(final DataOutput out) throws IOException {
+    long[] snapshot = snapshot();
+    int nonEmpty = 0;
+    for (long count : snapshot) {
+      if (count != 0) {
+        nonEmpty++;
+      }
+    }
+    out.writeByte(FORMAT_VERSION);
+    writeVarLong(out, nonEmpty);
+    int previous = -1;
+    for (int i = 0; i < BUCKETS; i++) {
+      if (snapshot[i] != 0) {
+        writeVarLong(out, i - previous);
+        writeVarLong(out, snapshot[i]);
+        previous = i;
+      }
+    }
+  }
+
+  /**
+   * Reads a histogram written by {@link #writeTo}.
+   */
+  public static LatencyHistogram readFrom(final DataInput in) throws IOException {
+    byte version = in.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported histogram format version " + version);
+    }
+    LatencyHistogram histogram = new LatencyHistogram();
+    long nonEmpty = readVarLong(in);
+    int index = -1;
+    for (long i = 0; i < nonEmpty; i++) {
+      long next = index + readVarLong(in);
+      if (next <= index || next >= BUCKETS) {
+        throw new IOException("Histogram bucket out of range: " + next);
+      }
+      index = (int) next;
+      histogram.counts.set(index, readVarLong(in));
+    }
+    return histogram;
+  }
+
+  private long[] snapshot() {
+    long[] snapshot = new long[BUCKETS];
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+    }
+    return snapshot;
+  }
+
+  /**
+   * The bucket of {@code value}: the value itself below 128, else 64 buckets per power of two,
+   * the value's top seven bits picking one.
+   */
+  private static int index(final long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+    return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+  }
+
+  private static long middle(final int index) {
+    int shift = Math.max(0, (index >> SUB_BUCKET_BITS) - 1);
+    long lowest = (long) (index - (shift << SUB_BUCKET_BITS)) << shift;
+    return lowest + ((1L << shift) - 1) / 2;
+  }
+
+  private static void writeVarLong(final DataOutput out, final long value) throws IOException {
+    long remaining = value;
+    while ((remaining & ~0x7FL) != 0) {
+      out.writeByte((int) (remaining & 0x7F) | 0x80);
+      remaining >>>= 7;
+    }
+    out.writeByte((int) remaining);
+  }
+
+  private static long readVarLong(final DataInput in) throws IOException {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = in.readByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable-length integer");
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("count", getCount())
+        .add("p50", getValueAtPercentile(50))
+        .add("p99", getValueAtPercentile(99))
+        .add("max", getMax())
+        .toString();
+  }
+
+}
@@ -0,0 +1,63 @@
+package net.opecko.http.fleet;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.google.common.base.Preconditions;
+
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+
+/**
+ * Records the time each request spends in the filter chain into its route's histogram in
+ * {@link LatencyHistograms}, requests not served by Jersey under
+ * {@link RouteResourceFilterFactory#UNROUTED}.
+ * <p>
+ * Requests that go asynchronous, such as event streams, are left out: the chain returning says
+ * nothing about when they end.
+ */
+public class LatencyHistogramFilter implements Filter {
+
+  private final LatencyHistograms latencyHistograms;
+
+  public LatencyHistogramFilter(final LatencyHistograms latencyHistograms) {
+    this.latencyHistograms = Preconditions.checkNotNull(latencyHistograms);
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    long start = System.nanoTime();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      if (!request.isAsyncStarted()) {
+        String route = RouteResourceFilterFactory.getRoute(request);
+        latencyHistograms.record(
+          null == route ? RouteResourceFilterFactory.UNROUTED : route,
+          TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)
+        );
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+}
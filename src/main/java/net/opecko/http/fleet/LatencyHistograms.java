@@ -0,0 +1,82 @@
+package net.opecko.http.fleet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+/**
+ * The request latency histograms of this node, one per route, cumulative since it started.
+ * <p>
+ * The set travels between nodes as a format version byte and the number of histograms, followed
+ * by each route's name and {@link LatencyHistogram#writeTo serialized histogram}.
+ */
+public class LatencyHistograms {
+
+  private static final byte FORMAT_VERSION = 1;
+
+  private final ConcurrentMap<String, LatencyHistogram> histograms;
+
+  public LatencyHistograms() {
+    this.histograms = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Records one request to {@code route} taking {@code micros} microseconds.
+   */
+  public void record(final String route, final long micros) {
+    LatencyHistogram histogram = histograms.get(route);
+    if (null == histogram) {
+      LatencyHistogram newHistogram = new LatencyHistogram();
+      histogram = histograms.putIfAbsent(route, newHistogram);
+      if (null == histogram) {
+        histogram = newHistogram;
+      }
+    }
+    histogram.record(micros);
+  }
+
+  /**
+   * Returns the histograms by route.
+   */
+  public SortedMap<String, LatencyHistogram> getHistograms() {
+    return ImmutableSortedMap.copyOf(histograms);
+  }
+
+  public void writeTo(final DataOutput out) throws IOException {
+    SortedMap<String, LatencyHistogram> snapshot = getHistograms();
+    out.writeByte(FORMAT_VERSION);
+    out.writeInt(snapshot.size());
+    for (Map.Entry<String, LatencyHistogram> entry : snapshot.entrySet()) {
+      out.writeUTF(entry.getKey());
+      entry.getValue().writeTo(out);
+    }
+  }
+
+  /**
+   * Reads histograms by route written by {@link #writeTo}.
+   */
+  public static SortedMap<String, LatencyHistogram> readFrom(final DataInput in) throws IOException {
+    byte version = in.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("Unsupported histogram set format version " + version);
+    }
+    int size = in.readInt();
+    if (size < 0) {
+      throw new IOException("Negative histogram count: " + size);
+    }
+    SortedMap<String, LatencyHistogram> histograms = new TreeMap<>();
+    for (int i = 0; i < size; i++) {
+      String route = in.readUTF();
+      histograms.put(route, LatencyHistogram.readFrom(in));
+    }
+    return histograms;
+  }
+
+}
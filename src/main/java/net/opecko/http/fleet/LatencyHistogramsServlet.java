@@ -0,0 +1,49 @@
+package net.opecko.http.fleet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Serves this node's {@link LatencyHistograms} in their compact binary form, for a
+ * {@link FleetAggregator} to merge.
+ */
+@Singleton
+public class LatencyHistogramsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+
+  static final String CONTENT_TYPE = "application/x-latency-histograms";
+
+  private final transient LatencyHistograms latencyHistograms;
+
+  @Inject
+  LatencyHistogramsServlet(final LatencyHistograms latencyHistograms) {
+    this.latencyHistograms = Preconditions.checkNotNull(latencyHistograms);
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    latencyHistograms.writeTo(new DataOutputStream(bytes));
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(CONTENT_TYPE);
+    response.setContentLength(bytes.size());
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    bytes.writeTo(response.getOutputStream());
+  }
+
+}
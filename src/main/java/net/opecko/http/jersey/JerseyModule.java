@@ -9,17 +9,29 @@ import javax.inject.Provider;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
 import com.google.inject.servlet.ServletModule;
 import com.sun.jersey.api.core.ResourceConfig;
 import com.sun.jersey.guice.spi.container.servlet.GuiceContainer;
 
+import net.opecko.http.admission.AdmissionRejectedExceptionMapper;
+import net.opecko.http.admission.AdmissionReleaseFilter;
+import net.opecko.http.bulkhead.BulkheadResourceFilterFactory;
+import net.opecko.http.config.jersey.JerseyParameters;
 import net.opecko.http.config.jersey.JerseyPath;
+import net.opecko.http.flags.DynamicFlag;
 import net.opecko.http.metrics.HttpStatusCodeMetricResourceFilterFactory;
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+import net.opecko.http.priority.PriorityResourceFilterFactory;
+import net.opecko.http.profiler.ProfilerResourceFilterFactory;
 import net.opecko.http.servlet.FilterDefinition;
 import net.opecko.http.servlet.ServletEndpoint;
+import net.opecko.http.slowlog.SlowRequestResourceFilterFactory;
+import net.opecko.http.tracing.TracingResourceFilterFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,6 +43,7 @@ import org.slf4j.LoggerFactory;
 public class JerseyModule extends ServletModule {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(JerseyModule.class);
+  private static final Joiner COMMA_JOINER = Joiner.on(",");
 
   @Parameter(names = "--jersey_path", description = "Jersey path under context root")
   private final String jerseyPath = "/api/*";
@@ -46,64 +59,70 @@ public class JerseyModule extends ServletModule {
         .addBinding()
         .toProvider(JerseyGuiceServletEndpointProvider.class)
         .in(Scopes.SINGLETON);
-
       Multibinder.newSetBinder(binder(), FilterDefinition.class)
         .addBinding()
-        .toProvider(JerseyGuiceFilterDefinitionProvider.class)
-        .in(Scopes.SINGLETON);
+        .toInstance(new FilterDefinition(new AdmissionReleaseFilter(), jerseyPath));
 
       bind(HttpStatusCodeMetricResourceFilterFactory.class);
+      bind(RouteResourceFilterFactory.class);
+      bind(PriorityResourceFilterFactory.class);
+      bind(BulkheadResourceFilterFactory.class);
+      bind(TracingResourceFilterFactory.class);
+      bind(SlowRequestResourceFilterFactory.class);
+      bind(ProfilerResourceFilterFactory.class);
+      bind(AdmissionRejectedExceptionMapper.class);
+      // bulkheads register their limits as dynamic flags
+      Multibinder.newSetBinder(binder(), new TypeLiteral<DynamicFlag<?>>() { });
 
       // this should be injected with whatever's registered!!!
       Map<String, String> config = new HashMap<>();
       config.put(
         ResourceConfig.PROPERTY_RESOURCE_FILTER_FACTORIES,
-        HttpStatusCodeMetricResourceFilterFactory.class.getCanonicalName()
+        COMMA_JOINER.join(
+          RouteResourceFilterFactory.class.getCanonicalName(),
+          ProfilerResourceFilterFactory.class.getCanonicalName(),
+          TracingResourceFilterFactory.class.getCanonicalName(),
+          SlowRequestResourceFilterFactory.class.getCanonicalName(),
+          HttpStatusCodeMetricResourceFilterFactory.class.getCanonicalName(),
+          PriorityResourceFilterFactory.class.getCanonicalName(),
+          BulkheadResourceFilterFactory.class.getCanonicalName()
+        )
       );
+      config.put(ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS, TracingResourceFilterFactory.class.getCanonicalName());
+      config.put(
+        ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS,
+        COMMA_JOINER.join(
+          SlowRequestResourceFilterFactory.class.getCanonicalName(),
+          TracingResourceFilterFactory.class.getCanonicalName()
+        )
+      );
+      bind(new TypeLiteral<Map<String, String>>() { }).annotatedWith(JerseyParameters.class).toInstance(config);
       serve(jerseyPath).with(GuiceContainer.class, config);
     } else {
       LOGGER.info("Metrics servlet not installed");
     }
   }
 
-  private static final class JerseyGuiceFilterDefinitionProvider implements Provider<FilterDefinition> {
-
-    private final GuiceContainer guiceContainer;
-    private final String jerseyPath;
-
-    @Inject
-    private JerseyGuiceFilterDefinitionProvider(
-        final GuiceContainer guiceContainer,
-        @JerseyPath final String jerseyPath
-    ) {
-      this.guiceContainer = guiceContainer;
-      this.jerseyPath = jerseyPath;
-    }
-
-    @Override
-    public FilterDefinition get() {
-      return new FilterDefinition(guiceContainer, jerseyPath);
-    }
-
-  }
-
   private static final class JerseyGuiceServletEndpointProvider implements Provider<ServletEndpoint> {
 
     private final GuiceContainer guiceContainer;
     private final String jerseyPath;
+    private final Map<String, String> jerseyParameters;
 
     @Inject
     private JerseyGuiceServletEndpointProvider(
         final GuiceContainer guiceContainer,
-        @JerseyPath final String jerseyPath
+        @JerseyPath final String jerseyPath,
+        @JerseyParameters final Map<String, String> jerseyParameters
     ) {
       this.guiceContainer = guiceContainer;
       this.jerseyPath = jerseyPath;
+      this.jerseyParameters = jerseyParameters;
     }
 
     @Override
     public ServletEndpoint get() {
-      return new ServletEndpoint(guiceContainer, jerseyPath);
+      return new ServletEndpoint(guiceContainer, jerseyParameters, jerseyPath);
     }
 
   }
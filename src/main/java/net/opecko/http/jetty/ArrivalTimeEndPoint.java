@@ -0,0 +1,46 @@
+package net.opecko.http.jetty;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import org.eclipse.jetty.io.SelectChannelEndPoint;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * {@link SelectChannelEndPoint} remembering when the selector last found it readable, which is
+ * when the connection's next request arrived, before it waited for a server thread.
+ */
+class ArrivalTimeEndPoint extends SelectChannelEndPoint {
+
+  private final SelectionKey key;
+  private volatile long readableNanos;
+
+  ArrivalTimeEndPoint(
+      final SocketChannel channel,
+      final SelectorManager.ManagedSelector selector,
+      final SelectionKey key,
+      final Scheduler scheduler,
+      final long idleTimeout
+  ) {
+    super(channel, selector, key, scheduler, idleTimeout);
+    this.key = key;
+  }
+
+  @Override
+  public void onSelected() {
+    if (key.isValid() && (key.readyOps() & SelectionKey.OP_READ) != 0) {
+      readableNanos = System.nanoTime();
+    }
+    super.onSelected();
+  }
+
+  /**
+   * Returns the {@link System#nanoTime()} at which the selector last found the connection
+   * readable, or 0 if it never has.
+   */
+  long getReadableNanos() {
+    return readableNanos;
+  }
+
+}
@@ -0,0 +1,89 @@
+package net.opecko.http.jetty;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * Holds the acceptors of the {@link GatedServerConnector}s while their connections are at the
+ * limit, or while accepting is paused, so new connections wait in the kernel's accept queue
+ * rather than opening.
+ * <p>
+ * The limit is shared, since the file descriptors and buffers it protects are. An acceptor already
+ * blocked in accept when the limit is reached still opens the connection it gets, so there may be
+ * up to one more connection per acceptor.
+ */
+public final class ConnectionGate {
+
+  private final int maxConnections;
+  private final Counter pauses;
+  private int open;
+  private boolean paused;
+
+  ConnectionGate(final int maxConnections, final MetricsRegistry metricsRegistry) {
+    Preconditions.checkArgument(maxConnections >= 0, "max connections must not be negative");
+    this.maxConnections = maxConnections;
+    this.pauses = metricsRegistry.newCounter(ConnectionGate.class, "accept pauses");
+    metricsRegistry.newGauge(ConnectionGate.class, "open connections", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getOpen();
+      }
+    });
+    metricsRegistry.newGauge(ConnectionGate.class, "accepting", new Gauge<Boolean>() {
+      @Override
+      public Boolean value() {
+        return isAccepting();
+      }
+    });
+  }
+
+  /**
+   * Waits until another connection may be accepted.
+   */
+  synchronized void awaitAccepting() throws InterruptedException {
+    if (!isAccepting()) {
+      pauses.inc();
+      while (!isAccepting()) {
+        wait();
+      }
+    }
+  }
+
+  synchronized void opened() {
+    open++;
+  }
+
+  synchronized void closed() {
+    open--;
+    notifyAll();
+  }
+
+  /**
+   * Stops or resumes accepting connections, whatever their number.
+   */
+  synchronized void setPaused(final boolean paused) {
+    this.paused = paused;
+    notifyAll();
+  }
+
+  synchronized boolean isAccepting() {
+    return !paused && (maxConnections == 0 || open < maxConnections);
+  }
+
+  synchronized int getOpen() {
+    return open;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return Objects.toStringHelper(this)
+        .add("maxConnections", maxConnections)
+        .add("open", open)
+        .add("paused", paused)
+        .toString();
+  }
+
+}
@@ -0,0 +1,91 @@
+package net.opecko.http.jetty;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.SelectChannelEndPoint;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.Scheduler;
+
+/**
+ * {@link ServerConnector} that accepts a connection only when its {@link ConnectionGate} lets it,
+ * and reports every connection accepted and closed to the gate. A connection counts from when its
+ * channel is accepted, since the selector only opens it later and the acceptor would otherwise
+ * run past the limit, until its endpoint closes or fails to be created.
+ * <p>
+ * Its connections also remember when their requests arrive, for {@link RequestArrival}.
+ */
+public class GatedServerConnector extends ServerConnector {
+
+  private final ConnectionGate gate;
+
+  public GatedServerConnector(
+      final Server server,
+      final Executor executor,
+      final Scheduler scheduler,
+      final ByteBufferPool byteBufferPool,
+      final int acceptors,
+      final int selectors,
+      final ConnectionGate gate,
+      final ConnectionFactory... factories
+  ) {
+    super(server, executor, scheduler, byteBufferPool, acceptors, selectors, factories);
+    this.gate = Preconditions.checkNotNull(gate);
+  }
+
+  @Override
+  public void accept(final int acceptorID) throws IOException {
+    try {
+      gate.awaitAccepting();
+    } catch (final InterruptedException e) {
+      // the connector is stopping
+      throw new InterruptedIOException();
+    }
+    super.accept(acceptorID);
+  }
+
+  /**
+   * Called by {@link #accept} only once it has accepted a channel, so an accept returning without
+   * one, as once the connector has closed, counts nothing.
+   */
+  @Override
+  protected void configure(final Socket socket) {
+    super.configure(socket);
+    gate.opened();
+  }
+
+  @Override
+  protected SelectChannelEndPoint newEndPoint(
+      final SocketChannel channel,
+      final SelectorManager.ManagedSelector selector,
+      final SelectionKey key
+  ) throws IOException {
+    try {
+      return new ArrivalTimeEndPoint(channel, selector, key, getScheduler(), getIdleTimeout());
+    } catch (final RuntimeException e) {
+      // Jetty would leave the channel open with no endpoint to close it
+      Closeables.close(channel, true);
+      gate.closed();
+      throw e;
+    }
+  }
+
+  @Override
+  protected void onEndPointClosed(final EndPoint endpoint) {
+    super.onEndPointClosed(endpoint);
+    gate.closed();
+  }
+
+}
@@ -1,6 +1,7 @@
 package net.opecko.http.jetty;
 
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.inject.Inject;
@@ -12,15 +13,25 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Range;
 import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
 
 import net.opecko.http.config.server.Acceptors;
+import net.opecko.http.config.server.AdminConnectorEndpoint;
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.config.server.AdminPort;
+import net.opecko.http.config.server.AdminThreads;
 import net.opecko.http.config.server.AvailableProcessors;
 import net.opecko.http.config.server.BindAddress;
 import net.opecko.http.config.server.ContextRoot;
@@ -30,7 +41,10 @@ import net.opecko.http.config.server.MaximumThreads;
 import net.opecko.http.config.server.MinimumThreads;
 import net.opecko.http.config.server.Selectors;
 import net.opecko.http.config.server.ServerPort;
+import net.opecko.http.flags.DynamicFlag;
+import net.opecko.http.lifecycle.ServiceTransitionListener;
 import net.opecko.http.servlet.FilterDefinition;
+import net.opecko.http.servlet.InvalidRequestServlet;
 import net.opecko.http.servlet.ServletEndpoint;
 
 import org.eclipse.jetty.server.ConnectionFactory;
@@ -39,6 +53,7 @@ import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
@@ -85,6 +100,57 @@ public class JettyModule extends AbstractModule {
   @Parameter(names = "--selectors", description = "Connection selectors per processor")
   private int selectors = 2;
 
+  @Parameter(names = "--admin_port",
+      description = "Port of a separate connector, with its own threads, for the metrics endpoints (0 = none)")
+  private int adminPort;
+
+  @Parameter(names = "--admin_threads", description = "Threads of the admin connector")
+  private int adminThreads = 8;
+
+  @Parameter(names = "--max_connections",
+      description = "Open connections to the HTTP and HTTPS connectors beyond which accepting waits (0 = unlimited)")
+  private int maxConnections;
+
+  @Parameter(names = "--low_resource_check_interval",
+      description = "Milliseconds between low-resource checks (0 = no low-resource mode)")
+  private long lowResourceCheckInterval;
+
+  @Parameter(names = "--low_resource_thread_utilization",
+      description = "Busy share of the maximum server threads that starts low-resource mode")
+  private double lowResourceThreadUtilization = 0.95;
+
+  @Parameter(names = "--low_resource_heap_utilization",
+      description = "Old generation occupancy after collection, as a share of its maximum, that starts low-resource mode")
+  private double lowResourceHeapUtilization = 0.9;
+
+  @Parameter(names = "--low_resource_recovery_period",
+      description = "Milliseconds resources must stay below the thresholds before low-resource mode ends")
+  private long lowResourceRecoveryPeriod = 5000;
+
+  @Parameter(names = "--low_resource_idle_timeout",
+      description = "Connection idle timeout in milliseconds in low-resource mode (0 = unchanged)")
+  private int lowResourceIdleTimeout = 5000;
+
+  @Parameter(names = "--low_resource_stop_accepting",
+      description = "Stop accepting connections in low-resource mode", arity = 1)
+  private boolean lowResourceStopAccepting = true;
+
+  @Parameter(names = "--warmup_requests",
+      description = "Comma-separated \"[METHOD] path\" requests replayed before accepting traffic")
+  private String warmupRequests = "";
+
+  @Parameter(names = "--warmup_budget",
+      description = "Maximum warm-up time in milliseconds before accepting traffic (0 = no warm-up)")
+  private long warmupBudget;
+
+  @Parameter(names = "--warmup_tolerance",
+      description = "Relative change in mean warm-up latency between rounds considered stable")
+  private double warmupTolerance = 0.1;
+
+  @Parameter(names = "--warmup_stable_rounds",
+      description = "Consecutive stable warm-up rounds after which the server accepts traffic")
+  private int warmupStableRounds = 3;
+
   @Override
   protected void configure() {
     LOGGER.info("Bind address: {}", bindAddress);
@@ -98,9 +164,53 @@ public class JettyModule extends AbstractModule {
     Multibinder.newSetBinder(binder(), Connector.class)
         .addBinding().toProvider(HttpConnectorProvider.class).in(Scopes.SINGLETON);
     Multibinder.newSetBinder(binder(), ServletEndpoint.class);
+    Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class);
+    Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminConnectorEndpoint.class);
     Multibinder.newSetBinder(binder(), Service.class);
+    Multibinder.newSetBinder(binder(), ServiceTransitionListener.class);
     Multibinder.newSetBinder(binder(), ConnectionFactory.class).addBinding().to(HttpConnectionFactory.class);
     Multibinder.newSetBinder(binder(), FilterDefinition.class);
+    Multibinder.newSetBinder(binder(), WarmupRequest.class);
+    bind(int.class).annotatedWith(AdminPort.class).toInstance(adminPort);
+    bind(int.class).annotatedWith(AdminThreads.class).toInstance(adminThreads);
+    if (adminPort > 0) {
+      LOGGER.info("Admin port: {}", adminPort);
+      Multibinder.newSetBinder(binder(), Connector.class)
+          .addBinding().toProvider(AdminConnectorProvider.class).in(Scopes.SINGLETON);
+    }
+    Multibinder<DynamicFlag<?>> flags = Multibinder.newSetBinder(binder(), new TypeLiteral<DynamicFlag<?>>() { });
+    flags.addBinding().toProvider(MinThreadsFlagProvider.class).in(Scopes.SINGLETON);
+    flags.addBinding().toProvider(MaxThreadsFlagProvider.class).in(Scopes.SINGLETON);
+    flags.addBinding().toProvider(ThreadIdleTimeoutFlagProvider.class).in(Scopes.SINGLETON);
+    if (lowResourceCheckInterval > 0) {
+      install(new LowResourceModule());
+      Multibinder.newSetBinder(binder(), Service.class).addBinding().to(LowResourceMode.class);
+    }
+  }
+
+  @Singleton
+  @Provides
+  public ConnectionGate provideConnectionGate(final MetricsRegistry metricsRegistry) {
+    if (maxConnections > 0) {
+      LOGGER.info("Maximum connections: {}", maxConnections);
+    }
+    return new ConnectionGate(maxConnections, metricsRegistry);
+  }
+
+  @Singleton
+  @Provides
+  Warmup provideWarmup(final Set<WarmupRequest> requests, final MetricsRegistry metricsRegistry) {
+    ImmutableList.Builder<WarmupRequest> all = ImmutableList.builder();
+    for (String spec : Splitter.on(',').omitEmptyStrings().trimResults().split(warmupRequests)) {
+      all.add(WarmupRequest.parse(spec));
+    }
+    all.addAll(requests);
+    List<WarmupRequest> allRequests = all.build();
+    Warmup warmup = new Warmup(allRequests, warmupBudget, warmupTolerance, warmupStableRounds, metricsRegistry);
+    if (warmup.isEnabled()) {
+      LOGGER.info("Warm-up {}: {}", warmup, allRequests);
+    }
+    return warmup;
   }
 
   @Singleton
@@ -111,11 +221,46 @@ public class JettyModule extends AbstractModule {
     return server;
   }
 
+  /**
+   * Serves every endpoint from one context, or with an admin port the {@link AdminEndpoint}s from
+   * a context of their own that only answers on the admin connector, and which no filter wraps.
+   * {@link AdminConnectorEndpoint}s are served from that context only, and without an admin port
+   * not at all.
+   */
   @Singleton
   @Provides
   public Handler providerHandler(
       @ContextRoot final String contextPath,
       final Set<ServletEndpoint> endPoints,
+      @AdminEndpoint final Set<ServletEndpoint> adminEndPoints,
+      @AdminConnectorEndpoint final Set<ServletEndpoint> adminConnectorEndPoints,
+      final Set<FilterDefinition> filters,
+      @AdminPort final int adminPort
+  ) {
+    if (adminPort <= 0) {
+      for (ServletEndpoint endPoint : adminConnectorEndPoints) {
+        LOGGER.warn("Not serving {} without an admin port", endPoint);
+      }
+      return newContext(contextPath, ImmutableSet.copyOf(Iterables.concat(endPoints, adminEndPoints)), filters);
+    }
+    ServletContextHandler adminContext = newContext(
+      contextPath,
+      ImmutableSet.copyOf(Iterables.concat(adminEndPoints, adminConnectorEndPoints)),
+      ImmutableSet.<FilterDefinition>of()
+    );
+    // "@name" matches the connector rather than the Host header. Added first and answering every
+    // other path with 404, it leaves the application context no request on the admin connector.
+    adminContext.setVirtualHosts(new String[] {"@" + AdminConnectorProvider.NAME});
+    adminContext.addServlet(new ServletHolder(new InvalidRequestServlet()), "/");
+    ContextHandlerCollection contexts = new ContextHandlerCollection();
+    contexts.addHandler(adminContext);
+    contexts.addHandler(newContext(contextPath, endPoints, filters));
+    return contexts;
+  }
+
+  private static ServletContextHandler newContext(
+      final String contextPath,
+      final Set<ServletEndpoint> endPoints,
       final Set<FilterDefinition> filters
   ) {
     ServletContextHandler handler = new ServletContextHandler();
@@ -124,6 +269,9 @@ public class JettyModule extends AbstractModule {
     for (ServletEndpoint endPoint : endPoints) {
       LOGGER.info("Serving {} from {}", endPoint.getHttpServlet(), joiner.join(endPoint.getPaths()));
       ServletHolder servletHolder = new ServletHolder(endPoint.getHttpServlet());
+      servletHolder.setInitParameters(endPoint.getInitParameters());
+      // lets a servlet, such as the event stream, go asynchronous
+      servletHolder.setAsyncSupported(true);
       for (String path : endPoint.getPaths()) {
         handler.addServlet(servletHolder, path);
       }
@@ -131,6 +279,8 @@ public class JettyModule extends AbstractModule {
     for (FilterDefinition filterDef : filters) {
 //      LOGGER.info("Installing filter {} on {}", filter.getFilter(), joiner.join(filter.getPaths()));
       FilterHolder filterHolder = new FilterHolder(filterDef.getFilter());
+      // one filter without it in the chain would fail startAsync for the servlet behind it
+      filterHolder.setAsyncSupported(true);
       handler.addFilter(filterHolder, filterDef.getPath(), EnumSet.allOf(DispatcherType.class));
     }
     return handler;
@@ -191,12 +341,155 @@ public class JettyModule extends AbstractModule {
     return new QueuedThreadPool(maximumThreads, minimumThreads, idleTimeout);
   }
 
+  /**
+   * Binds {@link LowResourceMode}, installed only when it is enabled.
+   */
+  private final class LowResourceModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      // everything is provided
+    }
+
+    @Singleton
+    @Provides
+    LowResourceMode provideLowResourceMode(
+        final ThreadPool threadPool,
+        final Set<Connector> connectors,
+        final ConnectionGate gate,
+        final MetricsRegistry metricsRegistry
+    ) {
+      ImmutableList.Builder<GatedServerConnector> gated = ImmutableList.builder();
+      for (Connector connector : connectors) {
+        // the admin connector stays out of it
+        if (connector instanceof GatedServerConnector) {
+          gated.add((GatedServerConnector) connector);
+        }
+      }
+      LowResourceMode lowResourceMode = new LowResourceMode(
+        queuedThreadPool(threadPool),
+        gated.build(),
+        gate,
+        lowResourceCheckInterval,
+        lowResourceThreadUtilization,
+        lowResourceHeapUtilization,
+        lowResourceRecoveryPeriod,
+        lowResourceIdleTimeout,
+        lowResourceStopAccepting,
+        metricsRegistry
+      );
+      LOGGER.info("Low-resource mode: {}", lowResourceMode);
+      return lowResourceMode;
+    }
+
+  }
+
+  private static QueuedThreadPool queuedThreadPool(final ThreadPool threadPool) {
+    Preconditions.checkArgument(
+      threadPool instanceof QueuedThreadPool,
+      "Thread pool flags need a QueuedThreadPool: %s",
+      threadPool
+    );
+    return (QueuedThreadPool) threadPool;
+  }
+
+  private static final class MinThreadsFlagProvider implements Provider<DynamicFlag<?>> {
+
+    private final QueuedThreadPool threadPool;
+
+    @Inject
+    private MinThreadsFlagProvider(final ThreadPool threadPool) {
+      this.threadPool = queuedThreadPool(threadPool);
+    }
+
+    @Override
+    public DynamicFlag<?> get() {
+      return DynamicFlag.ofInteger(
+        "thread_pool_min_threads",
+        "Minimum number of server threads",
+        threadPool.getMinThreads(),
+        Range.atLeast(1),
+        new DynamicFlag.Listener<Integer>() {
+          @Override
+          public void apply(final Integer value) {
+            // the minimum and maximum flags change together under the pool's lock, keeping min <= max
+            synchronized (threadPool) {
+              Preconditions.checkArgument(value <= threadPool.getMaxThreads(), "Above maximum threads");
+              threadPool.setMinThreads(value);
+            }
+          }
+        }
+      );
+    }
+
+  }
+
+  private static final class MaxThreadsFlagProvider implements Provider<DynamicFlag<?>> {
+
+    private final QueuedThreadPool threadPool;
+
+    @Inject
+    private MaxThreadsFlagProvider(final ThreadPool threadPool) {
+      this.threadPool = queuedThreadPool(threadPool);
+    }
+
+    @Override
+    public DynamicFlag<?> get() {
+      return DynamicFlag.ofInteger(
+        "thread_pool_max_threads",
+        "Maximum number of server threads",
+        threadPool.getMaxThreads(),
+        Range.atLeast(1),
+        new DynamicFlag.Listener<Integer>() {
+          @Override
+          public void apply(final Integer value) {
+            // under the same lock as thread_pool_min_threads
+            synchronized (threadPool) {
+              Preconditions.checkArgument(value >= threadPool.getMinThreads(), "Below minimum threads");
+              threadPool.setMaxThreads(value);
+            }
+          }
+        }
+      );
+    }
+
+  }
+
+  private static final class ThreadIdleTimeoutFlagProvider implements Provider<DynamicFlag<?>> {
+
+    private final QueuedThreadPool threadPool;
+
+    @Inject
+    private ThreadIdleTimeoutFlagProvider(final ThreadPool threadPool) {
+      this.threadPool = queuedThreadPool(threadPool);
+    }
+
+    @Override
+    public DynamicFlag<?> get() {
+      return DynamicFlag.ofInteger(
+        "thread_pool_idle_timeout",
+        "Milliseconds an idle server thread above the minimum waits before exiting",
+        threadPool.getIdleTimeout(),
+        Range.atLeast(1),
+        new DynamicFlag.Listener<Integer>() {
+          @Override
+          public void apply(final Integer value) {
+            threadPool.setIdleTimeout(value);
+          }
+        }
+      );
+    }
+
+  }
+
   static class HttpConnectorProvider implements Provider<Connector> {
     private final Server server;
     private final String host;
     private final int port;
     private final int acceptors;
     private final int selectors;
+    private final int idleTimeout;
+    private final ConnectionGate gate;
     private final Set<ConnectionFactory> connectionFactories;
 
     @Inject
@@ -206,6 +499,8 @@ public class JettyModule extends AbstractModule {
         @ServerPort final int port,
         @Selectors final int selectors,
         @Acceptors final int acceptors,
+        @IdleTimeout final int idleTimeout,
+        final ConnectionGate gate,
         final Set<ConnectionFactory> connectionFactories
     ) {
       this.server = Preconditions.checkNotNull(server);
@@ -213,6 +508,8 @@ public class JettyModule extends AbstractModule {
       this.port = port;
       this.selectors = selectors;
       this.acceptors = acceptors;
+      this.idleTimeout = idleTimeout;
+      this.gate = Preconditions.checkNotNull(gate);
       this.connectionFactories = ImmutableSet.copyOf(connectionFactories);
     }
 
@@ -221,22 +518,82 @@ public class JettyModule extends AbstractModule {
       LOGGER.info("Creating HTTP connector with acceptors = {}, selectors = {}", acceptors, selectors);
       LOGGER.info("Binding HTTP connector to host = {}, port = {}", host, port);
       LOGGER.info("HTTP Connection factories = {}", connectionFactories);
-      ServerConnector connector = new ServerConnector(
+      ServerConnector connector = new GatedServerConnector(
         server,
         /* executor */ null,
         /* scheduler */ null,
         /* byte buffer pool */ null,
         acceptors,
         selectors,
+        gate,
         connectionFactories.toArray(new HttpConnectionFactory[connectionFactories.size()])
       );
       connector.setName("http");
+      connector.setIdleTimeout(idleTimeout);
+      if (!Strings.isNullOrEmpty(host)) {
+        connector.setHost(host);
+      }
+      connector.setPort(port);
+      return connector;
+    }
+  }
+
+  /**
+   * A connector for the {@link AdminEndpoint}s with its own small thread pool, acceptor and
+   * selector, so metrics scrapes and health probes are answered while the application connector
+   * is saturated.
+   */
+  private static final class AdminConnectorProvider implements Provider<Connector> {
+
+    static final String NAME = "admin";
+    private static final int MINIMUM_ADMIN_THREADS = 4;
+
+    private final Server server;
+    private final String host;
+    private final int port;
+    private final int threads;
+
+    @Inject
+    private AdminConnectorProvider(
+        final Server server,
+        @BindAddress final String host,
+        @AdminPort final int port,
+        @AdminThreads final int threads
+    ) {
+      Preconditions.checkArgument(
+        threads >= MINIMUM_ADMIN_THREADS,
+        "Admin connector needs at least %s threads",
+        MINIMUM_ADMIN_THREADS
+      );
+      this.server = Preconditions.checkNotNull(server);
+      this.host = Preconditions.checkNotNull(host);
+      this.port = port;
+      this.threads = threads;
+    }
+
+    @Override
+    public Connector get() {
+      LOGGER.info("Binding admin connector to host = {}, port = {} with {} threads", host, port, threads);
+      QueuedThreadPool threadPool = new QueuedThreadPool(threads, 1);
+      threadPool.setName(NAME);
+      // the connector starts and stops the thread pool with itself
+      ServerConnector connector = new ServerConnector(
+        server,
+        threadPool,
+        /* scheduler */ null,
+        /* byte buffer pool */ null,
+        /* acceptors */ 1,
+        /* selectors */ 1,
+        new HttpConnectionFactory()
+      );
+      connector.setName(NAME);
       if (!Strings.isNullOrEmpty(host)) {
         connector.setHost(host);
       }
       connector.setPort(port);
       return connector;
     }
+
   }
 
 }
@@ -5,6 +5,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.util.concurrent.AbstractIdleService;
 
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.LocalConnector;
 import org.eclipse.jetty.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,25 +22,51 @@ class JettyServer extends AbstractIdleService {
   private static final Logger LOGGER = LoggerFactory.getLogger(JettyServer.class);
 
   private final Server server;
+  private final Connector[] connectors;
+  private final Warmup warmup;
 
   @Inject
   JettyServer(
       final Server server,
-      final Set<Connector> connectorSet
+      final Set<Connector> connectorSet,
+      final Warmup warmup
   ) {
     Preconditions.checkNotNull(connectorSet);
     Preconditions.checkArgument(!connectorSet.isEmpty());
     this.server = Preconditions.checkNotNull(server);
+    this.warmup = Preconditions.checkNotNull(warmup);
     for (Connector connector : connectorSet) {
       LOGGER.info("Adding connector {}: {}", connector.getName(), connector);
     }
-    server.setConnectors(connectorSet.toArray(new Connector[connectorSet.size()]));
+    this.connectors = connectorSet.toArray(new Connector[connectorSet.size()]);
   }
 
+  /**
+   * Starts the server. With warm-up enabled the server first starts behind an in-process connector
+   * only, and the network connectors open once the warm-up has finished.
+   */
   @Override
   protected void startUp() throws Exception {
     LOGGER.info("Starting JettyServer");
+    if (!warmup.isEnabled()) {
+      server.setConnectors(connectors);
+      server.start();
+      return;
+    }
+    LocalConnector local = new LocalConnector(server);
+    local.setName("warmup");
+    server.setConnectors(new Connector[] {local});
     server.start();
+    try {
+      warmup.run(local);
+    } finally {
+      server.removeConnector(local);
+      local.stop();
+    }
+    for (Connector connector : connectors) {
+      server.addConnector(connector);
+      connector.start();
+    }
   }
 
   @Override
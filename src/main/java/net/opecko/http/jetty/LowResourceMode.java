@@ -0,0 +1,237 @@
+package net.opecko.http.jetty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Puts the {@link GatedServerConnector}s in low-resource mode while the server thread pool is
+ * saturated or the heap is nearly full, and back once both have stayed clear for the recovery
+ * period.
+ * <p>
+ * In low-resource mode connections get a shorter idle timeout, which at once closes the ones
+ * already idle for longer, such as keep-alive connections between requests, and the connectors
+ * optionally stop accepting. Heap pressure is the occupancy of the old generation after its last
+ * collection, since occupancy before collection says little about what is live.
+ */
+class LowResourceMode extends AbstractScheduledService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LowResourceMode.class);
+
+  private final QueuedThreadPool threadPool;
+  private final List<GatedServerConnector> connectors;
+  private final ConnectionGate gate;
+  private final long checkIntervalMillis;
+  private final double threadUtilizationThreshold;
+  private final double heapUtilizationThreshold;
+  private final long recoveryNanos;
+  private final int lowIdleTimeout;
+  private final boolean stopAccepting;
+  private final List<MemoryPoolMXBean> tenuredPools;
+  private final Map<GatedServerConnector, Long> idleTimeouts;
+  private final Counter entries;
+  private final Counter threadEntries;
+  private final Counter heapEntries;
+  private final Counter exits;
+  private final Timer duration;
+  private volatile boolean low;
+  private long enteredNanos;
+  private long clearSinceNanos;
+
+  LowResourceMode(
+      final QueuedThreadPool threadPool,
+      final List<GatedServerConnector> connectors,
+      final ConnectionGate gate,
+      final long checkIntervalMillis,
+      final double threadUtilizationThreshold,
+      final double heapUtilizationThreshold,
+      final long recoveryPeriodMillis,
+      final int lowIdleTimeout,
+      final boolean stopAccepting,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(checkIntervalMillis > 0, "check interval must be positive");
+    Preconditions.checkArgument(lowIdleTimeout >= 0, "low-resource idle timeout must not be negative");
+    this.threadPool = Preconditions.checkNotNull(threadPool);
+    this.connectors = ImmutableList.copyOf(connectors);
+    this.gate = Preconditions.checkNotNull(gate);
+    this.checkIntervalMillis = checkIntervalMillis;
+    this.threadUtilizationThreshold = threadUtilizationThreshold;
+    this.heapUtilizationThreshold = heapUtilizationThreshold;
+    this.recoveryNanos = TimeUnit.MILLISECONDS.toNanos(recoveryPeriodMillis);
+    this.lowIdleTimeout = lowIdleTimeout;
+    this.stopAccepting = stopAccepting;
+    this.tenuredPools = new ArrayList<>();
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      // of the heap pools, only the old generation supports both thresholds
+      if (pool.getType() == MemoryType.HEAP
+          && pool.isUsageThresholdSupported()
+          && pool.isCollectionUsageThresholdSupported()) {
+        tenuredPools.add(pool);
+      }
+    }
+    this.idleTimeouts = new IdentityHashMap<>();
+    this.entries = metricsRegistry.newCounter(LowResourceMode.class, "low resource mode entries");
+    this.threadEntries = metricsRegistry.newCounter(LowResourceMode.class, "low resource mode entries on threads");
+    this.heapEntries = metricsRegistry.newCounter(LowResourceMode.class, "low resource mode entries on heap");
+    this.exits = metricsRegistry.newCounter(LowResourceMode.class, "low resource mode exits");
+    this.duration = metricsRegistry.newTimer(LowResourceMode.class, "low resource mode duration");
+    metricsRegistry.newGauge(LowResourceMode.class, "low resource mode", new Gauge<Boolean>() {
+      @Override
+      public Boolean value() {
+        return low;
+      }
+    });
+    metricsRegistry.newGauge(LowResourceMode.class, "thread utilization", new Gauge<Double>() {
+      @Override
+      public Double value() {
+        return getThreadUtilization();
+      }
+    });
+    metricsRegistry.newGauge(LowResourceMode.class, "heap utilization", new Gauge<Double>() {
+      @Override
+      public Double value() {
+        return getHeapUtilization();
+      }
+    });
+  }
+
+  @Override
+  protected void runOneIteration() {
+    double threadUtilization = getThreadUtilization();
+    double heapUtilization = getHeapUtilization();
+    boolean onThreads = threadUtilization >= threadUtilizationThreshold;
+    boolean onHeap = heapUtilization >= heapUtilizationThreshold;
+    long now = System.nanoTime();
+    if (onThreads || onHeap) {
+      clearSinceNanos = 0;
+      if (!low) {
+        LOGGER.warn(
+          "Entering low-resource mode: thread utilization {}, heap utilization {}",
+          String.format("%.2f", threadUtilization),
+          String.format("%.2f", heapUtilization)
+        );
+        enter(now, onThreads, onHeap);
+      }
+    } else if (low) {
+      if (clearSinceNanos == 0) {
+        clearSinceNanos = now;
+      } else if (now - clearSinceNanos >= recoveryNanos) {
+        exit(now);
+      }
+    }
+  }
+
+  private void enter(final long now, final boolean onThreads, final boolean onHeap) {
+    low = true;
+    enteredNanos = now;
+    entries.inc();
+    if (onThreads) {
+      threadEntries.inc();
+    }
+    if (onHeap) {
+      heapEntries.inc();
+    }
+    if (lowIdleTimeout > 0) {
+      for (GatedServerConnector connector : connectors) {
+        idleTimeouts.put(connector, connector.getIdleTimeout());
+        setIdleTimeout(connector, lowIdleTimeout);
+      }
+    }
+    if (stopAccepting) {
+      gate.setPaused(true);
+    }
+  }
+
+  private void exit(final long now) {
+    LOGGER.info("Leaving low-resource mode");
+    low = false;
+    clearSinceNanos = 0;
+    exits.inc();
+    duration.update(now - enteredNanos, TimeUnit.NANOSECONDS);
+    if (stopAccepting) {
+      gate.setPaused(false);
+    }
+    for (Map.Entry<GatedServerConnector, Long> entry : idleTimeouts.entrySet()) {
+      setIdleTimeout(entry.getKey(), entry.getValue());
+    }
+    idleTimeouts.clear();
+  }
+
+  /**
+   * Sets the idle timeout of new and open connections alike. A shorter timeout closes open
+   * connections idle for longer than it at once.
+   */
+  private static void setIdleTimeout(final GatedServerConnector connector, final long idleTimeout) {
+    connector.setIdleTimeout(idleTimeout);
+    for (EndPoint endPoint : connector.getConnectedEndPoints()) {
+      endPoint.setIdleTimeout(idleTimeout);
+    }
+  }
+
+  @Override
+  protected void shutDown() {
+    if (low) {
+      exit(System.nanoTime());
+    }
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Busy threads over the most the pool may start.
+   */
+  double getThreadUtilization() {
+    return (double) (threadPool.getThreads() - threadPool.getIdleThreads()) / threadPool.getMaxThreads();
+  }
+
+  /**
+   * Highest old generation occupancy after collection over its maximum, or 0 if unknown.
+   */
+  double getHeapUtilization() {
+    double utilization = 0;
+    for (MemoryPoolMXBean pool : tenuredPools) {
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (null != usage && usage.getMax() > 0) {
+        utilization = Math.max(utilization, (double) usage.getUsed() / usage.getMax());
+      }
+    }
+    return utilization;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("checkIntervalMillis", checkIntervalMillis)
+        .add("threadUtilizationThreshold", threadUtilizationThreshold)
+        .add("heapUtilizationThreshold", heapUtilizationThreshold)
+        .add("recoveryPeriodMillis", TimeUnit.NANOSECONDS.toMillis(recoveryNanos))
+        .add("lowIdleTimeout", lowIdleTimeout)
+        .add("stopAccepting", stopAccepting)
+        .toString();
+  }
+
+}
@@ -0,0 +1,46 @@
+package net.opecko.http.jetty;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.server.HttpChannel;
+
+/**
+ * When the request served by the current thread arrived: when the selector found its connection
+ * readable, before the connection waited in the thread pool queue for a thread to parse and
+ * handle it. Jetty's own request timestamp is taken only once a thread has picked the request up.
+ * <p>
+ * Known for requests on the HTTP and HTTPS connectors; on others, such as the admin connector,
+ * a request is taken to arrive when asked.
+ */
+public final class RequestArrival {
+
+  private RequestArrival() {
+  }
+
+  /**
+   * Returns the nanoseconds since the current request arrived, 0 if unknown.
+   */
+  public static long getNanosSinceArrival() {
+    HttpChannel<?> channel = HttpChannel.getCurrentHttpChannel();
+    if (null == channel) {
+      return 0L;
+    }
+    EndPoint endPoint = channel.getEndPoint();
+    if (endPoint instanceof SslConnection.DecryptedEndPoint) {
+      endPoint = ((SslConnection.DecryptedEndPoint) endPoint).getSslConnection().getEndPoint();
+    }
+    if (!(endPoint instanceof ArrivalTimeEndPoint)) {
+      return 0L;
+    }
+    long readableNanos = ((ArrivalTimeEndPoint) endPoint).getReadableNanos();
+    return readableNanos == 0 ? 0L : Math.max(0L, System.nanoTime() - readableNanos);
+  }
+
+  /**
+   * Returns the {@link System#currentTimeMillis()} at which the current request arrived.
+   */
+  public static long getArrivalMillis() {
+    return System.currentTimeMillis() - getNanosSinceArrival() / 1000000L;
+  }
+
+}
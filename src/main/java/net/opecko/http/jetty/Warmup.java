@@ -0,0 +1,175 @@
+package net.opecko.http.jetty;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.eclipse.jetty.server.LocalConnector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays {@link WarmupRequest}s through an in-process {@link LocalConnector} in rounds of at least
+ * {@value #MIN_REQUESTS_PER_ROUND} requests until the mean round latency stops moving (the JIT has
+ * compiled the hot paths) or the time budget runs out. Runs before any network connector opens,
+ * so no real traffic sees the cold server.
+ */
+class Warmup {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Warmup.class);
+  private static final long REQUEST_TIMEOUT_SECONDS = 10;
+  private static final int MIN_REQUESTS_PER_ROUND = 64;
+
+  private final List<WarmupRequest> requests;
+  private final long budgetMillis;
+  private final double tolerance;
+  private final int stableRounds;
+  private volatile long elapsedMillis;
+  private volatile int rounds;
+  private volatile long failures;
+  private volatile boolean stabilized;
+
+  Warmup(
+      final List<WarmupRequest> requests,
+      final long budgetMillis,
+      final double tolerance,
+      final int stableRounds,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(budgetMillis >= 0, "Warm-up budget must not be negative");
+    Preconditions.checkArgument(tolerance > 0, "Warm-up tolerance must be positive");
+    Preconditions.checkArgument(stableRounds > 0, "Warm-up stable rounds must be positive");
+    this.requests = ImmutableList.copyOf(requests);
+    this.budgetMillis = budgetMillis;
+    this.tolerance = tolerance;
+    this.stableRounds = stableRounds;
+    metricsRegistry.newGauge(Warmup.class, "warmup millis", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return elapsedMillis;
+      }
+    });
+    metricsRegistry.newGauge(Warmup.class, "warmup rounds", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return rounds;
+      }
+    });
+    metricsRegistry.newGauge(Warmup.class, "warmup failures", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        return failures;
+      }
+    });
+    metricsRegistry.newGauge(Warmup.class, "warmup stabilized", new Gauge<Boolean>() {
+      @Override
+      public Boolean value() {
+        return stabilized;
+      }
+    });
+  }
+
+  boolean isEnabled() {
+    return budgetMillis > 0 && !requests.isEmpty();
+  }
+
+  /**
+   * Warms up through {@code connector}, which must belong to a started server.
+   */
+  void run(final LocalConnector connector) throws InterruptedException {
+    LOGGER.info("Warming up with {} requests for at most {} ms", requests.size(), budgetMillis);
+    long start = System.nanoTime();
+    long deadline = start + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    double previousMean = Double.NaN;
+    int stable = 0;
+    while (System.nanoTime() < deadline && stable < stableRounds) {
+      long roundStart = System.nanoTime();
+      int replayed = 0;
+      while (replayed < MIN_REQUESTS_PER_ROUND) {
+        for (WarmupRequest request : requests) {
+          replay(connector, request);
+        }
+        replayed += requests.size();
+      }
+      double mean = (double) (System.nanoTime() - roundStart) / replayed;
+      rounds++;
+      if (Math.abs(mean - previousMean) <= tolerance * previousMean) {
+        stable++;
+      } else {
+        stable = 0;
+      }
+      previousMean = mean;
+      elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+    stabilized = stable >= stableRounds;
+    LOGGER.info(
+      "Warm-up {} after {} rounds in {} ms, mean latency {} us, {} failed requests",
+      stabilized ? "stabilized" : "ran out of budget",
+      rounds,
+      elapsedMillis,
+      (long) (previousMean / 1000),
+      failures
+    );
+  }
+
+  private void replay(final LocalConnector connector, final WarmupRequest request) throws InterruptedException {
+    try {
+      ByteBuffer raw = ByteBuffer.wrap(request.toRawRequest().getBytes(StandardCharsets.UTF_8));
+      ByteBuffer response = connector.getResponses(raw, REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      int status = parseStatus(response);
+      if (status < 200 || status >= 400) {
+        failed(request, "status " + status);
+      }
+    } catch (final InterruptedException e) {
+      throw e;
+    } catch (final Exception e) {
+      failed(request, e.toString());
+    }
+  }
+
+  private void failed(final WarmupRequest request, final String reason) {
+    if (failures++ == 0) {
+      LOGGER.warn("Warm-up request {} failed: {}", request, reason);
+    }
+  }
+
+  /**
+   * Reads the status code from an {@code HTTP/1.1 NNN ...} status line, or -1 without one.
+   */
+  private static int parseStatus(final ByteBuffer response) {
+    int position = response.position();
+    while (position < response.limit() && response.get(position) != ' ') {
+      position++;
+    }
+    if (position + 4 > response.limit()) {
+      return -1;
+    }
+    int status = 0;
+    for (int i = position + 1; i < position + 4; i++) {
+      int digit = response.get(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      status = status * 10 + digit;
+    }
+    return status;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("requests", requests.size())
+      .add("budgetMillis", budgetMillis)
+      .add("tolerance", tolerance)
+      .add("stableRounds", stableRounds)
+      .toString();
+  }
+
+}
@@ -0,0 +1,92 @@
+package net.opecko.http.jetty;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A synthetic request replayed through the in-process connector while the server warms up.
+ * Modules contribute their own through a {@code Multibinder<WarmupRequest>}; simple ones also come
+ * from the {@code --warmup_requests} flag.
+ */
+public final class WarmupRequest {
+
+  private static final Splitter SPACE_SPLITTER = Splitter.on(' ').omitEmptyStrings().trimResults();
+
+  private final String method;
+  private final String path;
+  private final Map<String, String> headers;
+  private final String body;
+
+  public WarmupRequest(final String method, final String path, final Map<String, String> headers, final String body) {
+    this.method = Preconditions.checkNotNull(method);
+    this.path = Preconditions.checkNotNull(path);
+    this.headers = ImmutableMap.copyOf(headers);
+    this.body = Preconditions.checkNotNull(body);
+    Preconditions.checkArgument(path.startsWith("/"), "Warm-up path must be absolute: %s", path);
+  }
+
+  public static WarmupRequest get(final String path) {
+    return new WarmupRequest("GET", path, ImmutableMap.<String, String>of(), "");
+  }
+
+  /**
+   * Parses {@code "[METHOD] path"}, defaulting to {@code GET}.
+   */
+  public static WarmupRequest parse(final String spec) {
+    List<String> parts = SPACE_SPLITTER.splitToList(spec);
+    Preconditions.checkArgument(parts.size() == 1 || parts.size() == 2, "Bad warm-up request: %s", spec);
+    if (parts.size() == 1) {
+      return get(parts.get(0));
+    }
+    return new WarmupRequest(parts.get(0), parts.get(1), ImmutableMap.<String, String>of(), "");
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public Map<String, String> getHeaders() {
+    return headers;
+  }
+
+  public String getBody() {
+    return body;
+  }
+
+  /**
+   * Renders the request as HTTP/1.1 on a connection closed after the response.
+   */
+  String toRawRequest() {
+    StringBuilder sb = new StringBuilder(128 + body.length());
+    sb.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+    sb.append("Host: localhost\r\n");
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+    }
+    if (!body.isEmpty()) {
+      sb.append("Content-Length: ").append(body.getBytes(StandardCharsets.UTF_8).length).append("\r\n");
+    }
+    sb.append("Connection: close\r\n\r\n");
+    sb.append(body);
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("method", method)
+      .add("path", path)
+      .toString();
+  }
+
+}
@@ -0,0 +1,62 @@
+package net.opecko.http.jfr;
+
+import javax.annotation.Nullable;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.inject.AbstractModule;
+import com.google.inject.Module;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module emitting Java Flight Recorder events for requests and service transitions.
+ * <p>
+ * The events and their emitters live in {@code src/main/jfr}, built only on JDK 11 and later,
+ * and this module installs them by name. Nothing is installed, and no Flight Recorder class is
+ * loaded, unless {@code --jfr_events} is set, the JVM provides the {@code jdk.jfr} API, and the
+ * build included the events.
+ */
+@Parameters(separators = "=")
+public class JfrModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(JfrModule.class);
+  private static final String EVENTS_MODULE = "net.opecko.http.jfr.JfrEventsModule";
+
+  @Parameter(names = "--jfr_events", description = "Emit Java Flight Recorder events", arity = 1)
+  private boolean jfrEvents;
+
+  @Override
+  protected void configure() {
+    if (!jfrEvents) {
+      LOGGER.info("Flight Recorder events disabled");
+      return;
+    }
+    if (null == loadClass("jdk.jfr.Event")) {
+      LOGGER.warn("Flight Recorder events requested but jdk.jfr is not available in this JVM");
+      return;
+    }
+    Class<?> eventsModule = loadClass(EVENTS_MODULE);
+    if (null == eventsModule) {
+      LOGGER.warn("Flight Recorder events requested but this build has none, build on JDK 11 or later");
+      return;
+    }
+    LOGGER.info("Flight Recorder events enabled");
+    try {
+      install(eventsModule.asSubclass(Module.class).newInstance());
+    } catch (final InstantiationException | IllegalAccessException e) {
+      addError(e);
+    }
+  }
+
+  @Nullable
+  private static Class<?> loadClass(final String name) {
+    try {
+      return Class.forName(name, false, JfrModule.class.getClassLoader());
+    } catch (final ClassNotFoundException e) {
+      return null;
+    }
+  }
+
+}
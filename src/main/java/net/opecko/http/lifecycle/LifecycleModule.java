@@ -0,0 +1,51 @@
+package net.opecko.http.lifecycle;
+
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * Guice module for the {@link ServiceLifecycleManager} driving the bound {@link Service}s.
+ */
+@Parameters(separators = "=")
+public class LifecycleModule extends AbstractModule {
+
+  @Parameter(names = "--lifecycle_threads", description = "Threads starting and stopping services concurrently")
+  private int lifecycleThreads = 4;
+
+  @Parameter(names = "--service_start_timeout", description = "Default service start timeout in milliseconds")
+  private long serviceStartTimeout = 60000;
+
+  @Parameter(names = "--service_stop_timeout", description = "Default service stop timeout in milliseconds")
+  private long serviceStopTimeout = 30000;
+
+  @Override
+  protected void configure() {
+    Multibinder.newSetBinder(binder(), Service.class);
+    Multibinder.newSetBinder(binder(), ServiceTransitionListener.class);
+  }
+
+  @Provides
+  @Singleton
+  public ServiceLifecycleManager provideServiceLifecycleManager(
+      final Set<Service> services,
+      final MetricsRegistry metricsRegistry
+  ) {
+    return new ServiceLifecycleManager(
+      services,
+      lifecycleThreads,
+      serviceStartTimeout,
+      serviceStopTimeout,
+      metricsRegistry
+    );
+  }
+
+}
@@ -0,0 +1,38 @@
+package net.opecko.http.lifecycle;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import com.google.common.util.concurrent.Service;
+
+/**
+ * Declares how the {@link ServiceLifecycleManager} orders and bounds the start and stop of a
+ * {@link Service} class.
+ * <p>
+ * A service starts once every running service that is an instance of one of {@link #dependsOn()}
+ * has started, and stops before them. Dependencies on classes with no bound service are ignored.
+ */
+@Documented
+@Inherited
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface ServiceLifecycle {
+
+  Class<? extends Service>[] dependsOn() default { };
+
+  /**
+   * Start timeout in milliseconds, or 0 for the {@code --service_start_timeout} default.
+   */
+  long startTimeoutMillis() default 0;
+
+  /**
+   * Stop timeout in milliseconds, or 0 for the {@code --service_stop_timeout} default.
+   */
+  long stopTimeoutMillis() default 0;
+
+}
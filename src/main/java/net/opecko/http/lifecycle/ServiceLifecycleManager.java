@@ -0,0 +1,319 @@
+package net.opecko.http.lifecycle;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Service;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts and stops a set of {@link Service}s concurrently, in the order their
+ * {@link ServiceLifecycle} annotations declare.
+ * <p>
+ * Each service starts on a shared, bounded pool as soon as all of its dependencies are running,
+ * and stops as soon as every service depending on it has stopped. Every transition is bounded by
+ * the service's timeout; a service that fails or times out to start fails its dependents without
+ * delaying unrelated services. Start and stop durations are logged and exposed as gauges.
+ */
+public class ServiceLifecycleManager {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ServiceLifecycleManager.class);
+  private static final Joiner COMMA_JOINER = Joiner.on(", ");
+
+  private final ImmutableList<Node> nodes;
+  private final ListeningExecutorService executor;
+
+  public ServiceLifecycleManager(
+      final Set<Service> services,
+      final int threads,
+      final long startTimeoutMillis,
+      final long stopTimeoutMillis,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(threads > 0, "threads must be positive");
+    Preconditions.checkArgument(startTimeoutMillis > 0, "start timeout must be positive");
+    Preconditions.checkArgument(stopTimeoutMillis > 0, "stop timeout must be positive");
+    this.nodes = sort(link(services, startTimeoutMillis, stopTimeoutMillis));
+    this.executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(
+      threads,
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("service-lifecycle-%d").build()
+    ));
+    for (final Node node : nodes) {
+      metricsRegistry.newGauge(ServiceLifecycleManager.class, node.name + " start millis", new Gauge<Long>() {
+        @Override
+        public Long value() {
+          return node.startMillis;
+        }
+      });
+      metricsRegistry.newGauge(ServiceLifecycleManager.class, node.name + " stop millis", new Gauge<Long>() {
+        @Override
+        public Long value() {
+          return node.stopMillis;
+        }
+      });
+    }
+  }
+
+  /**
+   * Starts every service, returning whether all of them are running.
+   */
+  public boolean startAll() {
+    long start = System.nanoTime();
+    Map<Node, ListenableFuture<Node>> started = Maps.newHashMap();
+    for (final Node node : nodes) {
+      started.put(node, Futures.transform(
+        Futures.allAsList(futuresOf(node.dependencies, started)),
+        submit(new Callable<Node>() {
+          @Override
+          public Node call() throws TimeoutException {
+            return start(node);
+          }
+        })
+      ));
+    }
+    boolean success = await(started, "start");
+    LOGGER.info(
+      "Services {} in {} ms: {}",
+      success ? "started" : "failed to start",
+      TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+      durations(true)
+    );
+    return success;
+  }
+
+  /**
+   * Stops every service, returning whether all of them terminated; the manager may not be used
+   * afterwards.
+   */
+  public boolean stopAll() {
+    long start = System.nanoTime();
+    Map<Node, ListenableFuture<Node>> stopped = Maps.newHashMap();
+    try {
+      for (final Node node : nodes.reverse()) {
+        stopped.put(node, Futures.transform(
+          // stop even if a dependent failed to
+          Futures.successfulAsList(futuresOf(node.dependents, stopped)),
+          submit(new Callable<Node>() {
+            @Override
+            public Node call() throws TimeoutException {
+              return stop(node);
+            }
+          })
+        ));
+      }
+      boolean success = await(stopped, "stop");
+      LOGGER.info(
+        "Services {} in {} ms: {}",
+        success ? "stopped" : "failed to stop",
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        durations(false)
+      );
+      return success;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private Node start(final Node node) throws TimeoutException {
+    long start = System.nanoTime();
+    try {
+      node.service.startAsync().awaitRunning(node.startTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException e) {
+      LOGGER.error("{} did not start within {} ms", node.name, node.startTimeoutMillis);
+      throw e;
+    }
+    node.startMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    LOGGER.info("Started {} in {} ms", node.name, node.startMillis);
+    return node;
+  }
+
+  private Node stop(final Node node) throws TimeoutException {
+    long start = System.nanoTime();
+    try {
+      node.service.stopAsync().awaitTerminated(node.stopTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException e) {
+      LOGGER.error("{} did not stop within {} ms", node.name, node.stopTimeoutMillis);
+      throw e;
+    }
+    node.stopMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    LOGGER.info("Stopped {} in {} ms", node.name, node.stopMillis);
+    return node;
+  }
+
+  private AsyncFunction<List<Node>, Node> submit(final Callable<Node> task) {
+    return new AsyncFunction<List<Node>, Node>() {
+      @Override
+      public ListenableFuture<Node> apply(final List<Node> ignored) {
+        return executor.submit(task);
+      }
+    };
+  }
+
+  private static boolean await(final Map<Node, ListenableFuture<Node>> futures, final String action) {
+    boolean success = true;
+    for (Map.Entry<Node, ListenableFuture<Node>> entry : futures.entrySet()) {
+      try {
+        // bounded, since every transition it may wait on is
+        entry.getValue().get();
+      } catch (final ExecutionException e) {
+        success = false;
+        LOGGER.warn("Failure to {} {}", action, entry.getKey().name, e.getCause());
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOGGER.warn("Interrupted waiting for {} to {}", entry.getKey().name, action);
+        return false;
+      }
+    }
+    return success;
+  }
+
+  private String durations(final boolean start) {
+    List<String> durations = Lists.newArrayList();
+    for (Node node : nodes) {
+      long millis = start ? node.startMillis : node.stopMillis;
+      durations.add(node.name + " " + (millis < 0 ? "-" : millis + " ms"));
+    }
+    return COMMA_JOINER.join(durations);
+  }
+
+  private static List<ListenableFuture<Node>> futuresOf(
+      final List<Node> nodes,
+      final Map<Node, ListenableFuture<Node>> futures
+  ) {
+    List<ListenableFuture<Node>> result = Lists.newArrayListWithCapacity(nodes.size());
+    for (Node node : nodes) {
+      result.add(futures.get(node));
+    }
+    return result;
+  }
+
+  private static List<Node> link(
+      final Set<Service> services,
+      final long defaultStartTimeoutMillis,
+      final long defaultStopTimeoutMillis
+  ) {
+    List<Node> nodes = Lists.newArrayList();
+    for (Service service : services) {
+      ServiceLifecycle lifecycle = service.getClass().getAnnotation(ServiceLifecycle.class);
+      long startTimeoutMillis = null == lifecycle || lifecycle.startTimeoutMillis() <= 0
+          ? defaultStartTimeoutMillis
+          : lifecycle.startTimeoutMillis();
+      long stopTimeoutMillis = null == lifecycle || lifecycle.stopTimeoutMillis() <= 0
+          ? defaultStopTimeoutMillis
+          : lifecycle.stopTimeoutMillis();
+      nodes.add(new Node(service, startTimeoutMillis, stopTimeoutMillis));
+    }
+    for (Node node : nodes) {
+      ServiceLifecycle lifecycle = node.service.getClass().getAnnotation(ServiceLifecycle.class);
+      if (null == lifecycle) {
+        continue;
+      }
+      for (Class<? extends Service> dependency : lifecycle.dependsOn()) {
+        for (Node other : nodes) {
+          if (other != node && dependency.isInstance(other.service)) {
+            node.dependencies.add(other);
+            other.dependents.add(node);
+          }
+        }
+      }
+    }
+    return nodes;
+  }
+
+  /**
+   * Orders nodes so that every node comes after its dependencies.
+   */
+  private static ImmutableList<Node> sort(final List<Node> nodes) {
+    Map<Node, Integer> pending = Maps.newHashMap();
+    Deque<Node> ready = new ArrayDeque<>();
+    for (Node node : nodes) {
+      pending.put(node, node.dependencies.size());
+      if (node.dependencies.isEmpty()) {
+        ready.add(node);
+      }
+    }
+    ImmutableList.Builder<Node> sorted = ImmutableList.builder();
+    int count = 0;
+    while (!ready.isEmpty()) {
+      Node node = ready.remove();
+      sorted.add(node);
+      count++;
+      for (Node dependent : node.dependents) {
+        int remaining = pending.get(dependent) - 1;
+        pending.put(dependent, remaining);
+        if (remaining == 0) {
+          ready.add(dependent);
+        }
+      }
+    }
+    if (count != nodes.size()) {
+      List<String> cyclic = Lists.newArrayList();
+      for (Map.Entry<Node, Integer> entry : pending.entrySet()) {
+        if (entry.getValue() > 0) {
+          cyclic.add(entry.getKey().name);
+        }
+      }
+      throw new IllegalStateException("Cyclic service dependencies among " + COMMA_JOINER.join(cyclic));
+    }
+    return sorted.build();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("services", nodes)
+      .toString();
+  }
+
+  private static final class Node {
+
+    private final Service service;
+    private final String name;
+    private final long startTimeoutMillis;
+    private final long stopTimeoutMillis;
+    private final List<Node> dependencies;
+    private final List<Node> dependents;
+    private volatile long startMillis = -1;
+    private volatile long stopMillis = -1;
+
+    Node(final Service service, final long startTimeoutMillis, final long stopTimeoutMillis) {
+      this.service = service;
+      this.name = service.getClass().getSimpleName();
+      this.startTimeoutMillis = startTimeoutMillis;
+      this.stopTimeoutMillis = stopTimeoutMillis;
+      this.dependencies = Lists.newArrayList();
+      this.dependents = Lists.newArrayList();
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+
+  }
+
+}
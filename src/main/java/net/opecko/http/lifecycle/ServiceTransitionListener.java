@@ -0,0 +1,16 @@
+package net.opecko.http.lifecycle;
+
+import com.google.common.util.concurrent.Service;
+
+/**
+ * Notified of every state transition of the services managed by
+ * {@link net.opecko.http.HttpServer}.
+ * <p>
+ * Bind implementations with a {@code Multibinder<ServiceTransitionListener>}. Listeners are called
+ * on the thread making the transition and must not block.
+ */
+public interface ServiceTransitionListener {
+
+  void transitioned(Service service, Service.State from, Service.State to);
+
+}
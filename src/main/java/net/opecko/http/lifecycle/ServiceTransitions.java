@@ -0,0 +1,60 @@
+package net.opecko.http.lifecycle;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.Service;
+
+/**
+ * Adapts {@link ServiceTransitionListener}s to Guava {@link Service.Listener}s.
+ */
+public final class ServiceTransitions {
+
+  private ServiceTransitions() {
+  }
+
+  /**
+   * Reports every future transition of {@code service} to {@code listeners}.
+   */
+  public static void listen(final Service service, final Iterable<ServiceTransitionListener> listeners) {
+    final ImmutableList<ServiceTransitionListener> copy = ImmutableList.copyOf(listeners);
+    if (copy.isEmpty()) {
+      return;
+    }
+    service.addListener(
+      new Service.Listener() {
+        @Override
+        public void starting() {
+          notify(Service.State.NEW, Service.State.STARTING);
+        }
+
+        @Override
+        public void running() {
+          notify(Service.State.STARTING, Service.State.RUNNING);
+        }
+
+        @Override
+        public void stopping(final Service.State from) {
+          notify(from, Service.State.STOPPING);
+        }
+
+        @Override
+        public void terminated(final Service.State from) {
+          notify(from, Service.State.TERMINATED);
+        }
+
+        @Override
+        public void failed(final Service.State from, final Throwable failure) {
+          notify(from, Service.State.FAILED);
+        }
+
+        private void notify(final Service.State from, final Service.State to) {
+          for (ServiceTransitionListener listener : copy) {
+            listener.transitioned(service, from, to);
+          }
+        }
+      },
+      MoreExecutors.sameThreadExecutor()
+    );
+  }
+
+}
@@ -0,0 +1,41 @@
+package net.opecko.http.metrics;
+
+import java.util.SortedMap;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.HealthCheck;
+import com.yammer.metrics.core.HealthCheckRegistry;
+
+/**
+ * A {@link HealthCheckRegistry} answering from the results cached by a {@link HealthCheckRunner},
+ * so serving a health probe never waits on the checks themselves.
+ */
+public class CachedHealthCheckRegistry extends HealthCheckRegistry {
+
+  private final HealthCheckRunner runner;
+
+  public CachedHealthCheckRegistry(final HealthCheckRunner runner) {
+    this.runner = Preconditions.checkNotNull(runner);
+  }
+
+  @Override
+  public void register(final HealthCheck healthCheck) {
+    runner.register(healthCheck);
+  }
+
+  @Override
+  public void unregister(final String name) {
+    runner.unregister(name);
+  }
+
+  @Override
+  public void unregister(final HealthCheck healthCheck) {
+    runner.unregister(healthCheck.getName());
+  }
+
+  @Override
+  public SortedMap<String, HealthCheck.Result> runHealthChecks() {
+    return runner.getResults();
+  }
+
+}
@@ -0,0 +1,193 @@
+package net.opecko.http.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.HealthCheck;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs all registered {@link HealthCheck}s in parallel in the background and caches the results.
+ * <p>
+ * Each check gets at most the configured timeout per round; a check that is still running from an
+ * earlier round is reported unhealthy instead of being started again, so a hung check holds on to
+ * at most one thread.
+ */
+public class HealthCheckRunner extends AbstractScheduledService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HealthCheckRunner.class);
+
+  private final long refreshIntervalMillis;
+  private final long timeoutMillis;
+  private final int threads;
+  private final ConcurrentMap<String, HealthCheck> healthChecks;
+  private final ConcurrentMap<String, Future<HealthCheck.Result>> running;
+  private final Timer refreshTimer;
+  private final Counter timeouts;
+  private volatile ExecutorService executor;
+  private volatile SortedMap<String, HealthCheck.Result> results;
+
+  public HealthCheckRunner(
+      final long refreshIntervalMillis,
+      final long timeoutMillis,
+      final int threads,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(refreshIntervalMillis > 0, "refresh interval must be positive");
+    Preconditions.checkArgument(timeoutMillis > 0, "timeout must be positive");
+    Preconditions.checkArgument(threads > 0, "threads must be positive");
+    this.refreshIntervalMillis = refreshIntervalMillis;
+    this.timeoutMillis = timeoutMillis;
+    this.threads = threads;
+    this.healthChecks = new ConcurrentHashMap<>();
+    this.running = new ConcurrentHashMap<>();
+    this.refreshTimer = metricsRegistry.newTimer(HealthCheckRunner.class, "refresh");
+    this.timeouts = metricsRegistry.newCounter(HealthCheckRunner.class, "timeouts");
+  }
+
+  public void register(final HealthCheck healthCheck) {
+    healthChecks.put(healthCheck.getName(), healthCheck);
+  }
+
+  public void unregister(final String name) {
+    healthChecks.remove(name);
+  }
+
+  /**
+   * Returns the results of the latest round, running one first if none has completed yet.
+   */
+  public SortedMap<String, HealthCheck.Result> getResults() {
+    SortedMap<String, HealthCheck.Result> latest = results;
+    if (null == latest) {
+      synchronized (this) {
+        latest = results;
+        if (null == latest) {
+          latest = refresh();
+        }
+      }
+    }
+    return latest;
+  }
+
+  @Override
+  protected void startUp() {
+    LOGGER.info(
+      "Running health checks every {} ms with {} threads and a {} ms timeout",
+      refreshIntervalMillis,
+      threads,
+      timeoutMillis
+    );
+    getResults();
+  }
+
+  @Override
+  protected void runOneIteration() {
+    try {
+      refresh();
+    } catch (final RuntimeException e) {
+      LOGGER.warn("Health check refresh failure", e);
+    }
+  }
+
+  @Override
+  protected void shutDown() {
+    ExecutorService executorService = executor;
+    if (null != executorService) {
+      executorService.shutdownNow();
+    }
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    return Scheduler.newFixedDelaySchedule(refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private synchronized SortedMap<String, HealthCheck.Result> refresh() {
+    TimerContext timerContext = refreshTimer.time();
+    try {
+      ExecutorService executorService = getExecutor();
+      Map<String, HealthCheck.Result> latest = Maps.newHashMap();
+      for (final HealthCheck healthCheck : healthChecks.values()) {
+        Future<HealthCheck.Result> previous = running.get(healthCheck.getName());
+        if (null != previous && !previous.isDone()) {
+          latest.put(healthCheck.getName(), HealthCheck.Result.unhealthy("Still running from a previous round"));
+          continue;
+        }
+        running.put(healthCheck.getName(), executorService.submit(new Callable<HealthCheck.Result>() {
+          @Override
+          public HealthCheck.Result call() {
+            return healthCheck.execute();
+          }
+        }));
+      }
+
+      long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      for (Map.Entry<String, Future<HealthCheck.Result>> entry : running.entrySet()) {
+        if (!healthChecks.containsKey(entry.getKey())) {
+          running.remove(entry.getKey());
+        } else if (!latest.containsKey(entry.getKey())) {
+          latest.put(entry.getKey(), await(entry.getValue(), deadlineNanos));
+        }
+      }
+      results = ImmutableSortedMap.copyOf(latest);
+      return results;
+    } finally {
+      timerContext.stop();
+    }
+  }
+
+  private HealthCheck.Result await(final Future<HealthCheck.Result> future, final long deadlineNanos) {
+    try {
+      return future.get(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (final TimeoutException e) {
+      timeouts.inc();
+      return HealthCheck.Result.unhealthy("Timed out after " + timeoutMillis + " ms");
+    } catch (final ExecutionException e) {
+      return HealthCheck.Result.unhealthy(e.getCause());
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return HealthCheck.Result.unhealthy("Interrupted");
+    }
+  }
+
+  private ExecutorService getExecutor() {
+    if (null == executor) {
+      executor = Executors.newFixedThreadPool(
+        threads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("health-check-%d").build()
+      );
+    }
+    return executor;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("healthChecks", healthChecks.keySet())
+      .add("refreshIntervalMillis", refreshIntervalMillis)
+      .add("timeoutMillis", timeoutMillis)
+      .toString();
+  }
+
+}
@@ -55,7 +55,7 @@ public class HttpStatusCodeMetricResourceFilterFactory implements ResourceFilter
     }
   }
 
-  static String getMetricBaseName(final AbstractResourceMethod am) {
+  public static String getMetricBaseName(final AbstractResourceMethod am) {
 
     String metricId = getPathWithoutSurroundingSlashes(am.getResource().getPath());
 
@@ -8,20 +8,34 @@ import javax.inject.Singleton;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.Service;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provides;
 import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
-import com.yammer.metrics.HealthChecks;
 import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.Clock;
 import com.yammer.metrics.core.HealthCheck;
 import com.yammer.metrics.core.HealthCheckRegistry;
 import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.VirtualMachineMetrics;
 import com.yammer.metrics.reporting.AdminServlet;
+import com.yammer.metrics.reporting.HealthCheckServlet;
+import com.yammer.metrics.reporting.MetricsServlet;
+import com.yammer.metrics.reporting.PingServlet;
+import com.yammer.metrics.reporting.ThreadDumpServlet;
 
 import net.opecko.http.config.metrics.MetricsPath;
+import net.opecko.http.config.metrics.PrometheusPath;
+import net.opecko.http.config.metrics.ResourceUsageSampleRate;
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.flags.DynamicFlag;
+import net.opecko.http.servlet.FilterDefinition;
 import net.opecko.http.servlet.ServletEndpoint;
 
 import org.slf4j.Logger;
@@ -38,6 +52,24 @@ public class MetricsModule extends AbstractModule {
   @Parameter(names = "--metrics_path", description = "Metrics Web page path under context root")
   private String metricsPath = "/metrics";
 
+  @Parameter(names = "--prometheus_path",
+      description = "Prometheus/OpenMetrics exposition path under context root (empty = disabled)")
+  private String prometheusPath = "/metrics/prometheus";
+
+  @Parameter(names = "--health_check_interval",
+      description = "Interval between background health check rounds in milliseconds")
+  private long healthCheckInterval = 1000;
+
+  @Parameter(names = "--health_check_timeout", description = "Health check timeout in milliseconds")
+  private long healthCheckTimeout = 5000;
+
+  @Parameter(names = "--health_check_threads", description = "Threads running health checks")
+  private int healthCheckThreads = 4;
+
+  @Parameter(names = "--resource_usage_sample_rate",
+      description = "Fraction of requests measured for per-route allocation and CPU time (0 = disabled)")
+  private double resourceUsageSampleRate;
+
   @Override
   protected void configure() {
     bind(MetricsRegistry.class).toInstance(Metrics.defaultRegistry());
@@ -45,26 +77,79 @@ public class MetricsModule extends AbstractModule {
     if (!Strings.isNullOrEmpty(metricsPath)) {
       bind(String.class).annotatedWith(MetricsPath.class).toInstance(metricsPath);
       LOGGER.info("Metrics servlet installed at: {}", metricsPath);
-      Multibinder.newSetBinder(binder(), ServletEndpoint.class)
+      Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class)
         .addBinding()
         .toProvider(MetricsEndpointProvider.class)
         .in(Scopes.SINGLETON);
     } else {
       LOGGER.info("Metrics servlet not installed");
     }
+
+    if (!Strings.isNullOrEmpty(prometheusPath)) {
+      bind(String.class).annotatedWith(PrometheusPath.class).toInstance(prometheusPath);
+      LOGGER.info("Prometheus servlet installed at: {}", prometheusPath);
+      Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class)
+        .addBinding()
+        .toProvider(PrometheusEndpointProvider.class)
+        .in(Scopes.SINGLETON);
+    } else {
+      LOGGER.info("Prometheus servlet not installed");
+    }
+    if (resourceUsageSampleRate > 0) {
+      bind(Double.class).annotatedWith(ResourceUsageSampleRate.class).toInstance(resourceUsageSampleRate);
+      bind(ResourceUsageFilter.class).toProvider(ResourceUsageFilterProvider.class).in(Scopes.SINGLETON);
+      Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(ResourceUsageFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+      Multibinder.newSetBinder(binder(), new TypeLiteral<DynamicFlag<?>>() { })
+        .addBinding()
+        .toProvider(ResourceUsageSampleRateFlagProvider.class)
+        .in(Scopes.SINGLETON);
+    } else {
+      LOGGER.info("Resource usage filter not installed");
+    }
     Multibinder.newSetBinder(binder(), HealthCheck.class);
+    Multibinder.newSetBinder(binder(), Service.class).addBinding().to(HealthCheckRunner.class);
   }
 
   @Provides
   @Singleton
-  public HealthCheckRegistry provideHealthCheckRegistry(final Set<HealthCheck> healthChecks) {
-    HealthCheckRegistry healthCheckRegistry = HealthChecks.defaultRegistry();
+  public HealthCheckRunner provideHealthCheckRunner(final MetricsRegistry metricsRegistry) {
+    return new HealthCheckRunner(healthCheckInterval, healthCheckTimeout, healthCheckThreads, metricsRegistry);
+  }
+
+  @Provides
+  @Singleton
+  public HealthCheckRegistry provideHealthCheckRegistry(
+      final Set<HealthCheck> healthChecks,
+      final HealthCheckRunner healthCheckRunner
+  ) {
+    HealthCheckRegistry healthCheckRegistry = new CachedHealthCheckRegistry(healthCheckRunner);
     for (HealthCheck healthCheck : healthChecks) {
       healthCheckRegistry.register(healthCheck);
     }
     return healthCheckRegistry;
   }
 
+  @Provides
+  @Singleton
+  public AdminServlet provideAdminServlet(
+      final HealthCheckRegistry healthCheckRegistry,
+      final MetricsRegistry metricsRegistry
+  ) {
+    return new AdminServlet(
+      new HealthCheckServlet(healthCheckRegistry),
+      new MetricsServlet(Clock.defaultClock(), VirtualMachineMetrics.getInstance(), metricsRegistry, new JsonFactory(), true),
+      new PingServlet(),
+      new ThreadDumpServlet(),
+      AdminServlet.DEFAULT_HEALTHCHECK_URI,
+      AdminServlet.DEFAULT_METRICS_URI,
+      AdminServlet.DEFAULT_PING_URI,
+      AdminServlet.DEFAULT_THREADS_URI
+    );
+  }
+
   private static final class MetricsEndpointProvider implements Provider<ServletEndpoint> {
 
     private final AdminServlet adminServlet;
@@ -87,4 +172,89 @@ public class MetricsModule extends AbstractModule {
     }
   }
 
+  private static final class ResourceUsageFilterProvider implements Provider<ResourceUsageFilter> {
+
+    private final double sampleRate;
+    private final MetricsRegistry metricsRegistry;
+
+    @Inject
+    private ResourceUsageFilterProvider(
+        @ResourceUsageSampleRate final Double sampleRate,
+        final MetricsRegistry metricsRegistry
+    ) {
+      this.sampleRate = sampleRate;
+      this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public ResourceUsageFilter get() {
+      return new ResourceUsageFilter(sampleRate, metricsRegistry);
+    }
+
+  }
+
+  private static final class ResourceUsageFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final ResourceUsageFilter resourceUsageFilter;
+
+    @Inject
+    private ResourceUsageFilterDefinitionProvider(final ResourceUsageFilter resourceUsageFilter) {
+      this.resourceUsageFilter = resourceUsageFilter;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(resourceUsageFilter, "/*");
+    }
+
+  }
+
+  private static final class ResourceUsageSampleRateFlagProvider implements Provider<DynamicFlag<?>> {
+
+    private final ResourceUsageFilter resourceUsageFilter;
+
+    @Inject
+    private ResourceUsageSampleRateFlagProvider(final ResourceUsageFilter resourceUsageFilter) {
+      this.resourceUsageFilter = resourceUsageFilter;
+    }
+
+    @Override
+    public DynamicFlag<?> get() {
+      return DynamicFlag.ofDouble(
+        "resource_usage_sample_rate",
+        "Fraction of requests whose allocation and CPU time are recorded",
+        resourceUsageFilter.getSampleRate(),
+        Range.openClosed(0.0, 1.0),
+        new DynamicFlag.Listener<Double>() {
+          @Override
+          public void apply(final Double value) {
+            resourceUsageFilter.setSampleRate(value);
+          }
+        }
+      );
+    }
+
+  }
+
+  private static final class PrometheusEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final PrometheusServlet prometheusServlet;
+    private final String prometheusPath;
+
+    @Inject
+    private PrometheusEndpointProvider(
+        final PrometheusServlet prometheusServlet,
+        @PrometheusPath final String prometheusPath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(prometheusPath));
+      this.prometheusServlet = Preconditions.checkNotNull(prometheusServlet);
+      this.prometheusPath = prometheusPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(prometheusServlet, prometheusPath);
+    }
+  }
+
 }
@@ -0,0 +1,352 @@
+package net.opecko.http.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.Metered;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricProcessor;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Sampling;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.stats.Snapshot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Renders a {@link MetricsRegistry} in the Prometheus text or OpenMetrics exposition format.
+ * <p>
+ * Output is produced metric by metric into a per-thread line buffer that is drained to the
+ * {@link Writer} in fixed-size chunks, so a scrape allocates little beyond the number formatting,
+ * however large the registry. Exposed names are computed once per metric and cached.
+ * <p>
+ * Sanitizing can map distinct metrics onto one name, such as {@code GET /a/b} and
+ * {@code GET /a-b}, which Prometheus would reject as duplicate families. Of the metrics sharing a
+ * name, the one whose full name sorts first gets it and the others a suffix hashed from their
+ * full name. Given the same colliding metrics, the names do not depend on the order they
+ * registered in, but which metrics exist can change: route metrics register on a route's first
+ * request, so when a colliding metric appears, a metric already exposed under the plain name may
+ * be renamed, in the running process or after a restart that saw different traffic.
+ */
+@Singleton
+public class PrometheusFormatter {
+
+  public static final String TEXT_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+  public static final String OPENMETRICS_CONTENT_TYPE =
+      "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PrometheusFormatter.class);
+  private static final int CHUNK_SIZE = 8192;
+  private static final double[] QUANTILES = { 0.5, 0.75, 0.95, 0.98, 0.99, 0.999 };
+  private static final String[] QUANTILE_LABELS = { "0.5", "0.75", "0.95", "0.98", "0.99", "0.999" };
+
+  private final MetricsRegistry metricsRegistry;
+  private final ConcurrentMap<MetricName, String> exposedNames;
+  private final Map<String, MetricName> nameOwners;
+  private final ThreadLocal<Renderer> renderers;
+
+  @Inject
+  public PrometheusFormatter(final MetricsRegistry metricsRegistry) {
+    this.metricsRegistry = Preconditions.checkNotNull(metricsRegistry);
+    this.exposedNames = new ConcurrentHashMap<>();
+    this.nameOwners = new HashMap<>();
+    this.renderers = new ThreadLocal<Renderer>() {
+      @Override
+      protected Renderer initialValue() {
+        return new Renderer();
+      }
+    };
+  }
+
+  /**
+   * Writes every metric whose exposed name starts with one of {@code prefixes} (all metrics if
+   * {@code prefixes} is empty).
+   */
+  public void write(
+      final Writer out,
+      final Collection<String> prefixes,
+      final boolean openMetrics
+  ) throws IOException {
+    Map<MetricName, Metric> metrics = metricsRegistry.allMetrics();
+    if (exposedNames.size() > 2 * metrics.size()) {
+      // metrics were removed from the registry, forget their names
+      forgetExposedNames();
+    }
+    // names all the new metrics first, since one may take the name of a metric already named
+    for (MetricName metricName : metrics.keySet()) {
+      getExposedName(metricName);
+    }
+    Renderer renderer = renderers.get();
+    renderer.start(out, openMetrics);
+    try {
+      for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+        String name = getExposedName(entry.getKey());
+        if (matches(name, prefixes)) {
+          try {
+            entry.getValue().processWith(renderer, entry.getKey(), name);
+          } catch (final IOException e) {
+            throw e;
+          } catch (final Exception e) {
+            LOGGER.debug("Skipping metric {}", entry.getKey(), e);
+          }
+        }
+      }
+      renderer.end();
+    } finally {
+      renderer.finish();
+    }
+  }
+
+  private static boolean matches(final String name, final Collection<String> prefixes) {
+    if (prefixes.isEmpty()) {
+      return true;
+    }
+    for (String prefix : prefixes) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private String getExposedName(final MetricName metricName) {
+    String name = exposedNames.get(metricName);
+    return null == name ? newExposedName(metricName) : name;
+  }
+
+  private synchronized String newExposedName(final MetricName metricName) {
+    String name = exposedNames.get(metricName);
+    if (null != name) {
+      return name;
+    }
+    name = sanitize(metricName);
+    MetricName owner = nameOwners.get(name);
+    if (null == owner) {
+      nameOwners.put(name, metricName);
+    } else if (metricName.compareTo(owner) < 0) {
+      nameOwners.put(name, metricName);
+      exposedNames.put(owner, disambiguate(name, owner));
+    } else {
+      name = disambiguate(name, metricName);
+    }
+    exposedNames.put(metricName, name);
+    return name;
+  }
+
+  private synchronized void forgetExposedNames() {
+    exposedNames.clear();
+    nameOwners.clear();
+  }
+
+  /**
+   * Suffixes {@code name} with a hash of the full metric name, which is stable across JVMs.
+   */
+  static String disambiguate(final String name, final MetricName metricName) {
+    return name + '_' + Integer.toHexString(metricName.getMBeanName().hashCode());
+  }
+
+  /**
+   * Maps group, type, name and scope onto {@code [a-zA-Z_:][a-zA-Z0-9_:]*}, collapsing runs of
+   * invalid characters into a single underscore.
+   */
+  static String sanitize(final MetricName metricName) {
+    StringBuilder sb = new StringBuilder();
+    appendSanitized(sb, metricName.getGroup());
+    appendSanitized(sb, metricName.getType());
+    appendSanitized(sb, metricName.getName());
+    if (metricName.hasScope()) {
+      appendSanitized(sb, metricName.getScope());
+    }
+    if (sb.length() > 0 && sb.charAt(sb.length() - 1) == '_') {
+      sb.setLength(sb.length() - 1);
+    }
+    if (sb.length() == 0 || Character.isDigit(sb.charAt(0))) {
+      sb.insert(0, '_');
+    }
+    return sb.toString();
+  }
+
+  private static void appendSanitized(final StringBuilder sb, final String part) {
+    if (part == null || part.isEmpty()) {
+      return;
+    }
+    if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '_') {
+      sb.append('_');
+    }
+    for (int i = 0; i < part.length(); i++) {
+      char c = part.charAt(i);
+      if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == ':') {
+        sb.append(c);
+      } else if (sb.length() > 0 && sb.charAt(sb.length() - 1) != '_') {
+        sb.append('_');
+      }
+    }
+  }
+
+  /**
+   * Per-thread rendering state; the metric's exposed name is passed as the processing context.
+   */
+  private static final class Renderer implements MetricProcessor<String> {
+
+    private final StringBuilder line = new StringBuilder(CHUNK_SIZE * 2);
+    private final char[] chunk = new char[CHUNK_SIZE * 2];
+    private Writer out;
+    private boolean openMetrics;
+
+    void start(final Writer writer, final boolean openMetricsFormat) {
+      this.out = writer;
+      this.openMetrics = openMetricsFormat;
+      line.setLength(0);
+    }
+
+    void end() throws IOException {
+      if (openMetrics) {
+        line.append("# EOF\n");
+      }
+      drain();
+    }
+
+    void finish() {
+      this.out = null;
+      line.setLength(0);
+    }
+
+    @Override
+    public void processGauge(final MetricName metricName, final Gauge<?> gauge, final String name)
+        throws IOException {
+      Object value = gauge.value();
+      double number;
+      if (value instanceof Number) {
+        number = ((Number) value).doubleValue();
+      } else if (value instanceof Boolean) {
+        number = ((Boolean) value).booleanValue() ? 1 : 0;
+      } else {
+        return;
+      }
+      type(name, "gauge");
+      sample(name, null, number);
+      flushIfFull();
+    }
+
+    @Override
+    public void processCounter(final MetricName metricName, final Counter counter, final String name)
+        throws IOException {
+      // yammer counters can be decremented, which Prometheus counters must not be
+      type(name, "gauge");
+      sample(name, null, counter.count());
+      flushIfFull();
+    }
+
+    @Override
+    public void processMeter(final MetricName metricName, final Metered meter, final String name)
+        throws IOException {
+      String family = name.endsWith("_total") ? name.substring(0, name.length() - "_total".length()) : name;
+      type(openMetrics ? family : family + "_total", "counter");
+      line.append(family).append("_total ");
+      appendValue(meter.count());
+      line.append('\n');
+      flushIfFull();
+    }
+
+    @Override
+    public void processHistogram(final MetricName metricName, final Histogram histogram, final String name)
+        throws IOException {
+      summary(name, histogram, histogram.count(), histogram.sum(), 1.0);
+    }
+
+    @Override
+    public void processTimer(final MetricName metricName, final Timer timer, final String name)
+        throws IOException {
+      summary(name, timer, timer.count(), timer.sum(), toSeconds(timer.durationUnit()));
+    }
+
+    private void summary(
+        final String name,
+        final Sampling sampling,
+        final long count,
+        final double sum,
+        final double scale
+    ) throws IOException {
+      type(name, "summary");
+      Snapshot snapshot = sampling.getSnapshot();
+      for (int i = 0; i < QUANTILES.length; i++) {
+        sample(name, QUANTILE_LABELS[i], snapshot.getValue(QUANTILES[i]) * scale);
+      }
+      line.append(name).append("_sum ");
+      appendValue(sum * scale);
+      line.append('\n').append(name).append("_count ");
+      appendValue(count);
+      line.append('\n');
+      flushIfFull();
+    }
+
+    private void type(final String name, final String type) {
+      line.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private void sample(final String name, final String quantile, final double value) {
+      line.append(name);
+      if (null != quantile) {
+        line.append("{quantile=\"").append(quantile).append("\"}");
+      }
+      line.append(' ');
+      appendValue(value);
+      line.append('\n');
+    }
+
+    private void appendValue(final double value) {
+      if (Double.isNaN(value)) {
+        line.append("NaN");
+      } else if (Double.isInfinite(value)) {
+        line.append(value > 0 ? "+Inf" : "-Inf");
+      } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+        line.append((long) value);
+      } else {
+        line.append(value);
+      }
+    }
+
+    private void appendValue(final long value) {
+      line.append(value);
+    }
+
+    private void flushIfFull() throws IOException {
+      if (line.length() >= CHUNK_SIZE) {
+        drain();
+      }
+    }
+
+    private void drain() throws IOException {
+      int offset = 0;
+      int length = line.length();
+      while (offset < length) {
+        int end = Math.min(length, offset + chunk.length);
+        line.getChars(offset, end, chunk, 0);
+        out.write(chunk, 0, end - offset);
+        offset = end;
+      }
+      line.setLength(0);
+    }
+
+    private static double toSeconds(final TimeUnit unit) {
+      return unit.toNanos(1) / 1e9;
+    }
+
+  }
+
+}
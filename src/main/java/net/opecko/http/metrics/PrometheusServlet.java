@@ -0,0 +1,58 @@
+package net.opecko.http.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Serves the metrics registry in the Prometheus text format, or in OpenMetrics when the scraper
+ * asks for it.
+ * <p>
+ * Repeated {@code name} query parameters restrict the output to metrics whose exposed name starts
+ * with one of the given prefixes.
+ */
+@Singleton
+public class PrometheusServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+  private static final String NAME_PARAMETER = "name";
+
+  private final transient PrometheusFormatter formatter;
+
+  @Inject
+  PrometheusServlet(final PrometheusFormatter formatter) {
+    this.formatter = Preconditions.checkNotNull(formatter);
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    String accept = request.getHeader("Accept");
+    boolean openMetrics = null != accept && accept.contains("application/openmetrics-text");
+    String[] names = request.getParameterValues(NAME_PARAMETER);
+    List<String> prefixes = null == names ? Collections.<String>emptyList() : Arrays.asList(names);
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType(
+      openMetrics ? PrometheusFormatter.OPENMETRICS_CONTENT_TYPE : PrometheusFormatter.TEXT_CONTENT_TYPE
+    );
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    Writer writer = response.getWriter();
+    formatter.write(writer, prefixes, openMetrics);
+    writer.flush();
+  }
+
+}
@@ -0,0 +1,164 @@
+package net.opecko.http.metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.sun.management.ThreadMXBean;
+import com.yammer.metrics.core.Histogram;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the bytes allocated and the CPU time consumed by the server thread while serving a
+ * request, into per-route histograms named after
+ * {@link HttpStatusCodeMetricResourceFilterFactory#getMetricBaseName}.
+ * <p>
+ * Only a fraction of requests is measured, since each measurement costs a few hundred nanoseconds.
+ * Allocation figures need a HotSpot-compatible JVM; on others only CPU time is recorded.
+ */
+public class ResourceUsageFilter implements Filter {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResourceUsageFilter.class);
+  private static final Joiner SPACE_JOINER = Joiner.on(" ");
+
+  private volatile double sampleRate;
+  private final MetricsRegistry metricsRegistry;
+  private final java.lang.management.ThreadMXBean threadMXBean;
+  private final boolean allocationSupported;
+  private final boolean cpuTimeSupported;
+  private final ConcurrentMap<String, Histogram> allocatedBytes;
+  private final ConcurrentMap<String, Histogram> cpuNanos;
+
+  public ResourceUsageFilter(final double sampleRate, final MetricsRegistry metricsRegistry) {
+    Preconditions.checkArgument(sampleRate > 0 && sampleRate <= 1, "sample rate must be within (0, 1]");
+    this.sampleRate = sampleRate;
+    this.metricsRegistry = Preconditions.checkNotNull(metricsRegistry);
+    this.threadMXBean = ManagementFactory.getThreadMXBean();
+    this.allocationSupported = enableAllocationAccounting(threadMXBean);
+    this.cpuTimeSupported = enableCpuTimeAccounting(threadMXBean);
+    this.allocatedBytes = new ConcurrentHashMap<>();
+    this.cpuNanos = new ConcurrentHashMap<>();
+    LOGGER.info(
+      "Sampling {} of requests for allocation (supported = {}) and CPU time (supported = {})",
+      sampleRate,
+      allocationSupported,
+      cpuTimeSupported
+    );
+  }
+
+  double getSampleRate() {
+    return sampleRate;
+  }
+
+  void setSampleRate(final double sampleRate) {
+    Preconditions.checkArgument(sampleRate > 0 && sampleRate <= 1, "sample rate must be within (0, 1]");
+    this.sampleRate = sampleRate;
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    if (ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      chain.doFilter(request, response);
+      return;
+    }
+    long threadId = Thread.currentThread().getId();
+    long startBytes = allocationSupported ? ((ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadId) : 0L;
+    long startCpu = cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0L;
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      String route = RouteResourceFilterFactory.getRoute(request);
+      String key = null == route ? RouteResourceFilterFactory.UNROUTED : route;
+      if (cpuTimeSupported) {
+        getHistogram(cpuNanos, key, "cpu nanos").update(threadMXBean.getCurrentThreadCpuTime() - startCpu);
+      }
+      if (allocationSupported) {
+        long endBytes = ((ThreadMXBean) threadMXBean).getThreadAllocatedBytes(threadId);
+        getHistogram(allocatedBytes, key, "allocated bytes").update(endBytes - startBytes);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+  private Histogram getHistogram(
+      final ConcurrentMap<String, Histogram> histograms,
+      final String route,
+      final String suffix
+  ) {
+    Histogram histogram = histograms.get(route);
+    if (null == histogram) {
+      Histogram newHistogram = metricsRegistry.newHistogram(
+        ResourceUsageFilter.class,
+        SPACE_JOINER.join(route, suffix),
+        true
+      );
+      histogram = histograms.putIfAbsent(route, newHistogram);
+      if (null == histogram) {
+        histogram = newHistogram;
+      }
+    }
+    return histogram;
+  }
+
+  private static boolean enableAllocationAccounting(final java.lang.management.ThreadMXBean threadMXBean) {
+    if (!(threadMXBean instanceof ThreadMXBean)) {
+      return false;
+    }
+    ThreadMXBean hotspotThreadMXBean = (ThreadMXBean) threadMXBean;
+    if (!hotspotThreadMXBean.isThreadAllocatedMemorySupported()) {
+      return false;
+    }
+    if (!hotspotThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+      hotspotThreadMXBean.setThreadAllocatedMemoryEnabled(true);
+    }
+    return true;
+  }
+
+  private static boolean enableCpuTimeAccounting(final java.lang.management.ThreadMXBean threadMXBean) {
+    if (!threadMXBean.isCurrentThreadCpuTimeSupported()) {
+      return false;
+    }
+    if (!threadMXBean.isThreadCpuTimeEnabled()) {
+      threadMXBean.setThreadCpuTimeEnabled(true);
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("sampleRate", sampleRate)
+      .add("allocationSupported", allocationSupported)
+      .add("cpuTimeSupported", cpuTimeSupported)
+      .toString();
+  }
+
+}
@@ -0,0 +1,85 @@
+package net.opecko.http.metrics;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+import javax.servlet.ServletRequest;
+
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import org.eclipse.jetty.server.HttpChannel;
+
+/**
+ * Records the route of the resource method serving a request, as named by
+ * {@link HttpStatusCodeMetricResourceFilterFactory#getMetricBaseName}, in the
+ * {@link #ROUTE_ATTRIBUTE} attribute of the servlet request, so servlet filters wrapping Jersey
+ * can attribute their measurements to a route.
+ */
+@Singleton
+public class RouteResourceFilterFactory implements ResourceFilterFactory {
+
+  public static final String ROUTE_ATTRIBUTE = RouteResourceFilterFactory.class.getName() + ".route";
+
+  /**
+   * Name under which per-route measurements group requests not served by a Jersey resource method.
+   */
+  public static final String UNROUTED = "(unrouted)";
+
+  @Override
+  public List<ResourceFilter> create(final AbstractMethod am) {
+    if (!(am instanceof AbstractResourceMethod)) {
+      // locators are not invoked per request
+      return null;
+    }
+    return Lists.<ResourceFilter>newArrayList(
+      new RouteResourceFilter(HttpStatusCodeMetricResourceFilterFactory.getMetricBaseName((AbstractResourceMethod) am))
+    );
+  }
+
+  /**
+   * Returns the route recorded for {@code request}, or {@code null} if Jersey did not serve it.
+   */
+  @Nullable
+  public static String getRoute(final ServletRequest request) {
+    return (String) request.getAttribute(ROUTE_ATTRIBUTE);
+  }
+
+  private static final class RouteResourceFilter implements ResourceFilter, ContainerRequestFilter {
+
+    private final String route;
+
+    RouteResourceFilter(final String route) {
+      this.route = route;
+    }
+
+    @Override
+    public ContainerRequest filter(final ContainerRequest request) {
+      HttpChannel<?> channel = HttpChannel.getCurrentHttpChannel();
+      if (null != channel) {
+        channel.getRequest().setAttribute(ROUTE_ATTRIBUTE, route);
+      }
+      return request;
+    }
+
+    @Override
+    public ContainerRequestFilter getRequestFilter() {
+      return this;
+    }
+
+    @Override
+    public ContainerResponseFilter getResponseFilter() {
+      // don't filter responses
+      return null;
+    }
+
+  }
+
+}
@@ -0,0 +1,26 @@
+package net.opecko.http.priority;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Assigns the requests to a Jersey resource method the {@link PriorityClass} they wait for the
+ * {@link PriorityScheduler} in.
+ * <p>
+ * On a method, the class applies to that method alone; on a resource class, to all methods of the
+ * class that carry no annotation of their own. A route listed in {@code --priority_routes} takes
+ * precedence over either.
+ */
+@Documented
+@Target({ TYPE, METHOD })
+@Retention(RUNTIME)
+public @interface Priority {
+
+  PriorityClass value();
+
+}
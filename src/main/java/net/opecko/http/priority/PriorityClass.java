@@ -0,0 +1,33 @@
+package net.opecko.http.priority;
+
+import java.util.Locale;
+
+/**
+ * Class of service of a request, from most to least urgent. Each class waits for the
+ * {@link PriorityScheduler} in a queue of its own.
+ */
+public enum PriorityClass {
+
+  /**
+   * Requests that must get through under any load, such as health and readiness checks.
+   */
+  CRITICAL,
+
+  /**
+   * Requests someone is waiting on; the default.
+   */
+  INTERACTIVE,
+
+  /**
+   * Expensive requests no one is waiting on, such as exports and backfills.
+   */
+  BATCH;
+
+  /**
+   * Lower-case name, as used in flags, headers and metric names.
+   */
+  public String getName() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+}
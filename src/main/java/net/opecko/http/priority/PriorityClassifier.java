@@ -0,0 +1,84 @@
+package net.opecko.http.priority;
+
+import java.util.Locale;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+
+import net.opecko.http.metrics.HttpStatusCodeMetricResourceFilterFactory;
+
+/**
+ * Decides the {@link PriorityClass} of requests: by route, as named in metrics, then by
+ * {@link Priority} annotation, then by request header, and otherwise the default class.
+ */
+final class PriorityClassifier {
+
+  private final Map<String, PriorityClass> routes;
+  private final String header;
+  private final PriorityClass defaultClass;
+
+  PriorityClassifier(
+      final Map<String, PriorityClass> routes,
+      final String header,
+      final PriorityClass defaultClass
+  ) {
+    this.routes = ImmutableMap.copyOf(routes);
+    this.header = Preconditions.checkNotNull(header);
+    this.defaultClass = Preconditions.checkNotNull(defaultClass);
+  }
+
+  /**
+   * Returns the class configured for every request to {@code am}, or {@code null} if it depends
+   * on the request.
+   */
+  @Nullable
+  PriorityClass classify(final AbstractResourceMethod am) {
+    PriorityClass routeClass = routes.get(HttpStatusCodeMetricResourceFilterFactory.getMetricBaseName(am));
+    if (null != routeClass) {
+      return routeClass;
+    }
+    Priority priority = am.getAnnotation(Priority.class);
+    if (null == priority) {
+      priority = am.getResource().getResourceClass().getAnnotation(Priority.class);
+    }
+    return null == priority ? null : priority.value();
+  }
+
+  /**
+   * Returns the class named by the priority header value, or the default class if there is none
+   * or it names no class.
+   */
+  PriorityClass classify(@Nullable final String headerValue) {
+    if (!Strings.isNullOrEmpty(headerValue)) {
+      try {
+        return PriorityClass.valueOf(headerValue.trim().toUpperCase(Locale.ROOT));
+      } catch (final IllegalArgumentException e) {
+        // not a class name
+      }
+    }
+    return defaultClass;
+  }
+
+  /**
+   * Request header naming the class of requests no route or annotation classifies, or empty.
+   */
+  String getHeader() {
+    return header;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("routes", routes)
+        .add("header", header)
+        .add("defaultClass", defaultClass)
+        .toString();
+  }
+
+}
@@ -0,0 +1,170 @@
+package net.opecko.http.priority;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.collect.Range;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.flags.DynamicFlag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for the {@link PriorityScheduler}, which admits requests to Jersey resource methods
+ * by {@link PriorityClass} once {@code --priority_max_concurrent} of them are executing.
+ * <p>
+ * Endpoints outside Jersey, such as the metrics and health checks, are never queued.
+ */
+@Parameters(separators = "=")
+public class PriorityModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(PriorityModule.class);
+  private static final Splitter COMMA_SPLITTER = Splitter.on(',').omitEmptyStrings().trimResults();
+  private static final Splitter EQUALS_SPLITTER = Splitter.on('=').trimResults();
+
+  @Parameter(names = "--priority_max_concurrent",
+      description = "Resource method requests executing at once before the rest queue by priority (0 = no scheduling)")
+  private int priorityMaxConcurrent;
+
+  @Parameter(names = "--priority_weights",
+      description = "Comma-separated class=weight shares of admissions while classes contend")
+  private String priorityWeights = "critical=16,interactive=4,batch=1";
+
+  @Parameter(names = "--priority_max_queue", description = "Requests waiting per priority class before more are rejected")
+  private int priorityMaxQueue = 512;
+
+  @Parameter(names = "--priority_max_wait",
+      description = "Maximum milliseconds a request waits for admission before it is rejected")
+  private long priorityMaxWait = 2000;
+
+  @Parameter(names = "--priority_starvation_threshold",
+      description = "Milliseconds after which a waiting request is admitted ahead of its class's weight")
+  private long priorityStarvationThreshold = 500;
+
+  @Parameter(names = "--priority_header",
+      description = "Request header naming the priority class of requests no route or annotation classifies, "
+          + "e.g. X-Request-Priority (empty = none, since any client can set it)")
+  private String priorityHeader = "";
+
+  @Parameter(names = "--priority_routes",
+      description = "Comma-separated \"route=class\" priority classes, routes named as in metrics, e.g. \"/reports GET=batch\"")
+  private String priorityRoutes = "";
+
+  @Parameter(names = "--priority_default_class", description = "Priority class of requests nothing else classifies")
+  private String priorityDefaultClass = "interactive";
+
+  @Override
+  protected void configure() {
+    if (priorityMaxConcurrent <= 0) {
+      LOGGER.info("Priority scheduling not installed");
+      return;
+    }
+    install(new SchedulerModule());
+    Multibinder.newSetBinder(binder(), new TypeLiteral<DynamicFlag<?>>() { })
+        .addBinding().toProvider(MaxConcurrentFlagProvider.class).in(Scopes.SINGLETON);
+  }
+
+  private static Map<String, String> parsePairs(final String flag, final String value) {
+    Map<String, String> pairs = new HashMap<>();
+    for (String pair : COMMA_SPLITTER.split(value)) {
+      List<String> parts = EQUALS_SPLITTER.splitToList(pair);
+      Preconditions.checkArgument(parts.size() == 2, "%s expects key=value pairs: %s", flag, pair);
+      pairs.put(parts.get(0), parts.get(1));
+    }
+    return pairs;
+  }
+
+  private static PriorityClass parseClass(final String name) {
+    return PriorityClass.valueOf(name.toUpperCase(Locale.ROOT));
+  }
+
+  /**
+   * Binds the scheduler and classifier, installed only when scheduling is enabled, since the
+   * scheduler needs a positive limit.
+   */
+  private final class SchedulerModule extends AbstractModule {
+
+    @Override
+    protected void configure() {
+      // everything is provided
+    }
+
+    @Provides
+    @Singleton
+    PriorityScheduler providePriorityScheduler(final MetricsRegistry metricsRegistry) {
+      Map<PriorityClass, Integer> weights = new EnumMap<>(PriorityClass.class);
+      for (Map.Entry<String, String> entry : parsePairs("--priority_weights", priorityWeights).entrySet()) {
+        weights.put(parseClass(entry.getKey()), Integer.valueOf(entry.getValue()));
+      }
+      PriorityScheduler scheduler = new PriorityScheduler(
+        priorityMaxConcurrent,
+        weights,
+        priorityMaxQueue,
+        priorityMaxWait,
+        priorityStarvationThreshold,
+        metricsRegistry
+      );
+      LOGGER.info("Priority scheduling: {}", scheduler);
+      return scheduler;
+    }
+
+    @Provides
+    @Singleton
+    PriorityClassifier providePriorityClassifier() {
+      Map<String, PriorityClass> routes = new HashMap<>();
+      for (Map.Entry<String, String> entry : parsePairs("--priority_routes", priorityRoutes).entrySet()) {
+        routes.put(entry.getKey(), parseClass(entry.getValue()));
+      }
+      PriorityClassifier classifier = new PriorityClassifier(routes, priorityHeader, parseClass(priorityDefaultClass));
+      LOGGER.info("Priority classes: {}", classifier);
+      return classifier;
+    }
+
+  }
+
+  private static final class MaxConcurrentFlagProvider implements Provider<DynamicFlag<?>> {
+
+    private final PriorityScheduler scheduler;
+
+    @Inject
+    private MaxConcurrentFlagProvider(final PriorityScheduler scheduler) {
+      this.scheduler = scheduler;
+    }
+
+    @Override
+    public DynamicFlag<?> get() {
+      return DynamicFlag.ofInteger(
+        "priority_max_concurrent",
+        "Resource method requests executing at once before the rest queue by priority",
+        scheduler.getMaxConcurrent(),
+        Range.atLeast(1),
+        new DynamicFlag.Listener<Integer>() {
+          @Override
+          public void apply(final Integer value) {
+            scheduler.setMaxConcurrent(value);
+          }
+        }
+      );
+    }
+
+  }
+
+}
@@ -0,0 +1,66 @@
+package net.opecko.http.priority;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Strings;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+
+import net.opecko.http.admission.AdmissionPermits;
+import net.opecko.http.admission.AdmissionRejectedException;
+import net.opecko.http.deadline.Deadline;
+
+/**
+ * Admits requests to a resource method through the {@link PriorityScheduler}, answering 503 when
+ * it cannot. A request waits no longer than its {@link Deadline} allows.
+ */
+public class PriorityResourceFilter implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+  private final PriorityScheduler scheduler;
+  private final PriorityClassifier classifier;
+  @Nullable
+  private final PriorityClass priorityClass;
+
+  PriorityResourceFilter(
+      final PriorityScheduler scheduler,
+      final PriorityClassifier classifier,
+      @Nullable final PriorityClass priorityClass
+  ) {
+    this.scheduler = scheduler;
+    this.classifier = classifier;
+    this.priorityClass = priorityClass;
+  }
+
+  @Override
+  public ContainerRequest filter(final ContainerRequest request) {
+    PriorityClass requestClass = priorityClass;
+    if (null == requestClass) {
+      String header = classifier.getHeader();
+      requestClass = classifier.classify(Strings.isNullOrEmpty(header) ? null : request.getHeaderValue(header));
+    }
+    if (!scheduler.enter(requestClass, Deadline.current().getRemainingMillis())) {
+      throw new AdmissionRejectedException("Server busy");
+    }
+    return request;
+  }
+
+  @Override
+  public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+    AdmissionPermits.release(scheduler);
+    return response;
+  }
+
+  @Override
+  public ContainerRequestFilter getRequestFilter() {
+    return this;
+  }
+
+  @Override
+  public ContainerResponseFilter getResponseFilter() {
+    return this;
+  }
+
+}
@@ -0,0 +1,47 @@
+package net.opecko.http.priority;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.api.model.AbstractSubResourceLocator;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+/**
+ * Installs a {@link PriorityResourceFilter} on every resource method when {@link PriorityModule}
+ * has configured a {@link PriorityScheduler}, and nothing otherwise.
+ */
+@Singleton
+public class PriorityResourceFilterFactory implements ResourceFilterFactory {
+
+  private PriorityScheduler scheduler;
+  private PriorityClassifier classifier;
+
+  @Inject
+  PriorityResourceFilterFactory() {
+    // the scheduler is injected when configured
+  }
+
+  @com.google.inject.Inject(optional = true)
+  void setScheduler(final PriorityScheduler scheduler, final PriorityClassifier classifier) {
+    this.scheduler = scheduler;
+    this.classifier = classifier;
+  }
+
+  @Override
+  public List<ResourceFilter> create(final AbstractMethod am) {
+    if (null == scheduler || am instanceof AbstractSubResourceLocator || !(am instanceof AbstractResourceMethod)) {
+      // locators are not invoked per request
+      return null;
+    }
+    return Lists.<ResourceFilter>newArrayList(
+      new PriorityResourceFilter(scheduler, classifier, classifier.classify((AbstractResourceMethod) am))
+    );
+  }
+
+}
@@ -0,0 +1,302 @@
+package net.opecko.http.priority;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+import net.opecko.http.admission.AdmissionPermits;
+
+/**
+ * Bounds the requests executing resource methods at once, admitting the ones that find it full
+ * from one queue per {@link PriorityClass}.
+ * <p>
+ * A free slot goes to the next request of the class chosen by smooth weighted round robin over
+ * the classes with requests waiting, so under contention each class is admitted in proportion to
+ * its weight, interleaved rather than in bursts. A class with requests waiting that has gone the
+ * starvation threshold without an admission gets the next one, so however heavily the others
+ * contend, each class keeps moving at least at that pace.
+ * <p>
+ * Like a {@link net.opecko.http.bulkhead.Bulkhead}, waiting requests block their thread, and the
+ * slot a request holds is held in {@link AdmissionPermits} until it is given back.
+ */
+final class PriorityScheduler implements AdmissionPermits.Permit {
+
+  private static final Joiner SPACE_JOINER = Joiner.on(" ");
+
+  private final ReentrantLock lock;
+  private final Map<PriorityClass, ClassQueue> queues;
+  private final int maxQueue;
+  private final long maxWaitMillis;
+  private final long starvationNanos;
+  private int maxConcurrent;
+  private int active;
+  private int waiting;
+
+  PriorityScheduler(
+      final int maxConcurrent,
+      final Map<PriorityClass, Integer> weights,
+      final int maxQueue,
+      final long maxWaitMillis,
+      final long starvationThresholdMillis,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(maxConcurrent > 0, "maxConcurrent must be positive");
+    Preconditions.checkArgument(maxQueue >= 0, "maxQueue must not be negative");
+    Preconditions.checkArgument(starvationThresholdMillis > 0, "starvation threshold must be positive");
+    this.lock = new ReentrantLock();
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueue = maxQueue;
+    this.maxWaitMillis = maxWaitMillis;
+    this.starvationNanos = TimeUnit.MILLISECONDS.toNanos(starvationThresholdMillis);
+    this.queues = new EnumMap<>(PriorityClass.class);
+    for (PriorityClass priorityClass : PriorityClass.values()) {
+      Integer weight = weights.get(priorityClass);
+      Preconditions.checkArgument(null != weight && weight > 0, "%s needs a positive weight", priorityClass);
+      queues.put(priorityClass, new ClassQueue(priorityClass, weight, metricsRegistry));
+    }
+    metricsRegistry.newGauge(PriorityScheduler.class, "active", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return getActive();
+      }
+    });
+  }
+
+  /**
+   * Takes a slot for the current thread, waiting in {@code priorityClass}'s queue if none is free,
+   * for no longer than the maximum wait or {@code remainingMillis}.
+   *
+   * @return {@code false} if the request must be rejected
+   */
+  boolean enter(final PriorityClass priorityClass, final long remainingMillis) {
+    ClassQueue queue = queues.get(priorityClass);
+    long start = System.nanoTime();
+    lock.lock();
+    try {
+      if (active < maxConcurrent && waiting == 0) {
+        active++;
+      } else if (!await(queue, start, Math.min(maxWaitMillis, remainingMillis))) {
+        queue.rejected.inc();
+        return false;
+      }
+    } finally {
+      lock.unlock();
+    }
+    queue.queueWait.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    AdmissionPermits.hold(this);
+    return true;
+  }
+
+  /**
+   * Queues the current thread until a slot is handed to it, holding the lock between waits.
+   */
+  private boolean await(final ClassQueue queue, final long start, final long waitMillis) {
+    if (queue.waiters.size() >= maxQueue) {
+      return false;
+    }
+    Waiter waiter = new Waiter(start, lock.newCondition());
+    queue.waiters.add(waiter);
+    waiting++;
+    long remaining = TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    try {
+      while (!waiter.admitted && remaining > 0) {
+        remaining = waiter.condition.awaitNanos(remaining);
+      }
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (!waiter.admitted) {
+      queue.waiters.remove(waiter);
+      waiting--;
+    }
+    return waiter.admitted;
+  }
+
+  /**
+   * Returns a slot taken by {@link #enter} to the next waiting request.
+   */
+  @Override
+  public void release() {
+    lock.lock();
+    try {
+      active--;
+      admitWaiters();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Hands free slots to waiting requests. Called with the lock held.
+   */
+  private void admitWaiters() {
+    while (active < maxConcurrent && waiting > 0) {
+      Waiter waiter = nextWaiter();
+      waiter.admitted = true;
+      active++;
+      waiting--;
+      waiter.condition.signal();
+    }
+  }
+
+  /**
+   * Removes the request to admit next: while classes contend, the head of the class starved the
+   * longest past the threshold, else of the class picked by smooth weighted round robin.
+   */
+  private Waiter nextWaiter() {
+    long now = System.nanoTime();
+    ClassQueue starved = null;
+    long starvedSince = 0;
+    int contending = 0;
+    for (ClassQueue queue : queues.values()) {
+      Waiter head = queue.waiters.peek();
+      if (null == head) {
+        continue;
+      }
+      contending++;
+      // waiting since its last admission, or since its oldest request came if that was later
+      long since = head.enqueuedNanos - queue.lastAdmittedNanos > 0 ? head.enqueuedNanos : queue.lastAdmittedNanos;
+      if (now - since >= starvationNanos && (null == starved || since - starvedSince < 0)) {
+        starved = queue;
+        starvedSince = since;
+      }
+    }
+    if (null != starved && contending > 1) {
+      starved.promoted.inc();
+      return starved.poll(now);
+    }
+    ClassQueue next = null;
+    int totalWeight = 0;
+    for (ClassQueue queue : queues.values()) {
+      if (!queue.waiters.isEmpty()) {
+        queue.currentWeight += queue.weight;
+        totalWeight += queue.weight;
+        if (null == next || queue.currentWeight > next.currentWeight) {
+          next = queue;
+        }
+      }
+    }
+    next.currentWeight -= totalWeight;
+    return next.poll(now);
+  }
+
+  int getMaxConcurrent() {
+    lock.lock();
+    try {
+      return maxConcurrent;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Changes the concurrency limit. Lowering it below the number of active requests lets them
+   * finish, admitting no one until they have.
+   */
+  void setMaxConcurrent(final int maxConcurrent) {
+    Preconditions.checkArgument(maxConcurrent > 0, "maxConcurrent must be positive");
+    lock.lock();
+    try {
+      this.maxConcurrent = maxConcurrent;
+      admitWaiters();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  int getActive() {
+    lock.lock();
+    try {
+      return active;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * A request waiting for a slot. Its fields are guarded by the scheduler's lock.
+   */
+  private static final class Waiter {
+
+    final long enqueuedNanos;
+    final Condition condition;
+    boolean admitted;
+
+    Waiter(final long enqueuedNanos, final Condition condition) {
+      this.enqueuedNanos = enqueuedNanos;
+      this.condition = condition;
+    }
+
+  }
+
+  /**
+   * The waiting requests of one class, with its weight and metrics.
+   */
+  private final class ClassQueue {
+
+    final int weight;
+    final Queue<Waiter> waiters;
+    final Timer queueWait;
+    final Counter rejected;
+    final Counter promoted;
+    int currentWeight;
+    long lastAdmittedNanos;
+
+    ClassQueue(final PriorityClass priorityClass, final int weight, final MetricsRegistry metricsRegistry) {
+      this.weight = weight;
+      this.waiters = new ArrayDeque<>();
+      String name = priorityClass.getName();
+      this.queueWait = metricsRegistry.newTimer(PriorityScheduler.class, SPACE_JOINER.join(name, "queue wait"));
+      this.rejected = metricsRegistry.newCounter(PriorityScheduler.class, SPACE_JOINER.join(name, "rejected"));
+      this.promoted = metricsRegistry.newCounter(
+        PriorityScheduler.class,
+        SPACE_JOINER.join(name, "starvation promotions")
+      );
+      metricsRegistry.newGauge(PriorityScheduler.class, SPACE_JOINER.join(name, "queued"), new Gauge<Integer>() {
+        @Override
+        public Integer value() {
+          lock.lock();
+          try {
+            return waiters.size();
+          } finally {
+            lock.unlock();
+          }
+        }
+      });
+    }
+
+    Waiter poll(final long now) {
+      lastAdmittedNanos = now;
+      return waiters.poll();
+    }
+
+  }
+
+  @Override
+  public String toString() {
+    Map<PriorityClass, Integer> weights = new EnumMap<>(PriorityClass.class);
+    for (Map.Entry<PriorityClass, ClassQueue> entry : queues.entrySet()) {
+      weights.put(entry.getKey(), entry.getValue().weight);
+    }
+    return Objects.toStringHelper(this)
+        .add("maxConcurrent", getMaxConcurrent())
+        .add("weights", weights)
+        .add("maxQueue", maxQueue)
+        .add("maxWaitMillis", maxWaitMillis)
+        .add("starvationThresholdMillis", TimeUnit.NANOSECONDS.toMillis(starvationNanos))
+        .toString();
+  }
+
+}
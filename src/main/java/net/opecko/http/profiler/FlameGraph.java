@@ -0,0 +1,147 @@
+package net.opecko.http.profiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Maps;
+
+/**
+ * Renders collapsed stacks as a self-contained SVG flame graph: roots at the bottom, each frame as
+ * wide as the share of samples it appears in, with a tooltip giving the exact count.
+ */
+final class FlameGraph {
+
+  private static final Splitter FRAME_SPLITTER = Splitter.on(';');
+  private static final int WIDTH = 1200;
+  private static final int FRAME_HEIGHT = 16;
+  private static final int PADDING = 10;
+  private static final double MIN_FRAME_WIDTH = 0.5;
+  private static final double CHAR_WIDTH = 7.0;
+
+  private final Node root;
+  private final String title;
+
+  FlameGraph(final Map<String, Integer> stacks, final String title) {
+    this.root = new Node("all");
+    this.title = title;
+    for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+      root.add(FRAME_SPLITTER.split(entry.getKey()), entry.getValue());
+    }
+  }
+
+  void write(final Writer out) throws IOException {
+    int depth = root.depth();
+    int height = (depth + 1) * FRAME_HEIGHT + 4 * PADDING;
+    out.write("<?xml version=\"1.0\" standalone=\"no\"?>\n");
+    out.write("<svg version=\"1.1\" xmlns=\"http://www.w3.org/2000/svg\" width=\"" + WIDTH
+        + "\" height=\"" + height + "\" font-family=\"monospace\" font-size=\"12\">\n");
+    out.write("<rect width=\"100%\" height=\"100%\" fill=\"#f8f8f8\"/>\n");
+    out.write("<text x=\"" + (WIDTH / 2) + "\" y=\"" + (2 * PADDING) + "\" text-anchor=\"middle\" font-size=\"16\">");
+    out.write(escape(title));
+    out.write("</text>\n");
+    if (root.count > 0) {
+      double scale = (WIDTH - 2.0 * PADDING) / root.count;
+      write(out, root, PADDING, height - PADDING - FRAME_HEIGHT, scale);
+    }
+    out.write("</svg>\n");
+  }
+
+  private void write(final Writer out, final Node node, final double x, final int y, final double scale)
+      throws IOException {
+    double width = node.count * scale;
+    if (width < MIN_FRAME_WIDTH) {
+      return;
+    }
+    String tooltip = node.name + " (" + node.count + " samples, "
+        + String.format(Locale.ROOT, "%.2f", 100.0 * node.count / root.count) + "%)";
+    out.write("<g><title>" + escape(tooltip) + "</title>");
+    out.write(String.format(
+        Locale.ROOT,
+        "<rect x=\"%.1f\" y=\"%d\" width=\"%.1f\" height=\"%d\" fill=\"%s\" rx=\"2\"/>",
+        x, y, width, FRAME_HEIGHT - 1, color(node.name)));
+    int chars = (int) ((width - 6) / CHAR_WIDTH);
+    if (chars > 2) {
+      String label = node.name.length() <= chars ? node.name : node.name.substring(0, chars - 2) + "..";
+      out.write(String.format(Locale.ROOT, "<text x=\"%.1f\" y=\"%d\">", x + 3, y + FRAME_HEIGHT - 4));
+      out.write(escape(label));
+      out.write("</text>");
+    }
+    out.write("</g>\n");
+    double childX = x;
+    for (Node child : node.children.values()) {
+      write(out, child, childX, y - FRAME_HEIGHT, scale);
+      childX += child.count * scale;
+    }
+  }
+
+  private static String color(final String name) {
+    int hash = name.hashCode();
+    int red = 205 + Math.abs(hash % 50);
+    int green = 80 + Math.abs((hash >> 8) % 150);
+    int blue = Math.abs((hash >> 16) % 55);
+    return "rgb(" + red + "," + green + "," + blue + ")";
+  }
+
+  private static String escape(final String text) {
+    StringBuilder sb = new StringBuilder(text.length());
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      switch (c) {
+        case '<':
+          sb.append("&lt;");
+          break;
+        case '>':
+          sb.append("&gt;");
+          break;
+        case '&':
+          sb.append("&amp;");
+          break;
+        case '"':
+          sb.append("&quot;");
+          break;
+        default:
+          sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  private static final class Node {
+
+    private final String name;
+    private final Map<String, Node> children;
+    private long count;
+
+    Node(final String name) {
+      this.name = name;
+      this.children = Maps.newTreeMap();
+    }
+
+    void add(final Iterable<String> frames, final int samples) {
+      count += samples;
+      Node node = this;
+      for (String frame : frames) {
+        Node child = node.children.get(frame);
+        if (null == child) {
+          child = new Node(frame);
+          node.children.put(frame, child);
+        }
+        child.count += samples;
+        node = child;
+      }
+    }
+
+    int depth() {
+      int depth = 0;
+      for (Node child : children.values()) {
+        depth = Math.max(depth, child.depth() + 1);
+      }
+      return depth;
+    }
+
+  }
+
+}
@@ -0,0 +1,41 @@
+package net.opecko.http.profiler;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Marks the current thread as serving a request, for the {@link SamplingProfiler}.
+ */
+public class ProfilerFilter implements Filter {
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    RequestThreads.enter();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      RequestThreads.exit();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+}
@@ -0,0 +1,87 @@
+package net.opecko.http.profiler;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.config.profiler.ProfilePath;
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.servlet.FilterDefinition;
+import net.opecko.http.servlet.ServletEndpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for the built-in sampling profiler.
+ */
+@Parameters(separators = "=")
+public class ProfilerModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProfilerModule.class);
+
+  @Parameter(names = "--profile_path", description = "Sampling profiler path under context root (empty = disabled)")
+  private String profilePath = "/metrics/profile";
+
+  @Parameter(names = "--profile_max_seconds", description = "Longest profile that may be taken, in seconds")
+  private long profileMaxSeconds = 30;
+
+  @Parameter(names = "--profile_cooldown",
+      description = "Time after a profile ends before another may start, in milliseconds")
+  private long profileCooldown = 10000;
+
+  @Override
+  protected void configure() {
+    if (Strings.isNullOrEmpty(profilePath)) {
+      LOGGER.info("Profiler servlet not installed");
+      return;
+    }
+    LOGGER.info("Profiler servlet installed at: {}", profilePath);
+    bind(String.class).annotatedWith(ProfilePath.class).toInstance(profilePath);
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toInstance(new FilterDefinition(new ProfilerFilter(), "/*"));
+    Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class)
+        .addBinding()
+        .toProvider(ProfilerEndpointProvider.class)
+        .in(Scopes.SINGLETON);
+  }
+
+  @Provides
+  @Singleton
+  public SamplingProfiler provideSamplingProfiler(final MetricsRegistry metricsRegistry) {
+    return new SamplingProfiler(profileMaxSeconds * 1000, profileCooldown, metricsRegistry);
+  }
+
+  private static final class ProfilerEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final ProfilerServlet profilerServlet;
+    private final String profilePath;
+
+    @Inject
+    private ProfilerEndpointProvider(
+        final ProfilerServlet profilerServlet,
+        @ProfilePath final String profilePath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(profilePath));
+      this.profilerServlet = Preconditions.checkNotNull(profilerServlet);
+      this.profilePath = profilePath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(profilerServlet, profilePath);
+    }
+  }
+
+}
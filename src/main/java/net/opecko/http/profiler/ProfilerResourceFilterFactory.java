@@ -0,0 +1,63 @@
+package net.opecko.http.profiler;
+
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+import net.opecko.http.metrics.HttpStatusCodeMetricResourceFilterFactory;
+
+/**
+ * Publishes the route of the resource method serving the current thread's request, so the
+ * {@link SamplingProfiler} can group its stacks by route.
+ */
+@Singleton
+public class ProfilerResourceFilterFactory implements ResourceFilterFactory {
+
+  @Override
+  public List<ResourceFilter> create(final AbstractMethod am) {
+    if (!(am instanceof AbstractResourceMethod)) {
+      // locators are not invoked per request
+      return null;
+    }
+    return Lists.<ResourceFilter>newArrayList(
+      new RoutePublishingFilter(HttpStatusCodeMetricResourceFilterFactory.getMetricBaseName((AbstractResourceMethod) am))
+    );
+  }
+
+  private static final class RoutePublishingFilter implements ResourceFilter, ContainerRequestFilter {
+
+    private final String route;
+
+    RoutePublishingFilter(final String route) {
+      this.route = route;
+    }
+
+    @Override
+    public ContainerRequest filter(final ContainerRequest request) {
+      RequestThreads.setRoute(route);
+      return request;
+    }
+
+    @Override
+    public ContainerRequestFilter getRequestFilter() {
+      return this;
+    }
+
+    @Override
+    public ContainerResponseFilter getResponseFilter() {
+      // don't filter responses
+      return null;
+    }
+
+  }
+
+}
@@ -0,0 +1,91 @@
+package net.opecko.http.profiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.primitives.Longs;
+
+/**
+ * Runs the {@link SamplingProfiler} and returns the result.
+ * <p>
+ * Query parameters: {@code seconds} (default 10), {@code interval} in milliseconds (default 10)
+ * and {@code format}, either {@code collapsed} (default) for flame graph tools or {@code svg} for a
+ * rendered flame graph. Answers 429 while another profile runs or the cool-down has not passed.
+ */
+@Singleton
+public class ProfilerServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+  private static final int SC_TOO_MANY_REQUESTS = 429;
+  private static final long DEFAULT_SECONDS = 10;
+  private static final long DEFAULT_INTERVAL_MILLIS = 10;
+
+  private final transient SamplingProfiler profiler;
+
+  @Inject
+  ProfilerServlet(final SamplingProfiler profiler) {
+    this.profiler = Preconditions.checkNotNull(profiler);
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    long seconds = getLong(request, "seconds", DEFAULT_SECONDS);
+    long interval = getLong(request, "interval", DEFAULT_INTERVAL_MILLIS);
+    boolean svg = "svg".equals(request.getParameter("format"));
+
+    SortedMap<String, Integer> stacks;
+    try {
+      stacks = profiler.profile(TimeUnit.SECONDS.toMillis(seconds), interval);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Interrupted");
+      return;
+    }
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    if (null == stacks) {
+      long retryAfter = Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(profiler.getCooldownRemainingMillis()));
+      response.setHeader("Retry-After", Long.toString(retryAfter));
+      response.sendError(SC_TOO_MANY_REQUESTS, "Profiler busy or cooling down");
+      return;
+    }
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setCharacterEncoding("UTF-8");
+    Writer writer = response.getWriter();
+    if (svg) {
+      response.setContentType("image/svg+xml");
+      new FlameGraph(stacks, "Request threads, " + Math.min(seconds, profiler.getMaxDurationMillis() / 1000) + " s")
+          .write(writer);
+    } else {
+      response.setContentType("text/plain");
+      for (Map.Entry<String, Integer> entry : stacks.entrySet()) {
+        writer.write(entry.getKey());
+        writer.write(' ');
+        writer.write(Integer.toString(entry.getValue()));
+        writer.write('\n');
+      }
+    }
+    writer.flush();
+  }
+
+  private static long getLong(final HttpServletRequest request, final String name, final long defaultValue) {
+    Long value = Longs.tryParse(Strings.nullToEmpty(request.getParameter(name)));
+    return null == value || value < 0 ? defaultValue : value;
+  }
+
+}
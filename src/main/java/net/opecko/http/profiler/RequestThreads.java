@@ -0,0 +1,77 @@
+package net.opecko.http.profiler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Tracks which threads are serving a request, and the route of that request once Jersey has
+ * matched it, so the profiler can tell busy worker threads from idle ones and label their stacks.
+ * <p>
+ * Each thread publishes into its own slot, registered the first time it serves a request; the
+ * request path does not allocate.
+ */
+final class RequestThreads {
+
+  private static final ConcurrentMap<Thread, Slot> SLOTS = new MapMaker().weakKeys().makeMap();
+  private static final ThreadLocal<Slot> CURRENT = new ThreadLocal<Slot>() {
+    @Override
+    protected Slot initialValue() {
+      Slot slot = new Slot(Thread.currentThread().getId());
+      SLOTS.put(Thread.currentThread(), slot);
+      return slot;
+    }
+  };
+
+  private RequestThreads() {
+  }
+
+  static void enter() {
+    Slot slot = CURRENT.get();
+    slot.route = null;
+    slot.inRequest = true;
+  }
+
+  static void setRoute(final String route) {
+    CURRENT.get().route = route;
+  }
+
+  static void exit() {
+    Slot slot = CURRENT.get();
+    slot.inRequest = false;
+    slot.route = null;
+  }
+
+  static Iterable<Map.Entry<Thread, Slot>> slots() {
+    return SLOTS.entrySet();
+  }
+
+  /**
+   * Request state of one thread; it must not reference the thread, which is the weak key.
+   */
+  static final class Slot {
+
+    private final long threadId;
+    private volatile boolean inRequest;
+    private volatile String route;
+
+    Slot(final long threadId) {
+      this.threadId = threadId;
+    }
+
+    long getThreadId() {
+      return threadId;
+    }
+
+    boolean isInRequest() {
+      return inRequest;
+    }
+
+    String getRoute() {
+      return route;
+    }
+
+  }
+
+}
@@ -0,0 +1,142 @@
+package net.opecko.http.profiler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically samples the stacks of threads serving requests and counts them in the collapsed
+ * stack format of flame graph tools, with the request's route as the root frame.
+ * <p>
+ * Only one profile runs at a time, each is bounded in duration and sampling frequency, and a new
+ * one may only start once a cool-down has passed since the previous one ended, so a profile can be
+ * taken on a production node without risking more than a bounded overhead.
+ */
+public class SamplingProfiler {
+
+  public static final long MIN_INTERVAL_MILLIS = 5;
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SamplingProfiler.class);
+  private static final int MAX_DEPTH = 256;
+
+  private final long maxDurationMillis;
+  private final long cooldownMillis;
+  private final ThreadMXBean threadMXBean;
+  private final AtomicBoolean running;
+  private final Counter profiles;
+  private final Counter rejected;
+  private volatile long availableAtMillis;
+
+  public SamplingProfiler(final long maxDurationMillis, final long cooldownMillis, final MetricsRegistry metricsRegistry) {
+    Preconditions.checkArgument(maxDurationMillis > 0, "maximum duration must be positive");
+    Preconditions.checkArgument(cooldownMillis >= 0, "cool-down must not be negative");
+    this.maxDurationMillis = maxDurationMillis;
+    this.cooldownMillis = cooldownMillis;
+    this.threadMXBean = ManagementFactory.getThreadMXBean();
+    this.running = new AtomicBoolean();
+    this.profiles = metricsRegistry.newCounter(SamplingProfiler.class, "profiles");
+    this.rejected = metricsRegistry.newCounter(SamplingProfiler.class, "rejected profiles");
+  }
+
+  /**
+   * Samples on the calling thread for {@code durationMillis}, capped at the configured maximum,
+   * every {@code intervalMillis}, raised to {@link #MIN_INTERVAL_MILLIS}.
+   *
+   * @return collapsed stacks with their sample counts, or {@code null} if a profile is running or
+   *     the cool-down has not passed
+   */
+  @Nullable
+  public SortedMap<String, Integer> profile(final long durationMillis, final long intervalMillis)
+      throws InterruptedException {
+    if (System.currentTimeMillis() < availableAtMillis || !running.compareAndSet(false, true)) {
+      rejected.inc();
+      return null;
+    }
+    profiles.inc();
+    long duration = Math.max(0L, Math.min(durationMillis, maxDurationMillis));
+    long interval = Math.max(intervalMillis, MIN_INTERVAL_MILLIS);
+    LOGGER.info("Profiling for {} ms every {} ms", duration, interval);
+    Map<String, Integer> stacks = Maps.newHashMap();
+    try {
+      long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(duration);
+      do {
+        sample(stacks);
+        TimeUnit.MILLISECONDS.sleep(interval);
+      } while (System.nanoTime() < deadlineNanos);
+    } finally {
+      availableAtMillis = System.currentTimeMillis() + cooldownMillis;
+      running.set(false);
+    }
+    return ImmutableSortedMap.copyOf(stacks);
+  }
+
+  /**
+   * Returns the time remaining before a new profile may start, in milliseconds.
+   */
+  public long getCooldownRemainingMillis() {
+    return Math.max(0L, availableAtMillis - System.currentTimeMillis());
+  }
+
+  public long getMaxDurationMillis() {
+    return maxDurationMillis;
+  }
+
+  private void sample(final Map<String, Integer> stacks) {
+    Map<Long, String> routes = Maps.newHashMap();
+    for (Map.Entry<Thread, RequestThreads.Slot> entry : RequestThreads.slots()) {
+      RequestThreads.Slot slot = entry.getValue();
+      if (slot.isInRequest() && entry.getKey() != Thread.currentThread()) {
+        String route = slot.getRoute();
+        routes.put(slot.getThreadId(), null == route ? RouteResourceFilterFactory.UNROUTED : route);
+      }
+    }
+    if (routes.isEmpty()) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    for (ThreadInfo threadInfo : threadMXBean.getThreadInfo(Longs.toArray(routes.keySet()), MAX_DEPTH)) {
+      if (null == threadInfo) {
+        // thread died since
+        continue;
+      }
+      sb.setLength(0);
+      sb.append(routes.get(threadInfo.getThreadId()));
+      StackTraceElement[] frames = threadInfo.getStackTrace();
+      for (int i = frames.length - 1; i >= 0; i--) {
+        sb.append(';').append(frames[i].getClassName()).append('.').append(frames[i].getMethodName());
+      }
+      String stack = sb.toString();
+      Integer count = stacks.get(stack);
+      stacks.put(stack, null == count ? 1 : count + 1);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("maxDurationMillis", maxDurationMillis)
+      .add("cooldownMillis", cooldownMillis)
+      .add("running", running.get())
+      .toString();
+  }
+
+}
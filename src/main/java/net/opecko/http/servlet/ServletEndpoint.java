@@ -2,6 +2,7 @@ package net.opecko.http.servlet;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 import javax.servlet.http.HttpServlet;
@@ -9,6 +10,7 @@ import javax.servlet.http.HttpServlet;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 /**
  * Package up a servlet definition.
@@ -16,11 +18,21 @@ import com.google.common.collect.ImmutableList;
 public class ServletEndpoint {
 
   private final HttpServlet httpServlet;
+  private final ImmutableMap<String, String> initParameters;
   private final ImmutableList<String> paths;
 
   public ServletEndpoint(final HttpServlet httpServlet, final String... paths) {
+    this(httpServlet, ImmutableMap.<String, String>of(), paths);
+  }
+
+  public ServletEndpoint(
+      final HttpServlet httpServlet,
+      final Map<String, String> initParameters,
+      final String... paths
+  ) {
     Preconditions.checkArgument(paths.length > 0);
     this.httpServlet = Preconditions.checkNotNull(httpServlet);
+    this.initParameters = ImmutableMap.copyOf(initParameters);
     this.paths = ImmutableList.copyOf(Arrays.asList(paths));
   }
 
@@ -28,6 +40,10 @@ public class ServletEndpoint {
     return httpServlet;
   }
 
+  public final Map<String, String> getInitParameters() {
+    return initParameters;
+  }
+
   public final List<String> getPaths() {
     return paths;
   }
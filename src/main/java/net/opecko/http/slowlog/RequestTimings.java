@@ -0,0 +1,275 @@
+package net.opecko.http.slowlog;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Phase timestamps of the request served by the current thread.
+ * <p>
+ * One instance, along with the response wrapper timing output writes, is allocated per server
+ * thread and reset between requests, so capturing timings allocates nothing per request. A request
+ * that goes asynchronous keeps the wrapper, which is then {@link #detach detached} from the thread.
+ */
+public final class RequestTimings {
+
+  private static final ThreadLocal<RequestTimings> THREAD = new ThreadLocal<RequestTimings>() {
+    @Override
+    protected RequestTimings initialValue() {
+      return new RequestTimings();
+    }
+  };
+
+  private boolean active;
+  private long queueNanos;
+  private long startMillis;
+  private long startNanos;
+  private long resourceStartNanos;
+  private long resourceEndNanos;
+  private long serializationStartNanos;
+  private long chainEndNanos;
+  private long endNanos;
+  private long streamWriteNanos;
+  private long flushNanos;
+  @Nullable private TimingResponse response;
+
+  private RequestTimings() {
+  }
+
+  static RequestTimings forCurrentThread() {
+    return THREAD.get();
+  }
+
+  /**
+   * Returns the timings of the request served by the current thread, or {@code null} outside of
+   * a request.
+   */
+  @Nullable
+  static RequestTimings active() {
+    RequestTimings timings = THREAD.get();
+    return timings.active ? timings : null;
+  }
+
+  boolean isActive() {
+    return active;
+  }
+
+  /**
+   * Starts timing a request that waited {@code queueNanos} to reach the filter, returning the
+   * response to pass down the filter chain.
+   */
+  HttpServletResponse start(final HttpServletResponse httpResponse, final long queueNanos) {
+    active = true;
+    startMillis = System.currentTimeMillis();
+    startNanos = System.nanoTime();
+    this.queueNanos = queueNanos;
+    if (null == response) {
+      response = new TimingResponse(httpResponse, this);
+    } else {
+      response.setResponse(httpResponse);
+    }
+    return response;
+  }
+
+  void markResourceStart() {
+    resourceStartNanos = System.nanoTime();
+  }
+
+  void markResourceEnd() {
+    if (resourceStartNanos > 0 && resourceEndNanos == 0) {
+      resourceEndNanos = System.nanoTime();
+    }
+  }
+
+  void markSerializationStart() {
+    serializationStartNanos = System.nanoTime();
+  }
+
+  void markChainEnd() {
+    chainEndNanos = System.nanoTime();
+  }
+
+  /**
+   * Commits whatever the application left buffered, timing it as part of the write phase.
+   */
+  void flush() throws IOException {
+    long start = System.nanoTime();
+    try {
+      response.getResponse().flushBuffer();
+    } finally {
+      flushNanos += System.nanoTime() - start;
+    }
+  }
+
+  void end() {
+    endNanos = System.nanoTime();
+    if (chainEndNanos == 0) {
+      chainEndNanos = endNanos;
+    }
+  }
+
+  /**
+   * Gives the response wrapper up to the asynchronous request still holding it: it stops timing
+   * writes, which may come from any thread, and the next request on this thread gets a new one.
+   */
+  void detach() {
+    if (null != response) {
+      response.detached = true;
+      response = null;
+    }
+  }
+
+  void reset() {
+    active = false;
+    queueNanos = 0;
+    startMillis = 0;
+    startNanos = 0;
+    resourceStartNanos = 0;
+    resourceEndNanos = 0;
+    serializationStartNanos = 0;
+    chainEndNanos = 0;
+    endNanos = 0;
+    streamWriteNanos = 0;
+    flushNanos = 0;
+  }
+
+  long getStartMillis() {
+    return startMillis;
+  }
+
+  long getTotalNanos() {
+    return endNanos - startNanos;
+  }
+
+  long getQueueNanos() {
+    return queueNanos;
+  }
+
+  long getResourceNanos() {
+    if (resourceStartNanos == 0) {
+      return 0L;
+    }
+    long resourceEnd = resourceEndNanos;
+    if (resourceEnd == 0) {
+      resourceEnd = serializationStartNanos > 0 ? serializationStartNanos : chainEndNanos;
+    }
+    return Math.max(0L, resourceEnd - resourceStartNanos);
+  }
+
+  long getSerializationNanos() {
+    if (serializationStartNanos == 0) {
+      return 0L;
+    }
+    return Math.max(0L, chainEndNanos - serializationStartNanos - streamWriteNanos);
+  }
+
+  long getWriteNanos() {
+    return streamWriteNanos + flushNanos;
+  }
+
+  long getFiltersNanos() {
+    return Math.max(0L, getTotalNanos() - getResourceNanos() - getSerializationNanos() - getWriteNanos());
+  }
+
+  private void addStreamWrite(final long nanos) {
+    streamWriteNanos += nanos;
+  }
+
+  /**
+   * Response handing out an output stream that times every write and flush.
+   */
+  private static final class TimingResponse extends HttpServletResponseWrapper {
+
+    private final TimingOutputStream outputStream;
+    private volatile boolean detached;
+
+    TimingResponse(final HttpServletResponse response, final RequestTimings timings) {
+      super(response);
+      this.outputStream = new TimingOutputStream(this, timings);
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+      // fail now, as the wrapped response would, if the writer is in use
+      outputStream.getDelegate();
+      return outputStream;
+    }
+
+  }
+
+  private static final class TimingOutputStream extends ServletOutputStream {
+
+    private final TimingResponse response;
+    private final RequestTimings timings;
+
+    TimingOutputStream(final TimingResponse response, final RequestTimings timings) {
+      this.response = response;
+      this.timings = timings;
+    }
+
+    ServletOutputStream getDelegate() throws IOException {
+      return response.getResponse().getOutputStream();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      if (response.detached) {
+        getDelegate().write(b);
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        getDelegate().write(b);
+      } finally {
+        timings.addStreamWrite(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (response.detached) {
+        getDelegate().write(b, off, len);
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        getDelegate().write(b, off, len);
+      } finally {
+        timings.addStreamWrite(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (response.detached) {
+        getDelegate().flush();
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        getDelegate().flush();
+      } finally {
+        timings.addStreamWrite(System.nanoTime() - start);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (response.detached) {
+        getDelegate().close();
+        return;
+      }
+      long start = System.nanoTime();
+      try {
+        getDelegate().close();
+      } finally {
+        timings.addStreamWrite(System.nanoTime() - start);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,102 @@
+package net.opecko.http.slowlog;
+
+import com.google.common.base.Objects;
+
+/**
+ * A request kept by the {@link SlowRequestLog}, with its time broken down by phase.
+ * <p>
+ * Queue wait precedes the request reaching the {@link SlowRequestFilter}, both waiting for a
+ * server thread and passing any filters ahead of it, and is not part of the total; filters covers
+ * everything in the filter chain after it not attributed to another phase, including Jersey's
+ * routing.
+ */
+public final class SlowRequest {
+
+  private final String route;
+  private final String method;
+  private final String path;
+  private final int status;
+  private final long startMillis;
+  private final long totalNanos;
+  private final long queueNanos;
+  private final long filtersNanos;
+  private final long resourceNanos;
+  private final long serializationNanos;
+  private final long writeNanos;
+
+  SlowRequest(
+      final String route,
+      final String method,
+      final String path,
+      final int status,
+      final RequestTimings timings
+  ) {
+    this.route = route;
+    this.method = method;
+    this.path = path;
+    this.status = status;
+    this.startMillis = timings.getStartMillis();
+    this.totalNanos = timings.getTotalNanos();
+    this.queueNanos = timings.getQueueNanos();
+    this.filtersNanos = timings.getFiltersNanos();
+    this.resourceNanos = timings.getResourceNanos();
+    this.serializationNanos = timings.getSerializationNanos();
+    this.writeNanos = timings.getWriteNanos();
+  }
+
+  public String getRoute() {
+    return route;
+  }
+
+  public String getMethod() {
+    return method;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  public long getQueueNanos() {
+    return queueNanos;
+  }
+
+  public long getFiltersNanos() {
+    return filtersNanos;
+  }
+
+  public long getResourceNanos() {
+    return resourceNanos;
+  }
+
+  public long getSerializationNanos() {
+    return serializationNanos;
+  }
+
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("route", route)
+      .add("method", method)
+      .add("path", path)
+      .add("status", status)
+      .add("totalNanos", totalNanos)
+      .toString();
+  }
+
+}
@@ -0,0 +1,88 @@
+package net.opecko.http.slowlog;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+import net.opecko.http.jetty.RequestArrival;
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+
+/**
+ * Times every request through its phases and offers it to the {@link SlowRequestLog}.
+ * <p>
+ * Queue wait is the time from the request's {@link RequestArrival arrival} to this filter. Nothing
+ * puts this filter first in the chain, since filters run in the order their modules happen to bind
+ * them, so queue wait also counts the time spent in any filters ahead of it.
+ * Requests not served by Jersey are logged under the {@link RouteResourceFilterFactory#UNROUTED}
+ * route.
+ */
+public class SlowRequestFilter implements Filter {
+
+  private final SlowRequestLog slowRequestLog;
+
+  public SlowRequestFilter(final SlowRequestLog slowRequestLog) {
+    this.slowRequestLog = Preconditions.checkNotNull(slowRequestLog);
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    RequestTimings timings = RequestTimings.forCurrentThread();
+    if (timings.isActive()) {
+      // forward or include of a request already being timed
+      chain.doFilter(request, response);
+      return;
+    }
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    HttpServletResponse httpResponse = (HttpServletResponse) response;
+    boolean failed = true;
+    try {
+      chain.doFilter(request, timings.start(httpResponse, RequestArrival.getNanosSinceArrival()));
+      timings.markChainEnd();
+      if (!request.isAsyncStarted()) {
+        timings.flush();
+      }
+      failed = false;
+    } finally {
+      timings.end();
+      String route = RouteResourceFilterFactory.getRoute(request);
+      try {
+        slowRequestLog.record(
+          null == route ? RouteResourceFilterFactory.UNROUTED : route,
+          httpRequest.getMethod(),
+          httpRequest.getRequestURI(),
+          failed && !httpResponse.isCommitted() ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : httpResponse.getStatus(),
+          timings
+        );
+      } finally {
+        if (request.isAsyncStarted()) {
+          timings.detach();
+        }
+        timings.reset();
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+}
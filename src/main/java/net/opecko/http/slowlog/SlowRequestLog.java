@@ -0,0 +1,179 @@
+package net.opecko.http.slowlog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * Keeps the slowest requests per route over a sliding window.
+ * <p>
+ * The window is split into buckets, each holding the slowest requests of its slice of time. A
+ * request no slower than every request already held by its bucket is rejected by comparing against
+ * a volatile threshold, without locking or allocating; only requests making the cut are copied out
+ * of their thread's {@link RequestTimings}.
+ */
+public class SlowRequestLog {
+
+  private static final int BUCKETS = 6;
+  private static final Comparator<SlowRequest> SLOWEST_FIRST = new Comparator<SlowRequest>() {
+    @Override
+    public int compare(final SlowRequest a, final SlowRequest b) {
+      return Long.compare(b.getTotalNanos(), a.getTotalNanos());
+    }
+  };
+
+  private final int count;
+  private final long windowMillis;
+  private final long bucketMillis;
+  private final ConcurrentMap<String, RouteLog> routes;
+
+  public SlowRequestLog(final int count, final long windowMillis) {
+    Preconditions.checkArgument(count > 0, "count must be positive");
+    Preconditions.checkArgument(windowMillis >= BUCKETS, "window too short: %s", windowMillis);
+    this.count = count;
+    this.windowMillis = windowMillis;
+    this.bucketMillis = windowMillis / BUCKETS;
+    this.routes = new ConcurrentHashMap<>();
+  }
+
+  void record(
+      final String route,
+      final String method,
+      final String path,
+      final int status,
+      final RequestTimings timings
+  ) {
+    RouteLog log = routes.get(route);
+    if (null == log) {
+      RouteLog created = new RouteLog();
+      log = routes.putIfAbsent(route, created);
+      if (null == log) {
+        log = created;
+      }
+    }
+    long epoch = timings.getStartMillis() / bucketMillis;
+    Bucket bucket = log.buckets[(int) (epoch % log.buckets.length)];
+    if (bucket.epoch == epoch && timings.getTotalNanos() <= bucket.threshold) {
+      return;
+    }
+    bucket.offer(epoch, new SlowRequest(route, method, path, status, timings));
+  }
+
+  /**
+   * Returns the slowest requests of the window per route, slowest first, optionally for one route.
+   */
+  public SortedMap<String, List<SlowRequest>> getSlowest(@Nullable final String route) {
+    long oldestEpoch = (System.currentTimeMillis() - windowMillis) / bucketMillis + 1;
+    SortedMap<String, List<SlowRequest>> slowest = Maps.newTreeMap();
+    for (Map.Entry<String, RouteLog> entry : routes.entrySet()) {
+      if (null != route && !route.equals(entry.getKey())) {
+        continue;
+      }
+      List<SlowRequest> requests = Lists.newArrayList();
+      for (Bucket bucket : entry.getValue().buckets) {
+        bucket.drainTo(requests, oldestEpoch);
+      }
+      if (!requests.isEmpty()) {
+        Collections.sort(requests, SLOWEST_FIRST);
+        slowest.put(entry.getKey(), requests.subList(0, Math.min(count, requests.size())));
+      }
+    }
+    return slowest;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public long getWindowMillis() {
+    return windowMillis;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("count", count)
+      .add("windowMillis", windowMillis)
+      .add("routes", routes.size())
+      .toString();
+  }
+
+  private final class RouteLog {
+
+    // one spare bucket so the oldest slice of the window is still intact while the newest fills
+    private final Bucket[] buckets;
+
+    RouteLog() {
+      buckets = new Bucket[BUCKETS + 1];
+      for (int i = 0; i < buckets.length; i++) {
+        buckets[i] = new Bucket();
+      }
+    }
+
+  }
+
+  private final class Bucket {
+
+    private final SlowRequest[] requests = new SlowRequest[count];
+    private int size;
+    private volatile long epoch = -1;
+    // total time a request must exceed to be kept, -1 until the bucket is full
+    private volatile long threshold = -1;
+
+    synchronized void offer(final long requestEpoch, final SlowRequest request) {
+      if (requestEpoch < epoch) {
+        return;
+      } else if (requestEpoch > epoch) {
+        Arrays.fill(requests, null);
+        size = 0;
+        threshold = -1;
+        epoch = requestEpoch;
+      }
+      if (size < requests.length) {
+        requests[size++] = request;
+        if (size < requests.length) {
+          return;
+        }
+      } else {
+        int fastest = indexOfFastest();
+        if (request.getTotalNanos() <= requests[fastest].getTotalNanos()) {
+          return;
+        }
+        requests[fastest] = request;
+      }
+      threshold = requests[indexOfFastest()].getTotalNanos();
+    }
+
+    synchronized void drainTo(final List<SlowRequest> into, final long oldestEpoch) {
+      if (epoch >= oldestEpoch) {
+        for (int i = 0; i < size; i++) {
+          into.add(requests[i]);
+        }
+      }
+    }
+
+    private int indexOfFastest() {
+      int fastest = 0;
+      for (int i = 1; i < size; i++) {
+        if (requests[i].getTotalNanos() < requests[fastest].getTotalNanos()) {
+          fastest = i;
+        }
+      }
+      return fastest;
+    }
+
+  }
+
+}
@@ -0,0 +1,110 @@
+package net.opecko.http.slowlog;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.config.slowlog.SlowRequestsPath;
+import net.opecko.http.servlet.FilterDefinition;
+import net.opecko.http.servlet.ServletEndpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for the slow-request log. Its filter counts the time spent in filters ahead of it
+ * as queue wait, see {@link SlowRequestFilter}.
+ */
+@Parameters(separators = "=")
+public class SlowRequestModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SlowRequestModule.class);
+
+  @Parameter(names = "--slow_request_count", description = "Number of slowest requests kept per route")
+  private int slowRequestCount = 10;
+
+  @Parameter(names = "--slow_request_window",
+      description = "Sliding window over which the slowest requests are kept, in milliseconds")
+  private long slowRequestWindow = 60000;
+
+  @Parameter(names = "--slow_requests_path",
+      description = "Slow-request log path under context root (empty = disabled)")
+  private String slowRequestsPath = "/metrics/slow";
+
+  @Override
+  protected void configure() {
+    if (Strings.isNullOrEmpty(slowRequestsPath)) {
+      LOGGER.info("Slow-request log not installed");
+      return;
+    }
+    LOGGER.info(
+      "Slow-request log keeping the {} slowest requests per route over {} ms at: {}",
+      slowRequestCount,
+      slowRequestWindow,
+      slowRequestsPath
+    );
+    bind(String.class).annotatedWith(SlowRequestsPath.class).toInstance(slowRequestsPath);
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(SlowRequestFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class)
+        .addBinding()
+        .toProvider(SlowRequestEndpointProvider.class)
+        .in(Scopes.SINGLETON);
+  }
+
+  @Provides
+  @Singleton
+  public SlowRequestLog provideSlowRequestLog() {
+    return new SlowRequestLog(slowRequestCount, slowRequestWindow);
+  }
+
+  private static final class SlowRequestFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final SlowRequestLog slowRequestLog;
+
+    @Inject
+    private SlowRequestFilterDefinitionProvider(final SlowRequestLog slowRequestLog) {
+      this.slowRequestLog = slowRequestLog;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(new SlowRequestFilter(slowRequestLog), "/*");
+    }
+
+  }
+
+  private static final class SlowRequestEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final SlowRequestServlet slowRequestServlet;
+    private final String slowRequestsPath;
+
+    @Inject
+    private SlowRequestEndpointProvider(
+        final SlowRequestServlet slowRequestServlet,
+        @SlowRequestsPath final String slowRequestsPath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(slowRequestsPath));
+      this.slowRequestServlet = Preconditions.checkNotNull(slowRequestServlet);
+      this.slowRequestsPath = slowRequestsPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(slowRequestServlet, slowRequestsPath);
+    }
+  }
+
+}
@@ -0,0 +1,80 @@
+package net.opecko.http.slowlog;
+
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+/**
+ * Marks the Jersey phase boundaries in the current thread's {@link RequestTimings}.
+ * <p>
+ * As a resource filter factory it brackets the resource method; as a container response filter it
+ * marks the start of serialization.
+ */
+@Singleton
+public class SlowRequestResourceFilterFactory implements ResourceFilterFactory, ContainerResponseFilter {
+
+  private static final ResourceFilter RESOURCE_METHOD_FILTER = new ResourceMethodFilter();
+
+  @Override
+  public List<ResourceFilter> create(final AbstractMethod am) {
+    if (!(am instanceof AbstractResourceMethod)) {
+      // locators are not invoked per request
+      return null;
+    }
+    return Lists.newArrayList(RESOURCE_METHOD_FILTER);
+  }
+
+  @Override
+  public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+    RequestTimings timings = RequestTimings.active();
+    if (null != timings) {
+      timings.markResourceEnd();
+      timings.markSerializationStart();
+    }
+    return response;
+  }
+
+  private static final class ResourceMethodFilter
+      implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+    @Override
+    public ContainerRequest filter(final ContainerRequest request) {
+      RequestTimings timings = RequestTimings.active();
+      if (null != timings) {
+        timings.markResourceStart();
+      }
+      return request;
+    }
+
+    @Override
+    public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+      RequestTimings timings = RequestTimings.active();
+      if (null != timings) {
+        timings.markResourceEnd();
+      }
+      return response;
+    }
+
+    @Override
+    public ContainerRequestFilter getRequestFilter() {
+      return this;
+    }
+
+    @Override
+    public ContainerResponseFilter getResponseFilter() {
+      return this;
+    }
+
+  }
+
+}
@@ -0,0 +1,80 @@
+package net.opecko.http.slowlog;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+/**
+ * Serves the {@link SlowRequestLog} as JSON, optionally restricted to the route given in the
+ * {@code route} query parameter. Durations are in microseconds.
+ */
+@Singleton
+public class SlowRequestServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+
+  private final transient SlowRequestLog slowRequestLog;
+  private final transient JsonFactory jsonFactory;
+
+  @Inject
+  SlowRequestServlet(final SlowRequestLog slowRequestLog) {
+    this.slowRequestLog = Preconditions.checkNotNull(slowRequestLog);
+    this.jsonFactory = new JsonFactory();
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    String route = Strings.emptyToNull(request.getParameter("route"));
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    JsonGenerator json = jsonFactory.createGenerator(response.getOutputStream());
+    try {
+      json.writeStartObject();
+      json.writeNumberField("windowMillis", slowRequestLog.getWindowMillis());
+      json.writeNumberField("count", slowRequestLog.getCount());
+      json.writeObjectFieldStart("routes");
+      for (Map.Entry<String, List<SlowRequest>> entry : slowRequestLog.getSlowest(route).entrySet()) {
+        json.writeArrayFieldStart(entry.getKey());
+        for (SlowRequest slowRequest : entry.getValue()) {
+          json.writeStartObject();
+          json.writeStringField("method", slowRequest.getMethod());
+          json.writeStringField("path", slowRequest.getPath());
+          json.writeNumberField("status", slowRequest.getStatus());
+          json.writeNumberField("startMillis", slowRequest.getStartMillis());
+          json.writeNumberField("totalMicros", slowRequest.getTotalNanos() / 1000);
+          json.writeObjectFieldStart("phasesMicros");
+          json.writeNumberField("queue", slowRequest.getQueueNanos() / 1000);
+          json.writeNumberField("filters", slowRequest.getFiltersNanos() / 1000);
+          json.writeNumberField("resource", slowRequest.getResourceNanos() / 1000);
+          json.writeNumberField("serialization", slowRequest.getSerializationNanos() / 1000);
+          json.writeNumberField("write", slowRequest.getWriteNanos() / 1000);
+          json.writeEndObject();
+          json.writeEndObject();
+        }
+        json.writeEndArray();
+      }
+      json.writeEndObject();
+      json.writeEndObject();
+    } finally {
+      json.close();
+    }
+  }
+
+}
@@ -0,0 +1,301 @@
+package net.opecko.http.sse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.ws.rs.core.MediaType;
+
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.jersey.core.header.OutBoundHeaders;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.Gauge;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+import com.yammer.metrics.core.TimerContext;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Fans events out to every open server-sent events stream.
+ * <p>
+ * {@link #publish} serializes the event once, through the {@link JacksonJsonProvider}, into a
+ * frame shared by all subscribers, and queues it on each of them; writer threads drain the
+ * queues. Queues are bounded, and a subscriber that falls behind by a full queue is handled by
+ * the {@link SlowSubscriberPolicy}. A comment frame goes out every heartbeat interval to keep
+ * idle streams from timing out, and to find clients that went away.
+ * <p>
+ * Writes block, Servlet 3.0 having no other kind, so a subscriber whose write has been blocked for
+ * the write timeout is disconnected, lest clients that stop reading hold every writer thread.
+ */
+public class EventStream extends AbstractScheduledService {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventStream.class);
+  private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+  private static final byte[] HEARTBEAT = ":\n\n".getBytes(StandardCharsets.US_ASCII);
+  private static final byte[] DATA = "data: ".getBytes(StandardCharsets.US_ASCII);
+
+  private final JacksonJsonProvider jsonProvider;
+  private final int queueSize;
+  private final SlowSubscriberPolicy policy;
+  private final int writerThreads;
+  private final long heartbeatMillis;
+  private final long writeTimeoutMillis;
+  private final Set<EventSubscriber> subscribers;
+  private final AtomicLong lastId;
+  private final Timer publishTimer;
+  private final Counter published;
+  private final Counter dropped;
+  private final Counter disconnected;
+  private final Counter stalled;
+  private volatile ExecutorService writers;
+  private long lastHeartbeatNanos;
+
+  public EventStream(
+      final JacksonJsonProvider jsonProvider,
+      final int queueSize,
+      final SlowSubscriberPolicy policy,
+      final int writerThreads,
+      final long heartbeatMillis,
+      final long writeTimeoutMillis,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(queueSize > 0, "queue size must be positive");
+    Preconditions.checkArgument(writerThreads > 0, "writer threads must be positive");
+    Preconditions.checkArgument(heartbeatMillis > 0, "heartbeat interval must be positive");
+    Preconditions.checkArgument(writeTimeoutMillis > 0, "write timeout must be positive");
+    this.jsonProvider = Preconditions.checkNotNull(jsonProvider);
+    this.queueSize = queueSize;
+    this.policy = Preconditions.checkNotNull(policy);
+    this.writerThreads = writerThreads;
+    this.heartbeatMillis = heartbeatMillis;
+    this.writeTimeoutMillis = writeTimeoutMillis;
+    this.subscribers = Collections.newSetFromMap(new ConcurrentHashMap<EventSubscriber, Boolean>());
+    this.lastId = new AtomicLong();
+    this.publishTimer = metricsRegistry.newTimer(EventStream.class, "publish");
+    this.published = metricsRegistry.newCounter(EventStream.class, "published events");
+    this.dropped = metricsRegistry.newCounter(EventStream.class, "dropped events");
+    this.disconnected = metricsRegistry.newCounter(EventStream.class, "disconnected slow subscribers");
+    this.stalled = metricsRegistry.newCounter(EventStream.class, "disconnected stalled subscribers");
+    metricsRegistry.newGauge(EventStream.class, "subscribers", new Gauge<Integer>() {
+      @Override
+      public Integer value() {
+        return subscribers.size();
+      }
+    });
+    metricsRegistry.newGauge(EventStream.class, "queued events", new Gauge<Long>() {
+      @Override
+      public Long value() {
+        long queued = 0;
+        for (EventSubscriber subscriber : subscribers) {
+          queued += subscriber.getQueued();
+        }
+        return queued;
+      }
+    });
+  }
+
+  /**
+   * Sends {@code data}, serialized as JSON, to every subscriber as an event of the given type, or
+   * of the default {@code message} type when it is null. Returns the event's ID.
+   */
+  public long publish(@Nullable final String event, final Object data) throws IOException {
+    Preconditions.checkNotNull(data);
+    Preconditions.checkArgument(
+      null == event || (event.indexOf('\n') < 0 && event.indexOf('\r') < 0),
+      "event type must be a single line"
+    );
+    TimerContext timerContext = publishTimer.time();
+    try {
+      ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+      jsonProvider.writeTo(
+        data,
+        data.getClass(),
+        data.getClass(),
+        NO_ANNOTATIONS,
+        MediaType.APPLICATION_JSON_TYPE,
+        new OutBoundHeaders(),
+        json
+      );
+      // one ID order and one queue order for all subscribers
+      synchronized (this) {
+        long id = lastId.incrementAndGet();
+        fanOut(encode(id, event, json.toByteArray()));
+        published.inc();
+        return id;
+      }
+    } finally {
+      timerContext.stop();
+    }
+  }
+
+  /**
+   * Starts streaming events to an asynchronous request whose response headers are committed.
+   */
+  void subscribe(final AsyncContext asyncContext, final OutputStream out, @Nullable final EndPoint endPoint) {
+    ExecutorService executor = writers;
+    Preconditions.checkState(null != executor && isRunning(), "event stream is not running");
+    final EventSubscriber subscriber = new EventSubscriber(asyncContext, out, endPoint, queueSize, executor);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onComplete(final AsyncEvent event) {
+        subscribers.remove(subscriber);
+      }
+
+      @Override
+      public void onTimeout(final AsyncEvent event) {
+        subscribers.remove(subscriber);
+        subscriber.close();
+      }
+
+      @Override
+      public void onError(final AsyncEvent event) {
+        subscribers.remove(subscriber);
+        subscriber.close();
+      }
+
+      @Override
+      public void onStartAsync(final AsyncEvent event) {
+      }
+    });
+    subscribers.add(subscriber);
+  }
+
+  @Override
+  protected void startUp() {
+    LOGGER.info(
+      "Streaming events through {} writer threads, queueing up to {} per subscriber ({})",
+      writerThreads,
+      queueSize,
+      policy
+    );
+    writers = Executors.newFixedThreadPool(
+      writerThreads,
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("event-writer-%d").build()
+    );
+  }
+
+  @Override
+  protected void runOneIteration() {
+    long now = System.nanoTime();
+    long stalledSince = now - TimeUnit.MILLISECONDS.toNanos(writeTimeoutMillis);
+    for (EventSubscriber subscriber : subscribers) {
+      if (subscriber.isWritingSince(stalledSince)) {
+        stalled.inc();
+        subscribers.remove(subscriber);
+        subscriber.abort();
+      }
+    }
+    if (now - lastHeartbeatNanos < TimeUnit.MILLISECONDS.toNanos(heartbeatMillis)) {
+      return;
+    }
+    lastHeartbeatNanos = now;
+    for (EventSubscriber subscriber : subscribers) {
+      // a subscriber with events queued needs no heartbeat
+      if (0 == subscriber.getQueued() && subscriber.offer(HEARTBEAT)) {
+        subscriber.schedule();
+      }
+    }
+  }
+
+  @Override
+  protected void shutDown() throws InterruptedException {
+    for (EventSubscriber subscriber : subscribers) {
+      subscriber.close();
+    }
+    ExecutorService executor = writers;
+    executor.shutdown();
+    if (!executor.awaitTermination(heartbeatMillis, TimeUnit.MILLISECONDS)) {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  protected Scheduler scheduler() {
+    // often enough to find stalled writes within a quarter of the timeout past it
+    long tickMillis = Math.max(1L, Math.min(heartbeatMillis, writeTimeoutMillis / 4));
+    return Scheduler.newFixedDelaySchedule(tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void fanOut(final byte[] frame) {
+    for (EventSubscriber subscriber : subscribers) {
+      if (!subscriber.offer(frame)) {
+        switch (policy) {
+          case DROP_OLDEST:
+            do {
+              if (subscriber.dropOldest()) {
+                dropped.inc();
+              }
+            } while (!subscriber.offer(frame));
+            break;
+          case DROP_NEWEST:
+            dropped.inc();
+            break;
+          case DISCONNECT:
+            disconnected.inc();
+            subscribers.remove(subscriber);
+            subscriber.close();
+            continue;
+          default:
+            throw new AssertionError(policy);
+        }
+      }
+      subscriber.schedule();
+    }
+  }
+
+  /**
+   * The event as an SSE frame, with a {@code data} line per line of JSON.
+   */
+  private static byte[] encode(final long id, @Nullable final String event, final byte[] json) {
+    ByteArrayOutputStream frame = new ByteArrayOutputStream(json.length + 64);
+    StringBuilder header = new StringBuilder(32).append("id: ").append(id).append('\n');
+    if (null != event) {
+      header.append("event: ").append(event).append('\n');
+    }
+    byte[] headerBytes = header.toString().getBytes(StandardCharsets.UTF_8);
+    frame.write(headerBytes, 0, headerBytes.length);
+    int start = 0;
+    for (int i = 0; i <= json.length; i++) {
+      if (i == json.length || json[i] == '\n') {
+        frame.write(DATA, 0, DATA.length);
+        frame.write(json, start, i - start);
+        frame.write('\n');
+        start = i + 1;
+      }
+    }
+    frame.write('\n');
+    return frame.toByteArray();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("queueSize", queueSize)
+      .add("policy", policy)
+      .add("writerThreads", writerThreads)
+      .add("heartbeatMillis", heartbeatMillis)
+      .add("writeTimeoutMillis", writeTimeoutMillis)
+      .toString();
+  }
+
+}
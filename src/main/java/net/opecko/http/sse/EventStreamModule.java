@@ -0,0 +1,112 @@
+package net.opecko.http.sse;
+
+import java.util.Locale;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Service;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.config.sse.EventsPath;
+import net.opecko.http.servlet.ServletEndpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for a server-sent events stream, fed by the bound {@link EventStream}.
+ */
+@Parameters(separators = "=")
+public class EventStreamModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventStreamModule.class);
+
+  @Parameter(names = "--events_path",
+      description = "Server-sent events stream path under context root (empty = disabled)")
+  private String eventsPath = "";
+
+  @Parameter(names = "--events_queue_size",
+      description = "Events queued per subscriber before the slow subscriber policy applies")
+  private int eventsQueueSize = 256;
+
+  @Parameter(names = "--events_slow_subscriber_policy",
+      description = "What to do when a subscriber's queue is full: drop_oldest, drop_newest or disconnect")
+  private String eventsSlowSubscriberPolicy = "drop_oldest";
+
+  @Parameter(names = "--events_writer_threads", description = "Threads writing queued events to subscribers")
+  private int eventsWriterThreads = 8;
+
+  @Parameter(names = "--events_heartbeat_interval",
+      description = "Interval between heartbeats on idle streams in milliseconds, below the connection idle timeout")
+  private long eventsHeartbeatInterval = 15000;
+
+  @Parameter(names = "--events_write_timeout",
+      description = "Milliseconds a write to a subscriber may block before the subscriber is disconnected")
+  private long eventsWriteTimeout = 5000;
+
+  @Override
+  protected void configure() {
+    if (Strings.isNullOrEmpty(eventsPath)) {
+      LOGGER.info("Event stream not installed");
+      return;
+    }
+    LOGGER.info("Event stream at: {}", eventsPath);
+    bind(String.class).annotatedWith(EventsPath.class).toInstance(eventsPath);
+    Multibinder.newSetBinder(binder(), ServletEndpoint.class)
+        .addBinding()
+        .toProvider(EventStreamEndpointProvider.class)
+        .in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), Service.class).addBinding().to(EventStream.class);
+  }
+
+  @Provides
+  @Singleton
+  public EventStream provideEventStream(
+      final JacksonJsonProvider jsonProvider,
+      final MetricsRegistry metricsRegistry
+  ) {
+    return new EventStream(
+      jsonProvider,
+      eventsQueueSize,
+      SlowSubscriberPolicy.valueOf(eventsSlowSubscriberPolicy.trim().toUpperCase(Locale.ROOT)),
+      eventsWriterThreads,
+      eventsHeartbeatInterval,
+      eventsWriteTimeout,
+      metricsRegistry
+    );
+  }
+
+  private static final class EventStreamEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final EventStreamServlet eventStreamServlet;
+    private final String eventsPath;
+
+    @Inject
+    private EventStreamEndpointProvider(
+        final EventStreamServlet eventStreamServlet,
+        @EventsPath final String eventsPath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(eventsPath));
+      this.eventStreamServlet = Preconditions.checkNotNull(eventStreamServlet);
+      this.eventsPath = eventsPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(eventStreamServlet, eventsPath);
+    }
+
+  }
+
+}
@@ -0,0 +1,60 @@
+package net.opecko.http.sse;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+import org.eclipse.jetty.server.HttpChannel;
+
+/**
+ * Opens a {@code text/event-stream} response and hands it to the {@link EventStream}. The request
+ * goes asynchronous, so no server thread waits on an open stream.
+ */
+@Singleton
+public class EventStreamServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+
+  private final transient EventStream eventStream;
+
+  @Inject
+  EventStreamServlet(final EventStream eventStream) {
+    this.eventStream = Preconditions.checkNotNull(eventStream);
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    if (!eventStream.isRunning()) {
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    // commits the headers, so the client sees the stream open before the first event
+    response.flushBuffer();
+    AsyncContext asyncContext = request.startAsync();
+    // heartbeats keep the stream alive; it ends when the client goes away or the stream stops
+    asyncContext.setTimeout(0);
+    // the container's own response: filters may wrap the one passed in with per-request state
+    HttpChannel<?> channel = HttpChannel.getCurrentHttpChannel();
+    eventStream.subscribe(
+      asyncContext,
+      asyncContext.getResponse().getOutputStream(),
+      null == channel ? null : channel.getEndPoint()
+    );
+  }
+
+}
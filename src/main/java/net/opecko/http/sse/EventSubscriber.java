@@ -0,0 +1,159 @@
+package net.opecko.http.sse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+import javax.servlet.AsyncContext;
+
+import com.google.common.base.Preconditions;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One open event stream: a bounded queue of encoded frames, drained into the response by a
+ * writer thread. At most one writer drains a subscriber at a time, writing everything queued
+ * before flushing once, so a burst of events costs one flush. Frames are the publisher's shared
+ * arrays, written as they are.
+ * <p>
+ * The response is only ever touched by the draining writer: closing marks the subscriber and
+ * leaves completing the request to the next drain. Writes block, so a writer stuck on a client
+ * that stopped reading is freed by {@link #abort aborting} the subscriber, which closes the
+ * connection under it.
+ */
+final class EventSubscriber implements Runnable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(EventSubscriber.class);
+
+  private final AsyncContext asyncContext;
+  private final OutputStream out;
+  @Nullable private final EndPoint endPoint;
+  private final ArrayBlockingQueue<byte[]> queue;
+  private final Executor writers;
+  private final AtomicBoolean scheduled;
+  private final AtomicBoolean completed;
+  private volatile boolean closed;
+  private volatile long writeStartNanos;
+
+  EventSubscriber(
+      final AsyncContext asyncContext,
+      final OutputStream out,
+      @Nullable final EndPoint endPoint,
+      final int queueSize,
+      final Executor writers
+  ) {
+    this.asyncContext = Preconditions.checkNotNull(asyncContext);
+    this.out = Preconditions.checkNotNull(out);
+    this.endPoint = endPoint;
+    this.queue = new ArrayBlockingQueue<>(queueSize);
+    this.writers = Preconditions.checkNotNull(writers);
+    this.scheduled = new AtomicBoolean();
+    this.completed = new AtomicBoolean();
+  }
+
+  /**
+   * Queues a frame, returning false when the queue is full. A closed subscriber takes and
+   * discards every frame.
+   */
+  boolean offer(final byte[] frame) {
+    return closed || queue.offer(frame);
+  }
+
+  /**
+   * Drops the oldest queued frame, returning false when there was none.
+   */
+  boolean dropOldest() {
+    return null != queue.poll();
+  }
+
+  int getQueued() {
+    return queue.size();
+  }
+
+  /**
+   * Has a writer drain the queue, unless one is already on it.
+   */
+  void schedule() {
+    if (scheduled.compareAndSet(false, true)) {
+      try {
+        writers.execute(this);
+      } catch (final RejectedExecutionException e) {
+        // the stream is shutting down, and no writer holds this subscriber
+        scheduled.set(false);
+        closed = true;
+        complete();
+      }
+    }
+  }
+
+  void close() {
+    closed = true;
+    queue.clear();
+    schedule();
+  }
+
+  /**
+   * Returns whether the write in progress to this subscriber, if any, started before
+   * {@code since}, in {@link System#nanoTime()}.
+   */
+  boolean isWritingSince(final long since) {
+    long start = writeStartNanos;
+    return start != 0 && start - since < 0;
+  }
+
+  /**
+   * Closes the subscriber and its connection, failing any write blocked on it.
+   */
+  void abort() {
+    close();
+    if (null != endPoint) {
+      endPoint.close();
+    }
+  }
+
+  @Override
+  public void run() {
+    try {
+      if (!closed) {
+        byte[] frame;
+        while (!closed && null != (frame = queue.poll())) {
+          writeStartNanos = System.nanoTime();
+          out.write(frame);
+        }
+        writeStartNanos = System.nanoTime();
+        out.flush();
+      }
+    } catch (final IOException | RuntimeException e) {
+      LOGGER.debug("Closing event stream after a write failure", e);
+      closed = true;
+    } finally {
+      writeStartNanos = 0;
+      if (closed) {
+        complete();
+      }
+      scheduled.set(false);
+    }
+    // frames queued, or a close, after the last check but before the flag was cleared
+    if (closed ? !completed.get() : !queue.isEmpty()) {
+      schedule();
+    }
+  }
+
+  private void complete() {
+    if (completed.compareAndSet(false, true)) {
+      try {
+        asyncContext.complete();
+      } catch (final IllegalStateException e) {
+        // already completed by the container, after an error
+        LOGGER.debug("Event stream already completed", e);
+      }
+    }
+  }
+
+}
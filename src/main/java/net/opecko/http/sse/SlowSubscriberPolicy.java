@@ -0,0 +1,23 @@
+package net.opecko.http.sse;
+
+/**
+ * What {@link EventStream} does with an event for a subscriber whose queue is full.
+ */
+public enum SlowSubscriberPolicy {
+
+  /**
+   * Drop the subscriber's oldest queued event to make room, so it catches up on the latest ones.
+   */
+  DROP_OLDEST,
+
+  /**
+   * Drop the new event, so the subscriber sees a prefix of the stream with a gap.
+   */
+  DROP_NEWEST,
+
+  /**
+   * Close the subscriber's stream; the client reconnects and starts over.
+   */
+  DISCONNECT
+
+}
@@ -0,0 +1,84 @@
+package net.opecko.http.tls;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLSession;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+
+/**
+ * A {@link SslConnection} reporting its handshake to {@link TlsHandshakeMetrics} once the engine
+ * has finished it and holds a negotiated session. The handshake is driven by reads, so that is
+ * checked after each of them.
+ * <p>
+ * A session created before this connection was opened is a resumed one: the JDK hands out the
+ * cached session, with its original creation time, for both session IDs and tickets.
+ */
+class MeteredSslConnection extends SslConnection {
+
+  private static final String NO_CIPHER_SUITE = "SSL_NULL_WITH_NULL_NULL";
+
+  private final TlsHandshakeMetrics metrics;
+  private long openedNanos;
+  private long openedMillis;
+  private volatile boolean handshaken;
+
+  MeteredSslConnection(
+      final ByteBufferPool byteBufferPool,
+      final Executor executor,
+      final EndPoint endPoint,
+      final SSLEngine sslEngine,
+      final TlsHandshakeMetrics metrics
+  ) {
+    super(byteBufferPool, executor, endPoint, sslEngine);
+    this.metrics = metrics;
+  }
+
+  @Override
+  protected DecryptedEndPoint newDecryptedEndPoint() {
+    return new MeteredDecryptedEndPoint();
+  }
+
+  @Override
+  public void onOpen() {
+    openedNanos = System.nanoTime();
+    openedMillis = System.currentTimeMillis();
+    super.onOpen();
+  }
+
+  @Override
+  public void onClose() {
+    if (!handshaken) {
+      metrics.closedBeforeHandshake();
+    }
+    super.onClose();
+  }
+
+  private final class MeteredDecryptedEndPoint extends DecryptedEndPoint {
+
+    @Override
+    public synchronized int fill(final ByteBuffer buffer) throws IOException {
+      try {
+        return super.fill(buffer);
+      } finally {
+        // checked even when the read fails, as a client may close right after its Finished
+        if (!handshaken && getSSLEngine().getHandshakeStatus() == HandshakeStatus.NOT_HANDSHAKING) {
+          SSLSession session = getSSLEngine().getSession();
+          // the engine reports the null session until a handshake has completed
+          if (!NO_CIPHER_SUITE.equals(session.getCipherSuite())) {
+            handshaken = true;
+            metrics.handshaken(session.getCreationTime() < openedMillis, System.nanoTime() - openedNanos);
+          }
+        }
+      }
+    }
+
+  }
+
+}
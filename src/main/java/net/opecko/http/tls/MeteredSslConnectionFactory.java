@@ -0,0 +1,34 @@
+package net.opecko.http.tls;
+
+import javax.net.ssl.SSLEngine;
+
+import com.google.common.base.Preconditions;
+
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * A {@link SslConnectionFactory} whose connections report their handshakes.
+ */
+class MeteredSslConnectionFactory extends SslConnectionFactory {
+
+  private final TlsHandshakeMetrics metrics;
+
+  MeteredSslConnectionFactory(
+      final SslContextFactory sslContextFactory,
+      final String nextProtocol,
+      final TlsHandshakeMetrics metrics
+  ) {
+    super(sslContextFactory, nextProtocol);
+    this.metrics = Preconditions.checkNotNull(metrics);
+  }
+
+  @Override
+  protected SslConnection newSslConnection(final Connector connector, final EndPoint endPoint, final SSLEngine engine) {
+    return new MeteredSslConnection(connector.getByteBufferPool(), connector.getExecutor(), endPoint, engine, metrics);
+  }
+
+}
@@ -0,0 +1,41 @@
+package net.opecko.http.tls;
+
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.Timer;
+
+/**
+ * Counts TLS handshakes by outcome and times them, from the connection's accept to the server
+ * processing the client's last handshake message.
+ */
+public class TlsHandshakeMetrics {
+
+  private final Counter full;
+  private final Counter resumed;
+  private final Counter incomplete;
+  private final Timer latency;
+
+  public TlsHandshakeMetrics(final MetricsRegistry metricsRegistry) {
+    Preconditions.checkNotNull(metricsRegistry);
+    this.full = metricsRegistry.newCounter(TlsHandshakeMetrics.class, "full handshakes");
+    this.resumed = metricsRegistry.newCounter(TlsHandshakeMetrics.class, "resumed handshakes");
+    this.incomplete = metricsRegistry.newCounter(TlsHandshakeMetrics.class, "incomplete handshakes");
+    this.latency = metricsRegistry.newTimer(TlsHandshakeMetrics.class, "handshake latency");
+  }
+
+  void handshaken(final boolean resumedSession, final long nanos) {
+    (resumedSession ? resumed : full).inc();
+    latency.update(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * A connection closed before the handshake completed: failed, or never started.
+   */
+  void closedBeforeHandshake() {
+    incomplete.inc();
+  }
+
+}
@@ -0,0 +1,191 @@
+package net.opecko.http.tls;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.inject.AbstractModule;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.config.server.Acceptors;
+import net.opecko.http.config.server.BindAddress;
+import net.opecko.http.config.server.IdleTimeout;
+import net.opecko.http.config.server.Selectors;
+import net.opecko.http.config.tls.TlsPort;
+import net.opecko.http.jetty.ConnectionGate;
+import net.opecko.http.jetty.GatedServerConnector;
+
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for an HTTPS connector next to the plaintext one, with its key from a keystore.
+ * <p>
+ * Sessions are cached server side for resumption by session ID, and with
+ * {@code --tls_session_tickets} resumed from tickets the client keeps, on JDKs that issue them
+ * (13 and later). Jetty 9.0 has neither ALPN nor HTTP/2, so the connector speaks HTTP/1.1 only.
+ */
+@Parameters(separators = "=")
+public class TlsModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TlsModule.class);
+  private static final String SESSION_TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+
+  @Parameter(names = "--tls_port", description = "HTTPS port (0 = disabled)")
+  private int tlsPort;
+
+  @Parameter(names = "--tls_keystore", description = "Keystore holding the server's key and certificate chain")
+  private String tlsKeystore = "";
+
+  @Parameter(names = "--tls_keystore_type", description = "Keystore type")
+  private String tlsKeystoreType = "JKS";
+
+  @Parameter(names = "--tls_keystore_password", description = "Keystore password")
+  private String tlsKeystorePassword = "";
+
+  @Parameter(names = "--tls_key_password", description = "Key password (empty = the keystore password)")
+  private String tlsKeyPassword = "";
+
+  @Parameter(names = "--tls_protocols", description = "Comma-separated TLS protocol versions accepted")
+  private String tlsProtocols = "TLSv1.2,TLSv1.3";
+
+  @Parameter(names = "--tls_session_cache_size", description = "TLS sessions cached for resumption")
+  private int tlsSessionCacheSize = 20000;
+
+  @Parameter(names = "--tls_session_timeout", description = "Seconds a TLS session may be resumed for")
+  private int tlsSessionTimeout = 3600;
+
+  @Parameter(names = "--tls_session_tickets",
+      description = "Issue session tickets, so clients resume without a server cache entry (JDK 13+)",
+      arity = 1)
+  private boolean tlsSessionTickets = true;
+
+  @Override
+  protected void configure() {
+    if (tlsPort <= 0) {
+      LOGGER.info("TLS connector not installed");
+      return;
+    }
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(tlsKeystore), "TLS needs --tls_keystore");
+    LOGGER.info("TLS port: {}", tlsPort);
+    // read when the JDK's TLS implementation initializes, so before any SSLContext exists
+    System.setProperty(SESSION_TICKETS_PROPERTY, Boolean.toString(tlsSessionTickets));
+    bind(Integer.class).annotatedWith(TlsPort.class).toInstance(tlsPort);
+    bind(SslContextFactory.class).toInstance(newSslContextFactory());
+    bind(TlsHandshakeMetrics.class).toProvider(TlsHandshakeMetricsProvider.class).in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), Connector.class)
+        .addBinding().toProvider(TlsConnectorProvider.class).in(Scopes.SINGLETON);
+  }
+
+  private SslContextFactory newSslContextFactory() {
+    SslContextFactory sslContextFactory = new SslContextFactory(tlsKeystore);
+    sslContextFactory.setKeyStoreType(tlsKeystoreType);
+    sslContextFactory.setKeyStorePassword(tlsKeystorePassword);
+    sslContextFactory.setKeyManagerPassword(
+      Strings.isNullOrEmpty(tlsKeyPassword) ? tlsKeystorePassword : tlsKeyPassword
+    );
+    List<String> protocols = Splitter.on(',').omitEmptyStrings().trimResults().splitToList(tlsProtocols);
+    sslContextFactory.setIncludeProtocols(protocols.toArray(new String[protocols.size()]));
+    sslContextFactory.setSessionCachingEnabled(true);
+    sslContextFactory.setSslSessionCacheSize(tlsSessionCacheSize);
+    sslContextFactory.setSslSessionTimeout(tlsSessionTimeout);
+    return sslContextFactory;
+  }
+
+  private static final class TlsHandshakeMetricsProvider implements Provider<TlsHandshakeMetrics> {
+
+    private final MetricsRegistry metricsRegistry;
+
+    @Inject
+    private TlsHandshakeMetricsProvider(final MetricsRegistry metricsRegistry) {
+      this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public TlsHandshakeMetrics get() {
+      return new TlsHandshakeMetrics(metricsRegistry);
+    }
+
+  }
+
+  private static final class TlsConnectorProvider implements Provider<Connector> {
+
+    private final Server server;
+    private final String host;
+    private final int port;
+    private final int acceptors;
+    private final int selectors;
+    private final int idleTimeout;
+    private final ConnectionGate gate;
+    private final SslContextFactory sslContextFactory;
+    private final TlsHandshakeMetrics metrics;
+
+    @Inject
+    private TlsConnectorProvider(
+        final Server server,
+        @BindAddress final String host,
+        @TlsPort final Integer port,
+        @Acceptors final int acceptors,
+        @Selectors final int selectors,
+        @IdleTimeout final int idleTimeout,
+        final ConnectionGate gate,
+        final SslContextFactory sslContextFactory,
+        final TlsHandshakeMetrics metrics
+    ) {
+      this.server = Preconditions.checkNotNull(server);
+      this.host = Preconditions.checkNotNull(host);
+      this.port = port;
+      this.acceptors = acceptors;
+      this.selectors = selectors;
+      this.idleTimeout = idleTimeout;
+      this.gate = Preconditions.checkNotNull(gate);
+      this.sslContextFactory = Preconditions.checkNotNull(sslContextFactory);
+      this.metrics = Preconditions.checkNotNull(metrics);
+    }
+
+    @Override
+    public Connector get() {
+      LOGGER.info("Binding TLS connector to host = {}, port = {}", host, port);
+      HttpConfiguration httpConfiguration = new HttpConfiguration();
+      httpConfiguration.setSecurePort(port);
+      // marks requests secure, with the cipher suite and client certificates as attributes
+      httpConfiguration.addCustomizer(new SecureRequestCustomizer());
+      ServerConnector connector = new GatedServerConnector(
+        server,
+        /* executor */ null,
+        /* scheduler */ null,
+        /* byte buffer pool */ null,
+        acceptors,
+        selectors,
+        gate,
+        new MeteredSslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString(), metrics),
+        new HttpConnectionFactory(httpConfiguration)
+      );
+      connector.setName("https");
+      connector.setIdleTimeout(idleTimeout);
+      if (!Strings.isNullOrEmpty(host)) {
+        connector.setHost(host);
+      }
+      connector.setPort(port);
+      return connector;
+    }
+
+  }
+
+}
@@ -0,0 +1,64 @@
+package net.opecko.http.tracing;
+
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * A span of the current trace that has been started and not yet finished.
+ * <p>
+ * Only the thread serving the request may touch it.
+ */
+public final class ActiveSpan {
+
+  private final long spanId;
+  private final long parentSpanId;
+  private final long startNanos;
+  private String name;
+  private Map<String, String> tags;
+  private boolean finished;
+
+  ActiveSpan(final String name, final long spanId, final long parentSpanId) {
+    this.name = Preconditions.checkNotNull(name);
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.startNanos = System.nanoTime();
+  }
+
+  public ActiveSpan setName(final String newName) {
+    this.name = Preconditions.checkNotNull(newName);
+    return this;
+  }
+
+  public ActiveSpan tag(final String key, final String value) {
+    if (null == tags) {
+      tags = Maps.newLinkedHashMap();
+    }
+    tags.put(Preconditions.checkNotNull(key), Preconditions.checkNotNull(value));
+    return this;
+  }
+
+  long getSpanId() {
+    return spanId;
+  }
+
+  boolean isFinished() {
+    return finished;
+  }
+
+  Span finish(final String traceId, final long traceStartMicros, final long traceStartNanos) {
+    finished = true;
+    return new Span(
+      traceId,
+      spanId,
+      parentSpanId,
+      name,
+      traceStartMicros + (startNanos - traceStartNanos) / 1000,
+      System.nanoTime() - startNanos,
+      null == tags ? ImmutableMap.<String, String>of() : ImmutableMap.copyOf(tags)
+    );
+  }
+
+}
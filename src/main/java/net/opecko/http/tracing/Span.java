@@ -0,0 +1,86 @@
+package net.opecko.http.tracing;
+
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * A finished span of a sampled trace.
+ */
+public final class Span {
+
+  private final String traceId;
+  private final long spanId;
+  private final long parentSpanId;
+  private final String name;
+  private final long startMicros;
+  private final long durationNanos;
+  private final ImmutableMap<String, String> tags;
+
+  Span(
+      final String traceId,
+      final long spanId,
+      final long parentSpanId,
+      final String name,
+      final long startMicros,
+      final long durationNanos,
+      final ImmutableMap<String, String> tags
+  ) {
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.name = name;
+    this.startMicros = startMicros;
+    this.durationNanos = durationNanos;
+    this.tags = tags;
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return TraceContext.toHex(spanId);
+  }
+
+  /**
+   * Returns the parent span id, or {@code null} for the root span of a trace started here.
+   */
+  public String getParentSpanId() {
+    return parentSpanId == 0 ? null : TraceContext.toHex(parentSpanId);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the start time in microseconds since the epoch.
+   */
+  public long getStartMicros() {
+    return startMicros;
+  }
+
+  public long getDurationNanos() {
+    return durationNanos;
+  }
+
+  public Map<String, String> getTags() {
+    return tags;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("traceId", traceId)
+      .add("spanId", getSpanId())
+      .add("parentSpanId", getParentSpanId())
+      .add("name", name)
+      .add("startMicros", startMicros)
+      .add("durationNanos", durationNanos)
+      .add("tags", tags)
+      .toString();
+  }
+
+}
@@ -0,0 +1,14 @@
+package net.opecko.http.tracing;
+
+/**
+ * Receives every finished span of a sampled trace.
+ * <p>
+ * Called on the request thread as spans finish, so implementations must not block; exporters
+ * shipping spans elsewhere should hand them to a queue of their own. Contribute exporters through
+ * a {@code Multibinder<SpanExporter>}.
+ */
+public interface SpanExporter {
+
+  void export(Span span);
+
+}
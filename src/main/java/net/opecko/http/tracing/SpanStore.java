@@ -0,0 +1,72 @@
+package net.opecko.http.tracing;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps the most recent finished spans in a fixed-size ring buffer.
+ * <p>
+ * Writers claim a slot with a single atomic increment and never wait for each other or for
+ * readers; once the buffer wraps, each span overwrites the oldest one.
+ */
+public class SpanStore implements SpanExporter {
+
+  private final AtomicReferenceArray<Span> slots;
+  private final int mask;
+  private final AtomicLong sequence;
+
+  /**
+   * @param capacity number of spans kept, rounded up to a power of two
+   */
+  public SpanStore(final int capacity) {
+    Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "capacity out of range: %s", capacity);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new AtomicReferenceArray<>(size);
+    this.mask = size - 1;
+    this.sequence = new AtomicLong();
+  }
+
+  @Override
+  public void export(final Span span) {
+    slots.lazySet((int) (sequence.getAndIncrement() & mask), span);
+  }
+
+  /**
+   * Returns up to {@code limit} of the most recent spans, newest first, optionally restricted to
+   * one trace.
+   */
+  public List<Span> getRecentSpans(final int limit, @Nullable final String traceId) {
+    List<Span> spans = Lists.newArrayList();
+    long last = sequence.get();
+    for (long i = last - 1; i >= 0 && i >= last - slots.length() && spans.size() < limit; i--) {
+      Span span = slots.get((int) (i & mask));
+      if (null != span && (null == traceId || traceId.equals(span.getTraceId()))) {
+        spans.add(span);
+      }
+    }
+    return spans;
+  }
+
+  public int getCapacity() {
+    return slots.length();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("capacity", slots.length())
+      .add("recorded", sequence.get())
+      .toString();
+  }
+
+}
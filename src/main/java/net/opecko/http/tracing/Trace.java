@@ -0,0 +1,140 @@
+package net.opecko.http.tracing;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The sampled trace of the request served by the current thread.
+ * <p>
+ * Spans nest: a new span is a child of the innermost unfinished one. Code that wants to add spans
+ * or propagate the trace downstream should check {@link #current()}, which is {@code null} for
+ * requests that are not sampled, and do nothing else in that case.
+ */
+public final class Trace {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(Trace.class);
+  private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+  private static final int MAX_DEPTH = 16;
+
+  private final long traceIdHigh;
+  private final long traceIdLow;
+  private final String traceId;
+  private final long remoteParentSpanId;
+  private final Collection<SpanExporter> exporters;
+  private final long startMicros;
+  private final long startNanos;
+  private final ActiveSpan[] stack;
+  private int depth;
+
+  Trace(
+      final long traceIdHigh,
+      final long traceIdLow,
+      final long remoteParentSpanId,
+      final Collection<SpanExporter> exporters
+  ) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
+    this.traceId = TraceContext.toTraceId(traceIdHigh, traceIdLow);
+    this.remoteParentSpanId = remoteParentSpanId;
+    this.exporters = exporters;
+    this.startMicros = System.currentTimeMillis() * 1000;
+    this.startNanos = System.nanoTime();
+    this.stack = new ActiveSpan[MAX_DEPTH];
+  }
+
+  /**
+   * Returns the trace of the request served by the current thread, or {@code null} if it is not
+   * sampled.
+   */
+  @Nullable
+  public static Trace current() {
+    return CURRENT.get();
+  }
+
+  static void setCurrent(@Nullable final Trace trace) {
+    if (null == trace) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(trace);
+    }
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  /**
+   * Returns the context to propagate to downstream calls made from the innermost unfinished span.
+   */
+  public TraceContext getContext() {
+    long spanId = depth > 0 ? stack[depth - 1].getSpanId() : remoteParentSpanId;
+    return new TraceContext(traceIdHigh, traceIdLow, spanId, true);
+  }
+
+  /**
+   * Starts a span as a child of the innermost unfinished span.
+   */
+  public ActiveSpan startSpan(final String name) {
+    long parentSpanId = depth > 0 ? stack[depth - 1].getSpanId() : remoteParentSpanId;
+    ActiveSpan span = new ActiveSpan(name, Tracer.newId(), parentSpanId);
+    if (depth < stack.length) {
+      stack[depth++] = span;
+    }
+    return span;
+  }
+
+  /**
+   * Finishes {@code span}, first finishing any of its descendants still open.
+   */
+  public void finishSpan(final ActiveSpan span) {
+    if (span.isFinished()) {
+      return;
+    }
+    for (int i = depth - 1; i >= 0; i--) {
+      if (stack[i] == span) {
+        while (depth > i) {
+          export(stack[--depth]);
+          stack[depth] = null;
+        }
+        return;
+      }
+    }
+    export(span);
+  }
+
+  /**
+   * Finishes every open span; called when the request is done.
+   */
+  void finish() {
+    while (depth > 0) {
+      export(stack[--depth]);
+      stack[depth] = null;
+    }
+  }
+
+  private void export(final ActiveSpan span) {
+    Span finished = span.finish(traceId, startMicros, startNanos);
+    for (SpanExporter exporter : exporters) {
+      try {
+        exporter.export(finished);
+      } catch (final RuntimeException e) {
+        LOGGER.warn("Span exporter {} failure", exporter, e);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("traceId", traceId)
+      .add("depth", depth)
+      .toString();
+  }
+
+}
@@ -0,0 +1,173 @@
+package net.opecko.http.tracing;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+
+/**
+ * Identity of a span as propagated between processes in a W3C {@code traceparent} header.
+ */
+public final class TraceContext {
+
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  private static final String VERSION = "00";
+  private static final int TRACEPARENT_LENGTH = 55;
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private final long traceIdHigh;
+  private final long traceIdLow;
+  private final long spanId;
+  private final boolean sampled;
+
+  TraceContext(final long traceIdHigh, final long traceIdLow, final long spanId, final boolean sampled) {
+    this.traceIdHigh = traceIdHigh;
+    this.traceIdLow = traceIdLow;
+    this.spanId = spanId;
+    this.sampled = sampled;
+  }
+
+  /**
+   * Parses a {@code traceparent} header value, returning {@code null} if it is absent or invalid.
+   * Values of a later version are accepted as long as they start with the version 00 fields.
+   */
+  @Nullable
+  public static TraceContext parse(@Nullable final String traceparent) {
+    if (null == traceparent || traceparent.length() < TRACEPARENT_LENGTH) {
+      return null;
+    }
+    String value = traceparent.trim();
+    if (value.length() < TRACEPARENT_LENGTH
+        || value.charAt(2) != '-' || value.charAt(35) != '-' || value.charAt(52) != '-') {
+      return null;
+    }
+    boolean current = value.startsWith(VERSION);
+    if (current ? value.length() != TRACEPARENT_LENGTH : value.length() > TRACEPARENT_LENGTH && value.charAt(55) != '-') {
+      return null;
+    }
+    if (parseHex(value, 0, 2) < 0 || value.startsWith("ff")) {
+      return null;
+    }
+    long traceIdHigh = parseHex(value, 3, 16);
+    long traceIdLow = parseHex(value, 19, 16);
+    long spanId = parseHex(value, 36, 16);
+    long flags = parseHex(value, 53, 2);
+    if (!isHex(value, 3, 32) || !isHex(value, 36, 16) || flags < 0
+        || (traceIdHigh == 0 && traceIdLow == 0) || spanId == 0) {
+      return null;
+    }
+    return new TraceContext(traceIdHigh, traceIdLow, spanId, (flags & 1) != 0);
+  }
+
+  public String getTraceId() {
+    return toTraceId(traceIdHigh, traceIdLow);
+  }
+
+  public String getSpanId() {
+    return toHex(spanId);
+  }
+
+  public boolean isSampled() {
+    return sampled;
+  }
+
+  long getTraceIdHigh() {
+    return traceIdHigh;
+  }
+
+  long getTraceIdLow() {
+    return traceIdLow;
+  }
+
+  long getSpanIdValue() {
+    return spanId;
+  }
+
+  /**
+   * Formats this context as a {@code traceparent} header value, for propagation to downstream calls.
+   */
+  public String toTraceparent() {
+    char[] chars = new char[TRACEPARENT_LENGTH];
+    chars[0] = '0';
+    chars[1] = '0';
+    chars[2] = '-';
+    appendHex(chars, 3, traceIdHigh, 16);
+    appendHex(chars, 19, traceIdLow, 16);
+    chars[35] = '-';
+    appendHex(chars, 36, spanId, 16);
+    chars[52] = '-';
+    chars[53] = '0';
+    chars[54] = sampled ? '1' : '0';
+    return new String(chars);
+  }
+
+  static String toTraceId(final long high, final long low) {
+    char[] chars = new char[32];
+    appendHex(chars, 0, high, 16);
+    appendHex(chars, 16, low, 16);
+    return new String(chars);
+  }
+
+  static String toHex(final long value) {
+    char[] chars = new char[16];
+    appendHex(chars, 0, value, 16);
+    return new String(chars);
+  }
+
+  private static void appendHex(final char[] chars, final int offset, final long value, final int digits) {
+    for (int i = 0; i < digits; i++) {
+      chars[offset + i] = HEX[(int) (value >>> (4 * (digits - 1 - i))) & 0xf];
+    }
+  }
+
+  /**
+   * Parses up to 16 lower-case hex digits, returning -1 on an invalid digit; callers parsing 16
+   * digits must validate with {@link #isHex} since the result may legitimately be negative.
+   */
+  private static long parseHex(final String value, final int offset, final int digits) {
+    long result = 0;
+    for (int i = offset; i < offset + digits; i++) {
+      int digit = Character.digit(value.charAt(i), 16);
+      if (digit < 0 || Character.isUpperCase(value.charAt(i))) {
+        return -1;
+      }
+      result = (result << 4) | digit;
+    }
+    return result;
+  }
+
+  private static boolean isHex(final String value, final int offset, final int digits) {
+    for (int i = offset; i < offset + digits; i++) {
+      char c = value.charAt(i);
+      if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean equals(@Nullable final Object o) {
+    if (o == this) {
+      return true;
+    } else if (!(o instanceof TraceContext)) {
+      return false;
+    }
+    TraceContext other = (TraceContext) o;
+    return traceIdHigh == other.traceIdHigh
+        && traceIdLow == other.traceIdLow
+        && spanId == other.spanId
+        && sampled == other.sampled;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(traceIdHigh, traceIdLow, spanId, sampled);
+  }
+
+  @Override
+  public String toString() {
+    return toTraceparent();
+  }
+
+}
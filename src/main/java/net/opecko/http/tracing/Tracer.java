@@ -0,0 +1,96 @@
+package net.opecko.http.tracing;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * Decides which requests are traced and starts their {@link Trace}.
+ * <p>
+ * A request carrying a valid {@code traceparent} follows the caller's sampling decision; other
+ * requests are sampled at the configured rate.
+ */
+public class Tracer {
+
+  private volatile double sampleRate;
+  private final Set<SpanExporter> exporters;
+  private final Counter sampled;
+
+  public Tracer(final double sampleRate, final Set<SpanExporter> exporters, final MetricsRegistry metricsRegistry) {
+    Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "sample rate must be within [0, 1]");
+    this.sampleRate = sampleRate;
+    this.exporters = ImmutableSet.copyOf(exporters);
+    this.sampled = metricsRegistry.newCounter(Tracer.class, "sampled traces");
+  }
+
+  double getSampleRate() {
+    return sampleRate;
+  }
+
+  void setSampleRate(final double sampleRate) {
+    Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1, "sample rate must be within [0, 1]");
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Starts tracing the request served by the current thread, returning {@code null} without
+   * allocating anything if it is not sampled.
+   */
+  @Nullable
+  Trace begin(@Nullable final String traceparent) {
+    TraceContext parent = null == traceparent ? null : TraceContext.parse(traceparent);
+    Trace trace;
+    if (null != parent) {
+      if (!parent.isSampled()) {
+        return null;
+      }
+      trace = new Trace(parent.getTraceIdHigh(), parent.getTraceIdLow(), parent.getSpanIdValue(), exporters);
+    } else if (isSampled(sampleRate)) {
+      trace = new Trace(newId(), newId(), 0L, exporters);
+    } else {
+      return null;
+    }
+    sampled.inc();
+    Trace.setCurrent(trace);
+    return trace;
+  }
+
+  /**
+   * Finishes the trace started by {@link #begin} on the current thread.
+   */
+  void end(final Trace trace) {
+    try {
+      trace.finish();
+    } finally {
+      Trace.setCurrent(null);
+    }
+  }
+
+  private static boolean isSampled(final double sampleRate) {
+    return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  static long newId() {
+    long id;
+    do {
+      id = ThreadLocalRandom.current().nextLong();
+    } while (id == 0);
+    return id;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("sampleRate", sampleRate)
+      .add("exporters", exporters)
+      .toString();
+  }
+
+}
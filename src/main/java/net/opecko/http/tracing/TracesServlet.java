@@ -0,0 +1,80 @@
+package net.opecko.http.tracing;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.primitives.Ints;
+
+/**
+ * Serves the most recent spans of the {@link SpanStore} as JSON, newest first.
+ * <p>
+ * The {@code trace} query parameter restricts the output to one trace and {@code limit} caps the
+ * number of spans (100 by default).
+ */
+@Singleton
+public class TracesServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 20261019L;
+  private static final int DEFAULT_LIMIT = 100;
+
+  private final transient SpanStore spanStore;
+  private final transient JsonFactory jsonFactory;
+
+  @Inject
+  TracesServlet(final SpanStore spanStore) {
+    this.spanStore = Preconditions.checkNotNull(spanStore);
+    this.jsonFactory = new JsonFactory();
+  }
+
+  @Override
+  protected void doGet(
+      final HttpServletRequest request,
+      final HttpServletResponse response
+  ) throws ServletException, IOException {
+    String traceId = Strings.emptyToNull(request.getParameter("trace"));
+    Integer limit = Ints.tryParse(Strings.nullToEmpty(request.getParameter("limit")));
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("application/json");
+    response.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+    JsonGenerator json = jsonFactory.createGenerator(response.getOutputStream());
+    try {
+      json.writeStartObject();
+      json.writeNumberField("capacity", spanStore.getCapacity());
+      json.writeArrayFieldStart("spans");
+      for (Span span : spanStore.getRecentSpans(null == limit || limit < 0 ? DEFAULT_LIMIT : limit, traceId)) {
+        json.writeStartObject();
+        json.writeStringField("traceId", span.getTraceId());
+        json.writeStringField("spanId", span.getSpanId());
+        if (null != span.getParentSpanId()) {
+          json.writeStringField("parentSpanId", span.getParentSpanId());
+        }
+        json.writeStringField("name", span.getName());
+        json.writeNumberField("startMicros", span.getStartMicros());
+        json.writeNumberField("durationMicros", span.getDurationNanos() / 1000);
+        json.writeObjectFieldStart("tags");
+        for (Map.Entry<String, String> tag : span.getTags().entrySet()) {
+          json.writeStringField(tag.getKey(), tag.getValue());
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+    } finally {
+      json.close();
+    }
+  }
+
+}
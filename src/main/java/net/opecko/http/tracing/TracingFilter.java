@@ -0,0 +1,75 @@
+package net.opecko.http.tracing;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Preconditions;
+
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+
+/**
+ * Starts the trace of sampled requests, with a root span covering the rest of the filter chain.
+ * <p>
+ * The root span is named after the Jersey route when there is one, and tagged with the method,
+ * path and status. Unsampled requests only pay for the sampling decision.
+ */
+public class TracingFilter implements Filter {
+
+  private final Tracer tracer;
+
+  public TracingFilter(final Tracer tracer) {
+    this.tracer = Preconditions.checkNotNull(tracer);
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    Trace trace = tracer.begin(httpRequest.getHeader(TraceContext.TRACEPARENT_HEADER));
+    if (null == trace) {
+      chain.doFilter(request, response);
+      return;
+    }
+    ActiveSpan root = trace.startSpan(httpRequest.getMethod() + " " + httpRequest.getRequestURI());
+    try {
+      chain.doFilter(request, response);
+    } catch (final IOException | ServletException | RuntimeException e) {
+      root.tag("error", e.getClass().getName());
+      throw e;
+    } finally {
+      String route = RouteResourceFilterFactory.getRoute(request);
+      if (null != route) {
+        root.setName(route);
+      }
+      root.tag("method", httpRequest.getMethod()).tag("path", httpRequest.getRequestURI());
+      int status = ((HttpServletResponse) response).getStatus();
+      if (status > 0) {
+        // unset when an exception propagates to the container
+        root.tag("status", Integer.toString(status));
+      }
+      tracer.end(trace);
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+}
@@ -0,0 +1,152 @@
+package net.opecko.http.tracing;
+
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.collect.Range;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.TypeLiteral;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.config.server.AdminEndpoint;
+import net.opecko.http.config.tracing.TracesPath;
+import net.opecko.http.flags.DynamicFlag;
+import net.opecko.http.servlet.FilterDefinition;
+import net.opecko.http.servlet.ServletEndpoint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for sampled request tracing.
+ * <p>
+ * Finished spans go to every bound {@link SpanExporter}, including the {@link SpanStore} served
+ * under the metrics path.
+ */
+@Parameters(separators = "=")
+public class TracingModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TracingModule.class);
+
+  @Parameter(names = "--trace_sample_rate",
+      description = "Fraction of requests without a sampled traceparent that are traced (0 = none)")
+  private double traceSampleRate = 0.01;
+
+  @Parameter(names = "--trace_buffer_size", description = "Number of finished spans kept for the traces endpoint")
+  private int traceBufferSize = 8192;
+
+  @Parameter(names = "--traces_path", description = "Traces endpoint path under context root (empty = disabled)")
+  private String tracesPath = "/metrics/traces";
+
+  @Override
+  protected void configure() {
+    LOGGER.info("Tracing {} of requests, keeping {} spans", traceSampleRate, traceBufferSize);
+    Multibinder.newSetBinder(binder(), SpanExporter.class).addBinding().to(SpanStore.class);
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(TracingFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+    Multibinder.newSetBinder(binder(), new TypeLiteral<DynamicFlag<?>>() { })
+        .addBinding()
+        .toProvider(TraceSampleRateFlagProvider.class)
+        .in(Scopes.SINGLETON);
+
+    if (!Strings.isNullOrEmpty(tracesPath)) {
+      bind(String.class).annotatedWith(TracesPath.class).toInstance(tracesPath);
+      LOGGER.info("Traces servlet installed at: {}", tracesPath);
+      Multibinder.newSetBinder(binder(), ServletEndpoint.class, AdminEndpoint.class)
+        .addBinding()
+        .toProvider(TracesEndpointProvider.class)
+        .in(Scopes.SINGLETON);
+    } else {
+      LOGGER.info("Traces servlet not installed");
+    }
+  }
+
+  @Provides
+  @Singleton
+  public SpanStore provideSpanStore() {
+    return new SpanStore(traceBufferSize);
+  }
+
+  @Provides
+  @Singleton
+  public Tracer provideTracer(final Set<SpanExporter> exporters, final MetricsRegistry metricsRegistry) {
+    return new Tracer(traceSampleRate, exporters, metricsRegistry);
+  }
+
+  private static final class TracingFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final Tracer tracer;
+
+    @Inject
+    private TracingFilterDefinitionProvider(final Tracer tracer) {
+      this.tracer = tracer;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(new TracingFilter(tracer), "/*");
+    }
+
+  }
+
+  private static final class TraceSampleRateFlagProvider implements Provider<DynamicFlag<?>> {
+
+    private final Tracer tracer;
+
+    @Inject
+    private TraceSampleRateFlagProvider(final Tracer tracer) {
+      this.tracer = tracer;
+    }
+
+    @Override
+    public DynamicFlag<?> get() {
+      return DynamicFlag.ofDouble(
+        "trace_sample_rate",
+        "Fraction of requests without a sampled traceparent that are traced",
+        tracer.getSampleRate(),
+        Range.closed(0.0, 1.0),
+        new DynamicFlag.Listener<Double>() {
+          @Override
+          public void apply(final Double value) {
+            tracer.setSampleRate(value);
+          }
+        }
+      );
+    }
+
+  }
+
+  private static final class TracesEndpointProvider implements Provider<ServletEndpoint> {
+
+    private final TracesServlet tracesServlet;
+    private final String tracesPath;
+
+    @Inject
+    private TracesEndpointProvider(
+        final TracesServlet tracesServlet,
+        @TracesPath final String tracesPath
+    ) {
+      Preconditions.checkArgument(!Strings.isNullOrEmpty(tracesPath));
+      this.tracesServlet = Preconditions.checkNotNull(tracesServlet);
+      this.tracesPath = tracesPath;
+    }
+
+    @Override
+    public ServletEndpoint get() {
+      return new ServletEndpoint(tracesServlet, tracesPath);
+    }
+  }
+
+}
@@ -0,0 +1,98 @@
+package net.opecko.http.tracing;
+
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import com.google.common.collect.Lists;
+import com.sun.jersey.api.model.AbstractMethod;
+import com.sun.jersey.api.model.AbstractResourceMethod;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+import com.sun.jersey.spi.container.ResourceFilter;
+import com.sun.jersey.spi.container.ResourceFilterFactory;
+
+/**
+ * Adds Jersey's phases to sampled traces.
+ * <p>
+ * Registered both as a container filter, where it opens a "jersey dispatch" span around matching,
+ * invocation and serialization, and as a resource filter factory, whose filters open a "resource
+ * method" span around the resource filters and method. The "serialization" span runs from the
+ * container response filters until the request finishes.
+ */
+@Singleton
+public class TracingResourceFilterFactory
+    implements ResourceFilterFactory, ContainerRequestFilter, ContainerResponseFilter {
+
+  private static final String RESOURCE_SPAN = TracingResourceFilterFactory.class.getName() + ".resource";
+
+  @Override
+  public List<ResourceFilter> create(final AbstractMethod am) {
+    if (!(am instanceof AbstractResourceMethod)) {
+      // locators are not invoked per request
+      return null;
+    }
+    return Lists.<ResourceFilter>newArrayList(new ResourceMethodFilter());
+  }
+
+  @Override
+  public ContainerRequest filter(final ContainerRequest request) {
+    Trace trace = Trace.current();
+    if (null != trace) {
+      trace.startSpan("jersey dispatch");
+    }
+    return request;
+  }
+
+  @Override
+  public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+    Trace trace = Trace.current();
+    if (null != trace) {
+      ActiveSpan resource = (ActiveSpan) request.getProperties().remove(RESOURCE_SPAN);
+      if (null != resource) {
+        trace.finishSpan(resource);
+      }
+      trace.startSpan("serialization");
+    }
+    return response;
+  }
+
+  private static final class ResourceMethodFilter
+      implements ResourceFilter, ContainerRequestFilter, ContainerResponseFilter {
+
+    @Override
+    public ContainerRequest filter(final ContainerRequest request) {
+      Trace trace = Trace.current();
+      if (null != trace) {
+        request.getProperties().put(RESOURCE_SPAN, trace.startSpan("resource method"));
+      }
+      return request;
+    }
+
+    @Override
+    public ContainerResponse filter(final ContainerRequest request, final ContainerResponse response) {
+      Trace trace = Trace.current();
+      if (null != trace) {
+        ActiveSpan resource = (ActiveSpan) request.getProperties().remove(RESOURCE_SPAN);
+        if (null != resource) {
+          trace.finishSpan(resource);
+        }
+      }
+      return response;
+    }
+
+    @Override
+    public ContainerRequestFilter getRequestFilter() {
+      return this;
+    }
+
+    @Override
+    public ContainerResponseFilter getResponseFilter() {
+      return this;
+    }
+
+  }
+
+}
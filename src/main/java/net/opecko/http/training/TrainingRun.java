@@ -0,0 +1,146 @@
+package net.opecko.http.training;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+
+import net.opecko.http.jetty.WarmupRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Drives a started server through its request paths over the real HTTP connector, so a JVM
+ * recording loaded classes (for a class-data-sharing archive) sees every class a served request
+ * needs: connector, parser, filters, Jersey, Jackson and the metrics endpoints.
+ */
+public class TrainingRun {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TrainingRun.class);
+  private static final int TIMEOUT_MILLIS = 10000;
+
+  private final boolean enabled;
+  private final String baseUrl;
+  private final List<WarmupRequest> requests;
+  private final String adminBaseUrl;
+  private final List<WarmupRequest> adminRequests;
+  private final int iterations;
+
+  TrainingRun(
+      final boolean enabled,
+      final String baseUrl,
+      final List<WarmupRequest> requests,
+      final String adminBaseUrl,
+      final List<WarmupRequest> adminRequests,
+      final int iterations
+  ) {
+    Preconditions.checkArgument(iterations > 0, "Training iterations must be positive");
+    this.enabled = enabled;
+    this.baseUrl = Preconditions.checkNotNull(baseUrl);
+    this.requests = ImmutableList.copyOf(requests);
+    this.adminBaseUrl = Preconditions.checkNotNull(adminBaseUrl);
+    this.adminRequests = ImmutableList.copyOf(adminRequests);
+    this.iterations = iterations;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Replays every request {@code iterations} times. A request without a response or answered
+   * with anything but a 2xx status fails the run: it took an error path rather than the one it
+   * was meant to train.
+   *
+   * @return whether every request succeeded
+   */
+  public boolean run() {
+    LOGGER.info(
+      "Training run against {} with {} requests and {} with {} admin requests",
+      baseUrl,
+      requests.size(),
+      adminBaseUrl,
+      adminRequests.size()
+    );
+    long start = System.nanoTime();
+    int failures = 0;
+    for (int i = 0; i < iterations; i++) {
+      for (WarmupRequest request : requests) {
+        if (!replay(baseUrl, request)) {
+          failures++;
+        }
+      }
+      for (WarmupRequest request : adminRequests) {
+        if (!replay(adminBaseUrl, request)) {
+          failures++;
+        }
+      }
+    }
+    LOGGER.info(
+      "Training run finished in {} ms with {} failed requests",
+      (System.nanoTime() - start) / 1000000,
+      failures
+    );
+    return failures == 0;
+  }
+
+  private static boolean replay(final String baseUrl, final WarmupRequest request) {
+    HttpURLConnection connection = null;
+    try {
+      connection = (HttpURLConnection) new URL(baseUrl + request.getPath()).openConnection();
+      connection.setConnectTimeout(TIMEOUT_MILLIS);
+      connection.setReadTimeout(TIMEOUT_MILLIS);
+      connection.setRequestMethod(request.getMethod());
+      for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+        connection.setRequestProperty(header.getKey(), header.getValue());
+      }
+      if (!request.getBody().isEmpty()) {
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+          out.write(request.getBody().getBytes(StandardCharsets.UTF_8));
+        }
+      }
+      int status = connection.getResponseCode();
+      try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+        if (null != in) {
+          ByteStreams.copy(in, ByteStreams.nullOutputStream());
+        }
+      }
+      if (status / 100 != 2) {
+        LOGGER.warn("Training request {} to {} answered {}", request, baseUrl, status);
+        return false;
+      }
+      return true;
+    } catch (final IOException e) {
+      LOGGER.warn("Training request {} to {} failed", request, baseUrl, e);
+      return false;
+    } finally {
+      if (null != connection) {
+        connection.disconnect();
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+      .add("enabled", enabled)
+      .add("baseUrl", baseUrl)
+      .add("requests", requests.size())
+      .add("adminBaseUrl", adminBaseUrl)
+      .add("adminRequests", adminRequests.size())
+      .add("iterations", iterations)
+      .toString();
+  }
+
+}
@@ -0,0 +1,94 @@
+package net.opecko.http.training;
+
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.multibindings.Multibinder;
+
+import net.opecko.http.config.server.AdminPort;
+import net.opecko.http.config.server.BindAddress;
+import net.opecko.http.config.server.ServerPort;
+import net.opecko.http.jetty.WarmupRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for the {@link TrainingRun} with which {@code HttpServer} boots, exercises its
+ * endpoints and exits, for recording a class-data-sharing archive.
+ * <p>
+ * The training requests are {@code --training_requests} followed by every bound
+ * {@link WarmupRequest}, so an application describes its hot paths once for both, sent to the
+ * server's connector, and {@code --training_admin_requests}, sent to the admin connector when
+ * there is an {@code --admin_port}.
+ */
+@Parameters(separators = "=")
+public class TrainingRunModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TrainingRunModule.class);
+  private static final String ANY_ADDRESS = "0.0.0.0";
+
+  @Parameter(names = "--training_run",
+      description = "Start, exercise the training requests, then stop and exit", arity = 1)
+  private boolean trainingRun;
+
+  @Parameter(names = "--training_requests",
+      description = "Comma-separated \"[METHOD] path\" application requests issued by a training run")
+  private String trainingRequests = "";
+
+  @Parameter(names = "--training_admin_requests",
+      description = "Comma-separated \"[METHOD] path\" requests a training run issues to the admin endpoints")
+  private String trainingAdminRequests = "/metrics/metrics,/metrics/prometheus,/metrics/ping";
+
+  @Parameter(names = "--training_iterations", description = "Times a training run issues each request")
+  private int trainingIterations = 3;
+
+  @Override
+  protected void configure() {
+    Multibinder.newSetBinder(binder(), WarmupRequest.class);
+  }
+
+  @Provides
+  @Singleton
+  public TrainingRun provideTrainingRun(
+      @BindAddress final String bindAddress,
+      @ServerPort final int serverPort,
+      @AdminPort final int adminPort,
+      final Set<WarmupRequest> warmupRequests
+  ) {
+    ImmutableList.Builder<WarmupRequest> requests = ImmutableList.builder();
+    requests.addAll(parse(trainingRequests));
+    requests.addAll(warmupRequests);
+    String host = Strings.isNullOrEmpty(bindAddress) || ANY_ADDRESS.equals(bindAddress) ? "127.0.0.1" : bindAddress;
+    TrainingRun run = new TrainingRun(
+      trainingRun,
+      "http://" + host + ":" + serverPort,
+      requests.build(),
+      "http://" + host + ":" + (adminPort > 0 ? adminPort : serverPort),
+      parse(trainingAdminRequests),
+      trainingIterations
+    );
+    if (trainingRun) {
+      LOGGER.info("Training run configured: {}", run);
+    }
+    return run;
+  }
+
+  private static List<WarmupRequest> parse(final String specs) {
+    ImmutableList.Builder<WarmupRequest> requests = ImmutableList.builder();
+    for (String spec : Splitter.on(',').omitEmptyStrings().trimResults().split(specs)) {
+      requests.add(WarmupRequest.parse(spec));
+    }
+    return requests.build();
+  }
+
+}
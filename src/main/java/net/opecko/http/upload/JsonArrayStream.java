@@ -0,0 +1,100 @@
+package net.opecko.http.upload;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Response;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+
+/**
+ * The elements of a JSON array request body, bound one at a time as the body arrives. Declare a
+ * resource method parameter of this type, for example {@code JsonArrayStream<Widget>}, to receive
+ * one from {@link JsonArrayStreamReader}; only the element being bound is ever held.
+ * <p>
+ * It can be iterated once, within the resource method. A malformed element fails the iteration
+ * with 400 and a body over the size limit with 413, as {@link WebApplicationException}s.
+ */
+public final class JsonArrayStream<T> implements Iterable<T> {
+
+  private final JsonParser parser;
+  private final ObjectReader reader;
+  private boolean iterated;
+
+  JsonArrayStream(final JsonParser parser, final ObjectReader reader) {
+    Preconditions.checkArgument(parser.getCurrentToken() == JsonToken.START_ARRAY, "parser must be at an array");
+    this.parser = parser;
+    this.reader = reader;
+  }
+
+  @Override
+  public synchronized Iterator<T> iterator() {
+    Preconditions.checkState(!iterated, "a JSON array stream can only be iterated once");
+    iterated = true;
+    return new Iterator<T>() {
+
+      private T next;
+      private boolean done;
+
+      @Override
+      public boolean hasNext() {
+        if (null == next && !done) {
+          next = readNext();
+          done = null == next;
+        }
+        return !done;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        T element = next;
+        next = null;
+        return element;
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+
+    };
+  }
+
+  /**
+   * Returns the next element, or null after the last.
+   */
+  private T readNext() {
+    try {
+      // null elements are skipped: a null return marks the end of the array
+      JsonToken token;
+      do {
+        token = parser.nextToken();
+        if (null == token) {
+          throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        } else if (token == JsonToken.END_ARRAY) {
+          parser.close();
+          return null;
+        }
+      } while (token == JsonToken.VALUE_NULL);
+      return reader.readValue(parser);
+    } catch (final IOException e) {
+      for (Throwable cause : Throwables.getCausalChain(e)) {
+        if (cause instanceof RequestBodyTooLargeException) {
+          throw new WebApplicationException(cause, RequestBodyTooLargeExceptionMapper.REQUEST_ENTITY_TOO_LARGE);
+        }
+      }
+      // malformed JSON, or the client going away mid-body
+      throw new WebApplicationException(e, Response.Status.BAD_REQUEST);
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+package net.opecko.http.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads a JSON array request body into a {@link JsonArrayStream}, binding elements with the
+ * {@link ObjectMapper} the {@link JacksonJsonProvider} uses. Only the opening bracket is read
+ * before the resource method runs, so a body that is not an array fails with 400 up front.
+ */
+@Provider
+@Singleton
+@Consumes(MediaType.APPLICATION_JSON)
+public class JsonArrayStreamReader implements MessageBodyReader<JsonArrayStream<?>> {
+
+  private final JacksonJsonProvider jsonProvider;
+
+  @Inject
+  JsonArrayStreamReader(final JacksonJsonProvider jsonProvider) {
+    this.jsonProvider = Preconditions.checkNotNull(jsonProvider);
+  }
+
+  @Override
+  public boolean isReadable(
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType
+  ) {
+    return JsonArrayStream.class == type;
+  }
+
+  @Override
+  public JsonArrayStream<?> readFrom(
+      final Class<JsonArrayStream<?>> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType,
+      final MultivaluedMap<String, String> httpHeaders,
+      final InputStream entityStream
+  ) throws IOException {
+    Type elementType = genericType instanceof ParameterizedType
+        ? ((ParameterizedType) genericType).getActualTypeArguments()[0]
+        : Object.class;
+    ObjectMapper mapper = jsonProvider.locateMapper(Object.class, mediaType);
+    JavaType javaType = mapper.getTypeFactory().constructType(elementType);
+    JsonParser parser = mapper.getFactory().createParser(entityStream);
+    if (parser.nextToken() != JsonToken.START_ARRAY) {
+      throw new WebApplicationException(
+        Response.status(Response.Status.BAD_REQUEST)
+          .type(MediaType.TEXT_PLAIN_TYPE)
+          .entity("Expected a JSON array")
+          .build()
+      );
+    }
+    return new JsonArrayStream<>(parser, mapper.reader(javaType));
+  }
+
+}
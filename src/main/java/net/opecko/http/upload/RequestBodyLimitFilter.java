@@ -0,0 +1,202 @@
+package net.opecko.http.upload;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.base.Throwables;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * Servlet filter enforcing {@code --max_request_body_size}, and releasing the
+ * {@link SpooledRequestBody}s a request leaves behind.
+ * <p>
+ * A declared {@code Content-Length} over the limit is answered with 413 before a byte of the body
+ * is read. Bodies without one, or lying about it, are counted as they are read, and the read
+ * that crosses the limit fails with a {@link RequestBodyTooLargeException}.
+ */
+public class RequestBodyLimitFilter implements Filter {
+
+  private final long maxBodySize;
+  private final Counter rejected;
+
+  public RequestBodyLimitFilter(final long maxBodySize, final MetricsRegistry metricsRegistry) {
+    this.maxBodySize = maxBodySize;
+    this.rejected = metricsRegistry.newCounter(RequestBodyLimitFilter.class, "rejected request bodies");
+  }
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    if (maxBodySize <= 0) {
+      try {
+        chain.doFilter(request, response);
+      } finally {
+        SpooledRequestBody.closeAll();
+      }
+      return;
+    }
+    if (getContentLength((HttpServletRequest) request) > maxBodySize) {
+      rejected.inc();
+      reject((HttpServletResponse) response);
+      return;
+    }
+    try {
+      chain.doFilter(new LimitedRequest((HttpServletRequest) request, maxBodySize, rejected), response);
+    } catch (final IOException | ServletException | RuntimeException e) {
+      // Jersey answers it itself; any other servlet lets it through to here
+      if (response.isCommitted() || !isTooLarge(e)) {
+        throw e;
+      }
+      reject((HttpServletResponse) response);
+    } finally {
+      SpooledRequestBody.closeAll();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+  private static long getContentLength(final HttpServletRequest request) {
+    String contentLength = request.getHeader("Content-Length");
+    if (null == contentLength) {
+      return -1L;
+    }
+    try {
+      return Long.parseLong(contentLength.trim());
+    } catch (final NumberFormatException e) {
+      // left to the container to reject
+      return -1L;
+    }
+  }
+
+  private static boolean isTooLarge(final Throwable throwable) {
+    for (Throwable cause : Throwables.getCausalChain(throwable)) {
+      if (cause instanceof RequestBodyTooLargeException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void reject(final HttpServletResponse response) throws IOException {
+    // the rest of the body is never read, so the connection cannot carry another request
+    response.setHeader("Connection", "close");
+    response.sendError(RequestBodyTooLargeExceptionMapper.REQUEST_ENTITY_TOO_LARGE);
+  }
+
+  /**
+   * Request handing out an input stream that fails once more than the limit has been read.
+   */
+  private static final class LimitedRequest extends HttpServletRequestWrapper {
+
+    private final LimitedInputStream inputStream;
+    private BufferedReader reader;
+
+    LimitedRequest(final HttpServletRequest request, final long maxBodySize, final Counter rejected) {
+      super(request);
+      this.inputStream = new LimitedInputStream(this, maxBodySize, rejected);
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+      // fail now, as the wrapped request would, if the reader is in use
+      inputStream.getDelegate();
+      return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+      if (null == reader) {
+        String encoding = getCharacterEncoding();
+        Charset charset = null == encoding ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+        reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+      }
+      return reader;
+    }
+
+  }
+
+  private static final class LimitedInputStream extends ServletInputStream {
+
+    private final LimitedRequest request;
+    private final long maxBodySize;
+    private final Counter rejected;
+    private long read;
+
+    LimitedInputStream(final LimitedRequest request, final long maxBodySize, final Counter rejected) {
+      this.request = request;
+      this.maxBodySize = maxBodySize;
+      this.rejected = rejected;
+    }
+
+    ServletInputStream getDelegate() throws IOException {
+      return request.getRequest().getInputStream();
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = getDelegate().read();
+      if (b >= 0) {
+        count(1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      int n = getDelegate().read(b, off, len);
+      if (n > 0) {
+        count(n);
+      }
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return getDelegate().available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      getDelegate().close();
+    }
+
+    private void count(final int n) throws RequestBodyTooLargeException {
+      boolean wasWithin = read <= maxBodySize;
+      read += n;
+      if (read > maxBodySize) {
+        if (wasWithin) {
+          rejected.inc();
+        }
+        throw new RequestBodyTooLargeException(maxBodySize);
+      }
+    }
+
+  }
+
+}
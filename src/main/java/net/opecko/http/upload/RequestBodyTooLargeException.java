@@ -0,0 +1,20 @@
+package net.opecko.http.upload;
+
+import java.io.IOException;
+
+/**
+ * Thrown by a request body stream read past the {@code --max_request_body_size} limit.
+ * <p>
+ * An {@link IOException}, so it surfaces from whatever is reading the body, and answered with 413
+ * by {@link RequestBodyTooLargeExceptionMapper} in Jersey and by {@link RequestBodyLimitFilter}
+ * elsewhere.
+ */
+public final class RequestBodyTooLargeException extends IOException {
+
+  private static final long serialVersionUID = 20261019L;
+
+  RequestBodyTooLargeException(final long maxBodySize) {
+    super("Request body larger than " + maxBodySize + " bytes");
+  }
+
+}
@@ -0,0 +1,26 @@
+package net.opecko.http.upload;
+
+import javax.inject.Singleton;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Answers {@link RequestBodyTooLargeException} with 413.
+ */
+@Provider
+@Singleton
+public class RequestBodyTooLargeExceptionMapper implements ExceptionMapper<RequestBodyTooLargeException> {
+
+  static final int REQUEST_ENTITY_TOO_LARGE = 413;
+
+  @Override
+  public Response toResponse(final RequestBodyTooLargeException exception) {
+    return Response.status(REQUEST_ENTITY_TOO_LARGE)
+        .type(MediaType.TEXT_PLAIN_TYPE)
+        .entity(exception.getMessage())
+        .build();
+  }
+
+}
@@ -0,0 +1,122 @@
+package net.opecko.http.upload;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A request body read to its end, held in memory up to {@code --upload_spill_threshold} bytes and
+ * in a temporary file beyond that. Declare a resource method parameter of this type to receive
+ * one from {@link SpooledRequestBodyReader}.
+ * <p>
+ * The body can be read any number of times. Its file is deleted by {@link #close}, or at the
+ * latest by {@link RequestBodyLimitFilter} when the request that read it ends; bodies spooled on
+ * a thread are remembered per thread until then.
+ */
+public final class SpooledRequestBody implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(SpooledRequestBody.class);
+  private static final ThreadLocal<List<SpooledRequestBody>> OPEN = new ThreadLocal<>();
+
+  @Nullable private final byte[] bytes;
+  @Nullable private final Path file;
+  private final long size;
+
+  private SpooledRequestBody(@Nullable final byte[] bytes, @Nullable final Path file, final long size) {
+    this.bytes = bytes;
+    this.file = file;
+    this.size = size;
+  }
+
+  static SpooledRequestBody inMemory(final byte[] bytes, final int size) {
+    return new SpooledRequestBody(bytes, null, size);
+  }
+
+  static SpooledRequestBody spilled(final Path file, final long size) {
+    SpooledRequestBody body = new SpooledRequestBody(null, Preconditions.checkNotNull(file), size);
+    List<SpooledRequestBody> open = OPEN.get();
+    if (null == open) {
+      open = new ArrayList<>(1);
+      OPEN.set(open);
+    }
+    open.add(body);
+    return body;
+  }
+
+  /**
+   * Closes every spilled body spooled on the current thread.
+   */
+  static void closeAll() {
+    List<SpooledRequestBody> open = OPEN.get();
+    if (null != open) {
+      OPEN.remove();
+      for (SpooledRequestBody body : open) {
+        body.close();
+      }
+    }
+  }
+
+  public long size() {
+    return size;
+  }
+
+  public boolean isSpilled() {
+    return null != file;
+  }
+
+  /**
+   * Opens a stream over the whole body, read from memory or from its file.
+   */
+  public InputStream openStream() throws IOException {
+    if (null == file) {
+      return new ByteArrayInputStream(bytes, 0, (int) size);
+    }
+    return Channels.newInputStream(openChannel());
+  }
+
+  /**
+   * Opens a read-only channel over the spilled file, for transfers and mapping.
+   *
+   * @throws IllegalStateException if the body is held in memory
+   */
+  public FileChannel openChannel() throws IOException {
+    Preconditions.checkState(null != file, "request body is held in memory");
+    return FileChannel.open(file, StandardOpenOption.READ);
+  }
+
+  @Override
+  public void close() {
+    if (null != file) {
+      try {
+        Files.deleteIfExists(file);
+      } catch (final IOException e) {
+        LOGGER.warn("Failure deleting spilled request body {}", file, e);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this).omitNullValues()
+        .add("size", size)
+        .add("file", file)
+        .toString();
+  }
+
+}
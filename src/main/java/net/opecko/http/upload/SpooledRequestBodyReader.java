@@ -0,0 +1,127 @@
+package net.opecko.http.upload;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.Provider;
+
+import com.google.common.base.Preconditions;
+import com.yammer.metrics.core.Counter;
+import com.yammer.metrics.core.MetricsRegistry;
+
+/**
+ * Reads any request body into a {@link SpooledRequestBody}: into a heap array while it fits
+ * under the spill threshold, and from there on through a {@link FileChannel} into a temporary
+ * file, so an upload costs the heap at most the threshold however large it is.
+ */
+@Provider
+public class SpooledRequestBodyReader implements MessageBodyReader<SpooledRequestBody> {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private final int spillThreshold;
+  private final Path spillDirectory;
+  private final Counter spilled;
+  private final Counter spilledBytes;
+
+  public SpooledRequestBodyReader(
+      final int spillThreshold,
+      final Path spillDirectory,
+      final MetricsRegistry metricsRegistry
+  ) {
+    Preconditions.checkArgument(spillThreshold >= 0, "spill threshold must not be negative");
+    this.spillThreshold = spillThreshold;
+    this.spillDirectory = Preconditions.checkNotNull(spillDirectory);
+    this.spilled = metricsRegistry.newCounter(SpooledRequestBodyReader.class, "spilled request bodies");
+    this.spilledBytes = metricsRegistry.newCounter(SpooledRequestBodyReader.class, "spilled request bytes");
+  }
+
+  @Override
+  public boolean isReadable(
+      final Class<?> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType
+  ) {
+    return SpooledRequestBody.class == type;
+  }
+
+  @Override
+  public SpooledRequestBody readFrom(
+      final Class<SpooledRequestBody> type,
+      final Type genericType,
+      final Annotation[] annotations,
+      final MediaType mediaType,
+      final MultivaluedMap<String, String> httpHeaders,
+      final InputStream entityStream
+  ) throws IOException {
+    byte[] memory = new byte[Math.min(spillThreshold, CHUNK_SIZE)];
+    int size = 0;
+    while (true) {
+      if (size == memory.length) {
+        if (size == spillThreshold) {
+          byte[] chunk = new byte[CHUNK_SIZE];
+          int n = entityStream.read(chunk);
+          return n < 0 ? SpooledRequestBody.inMemory(memory, size) : spill(memory, chunk, n, entityStream);
+        }
+        memory = Arrays.copyOf(memory, (int) Math.min(2L * size, spillThreshold));
+      }
+      int n = entityStream.read(memory, size, memory.length - size);
+      if (n < 0) {
+        return SpooledRequestBody.inMemory(memory, size);
+      }
+      size += n;
+    }
+  }
+
+  /**
+   * Writes the full in-memory part, the chunk read past it and the rest of the stream to a new
+   * temporary file.
+   */
+  private SpooledRequestBody spill(
+      final byte[] memory,
+      final byte[] chunk,
+      final int chunkSize,
+      final InputStream entityStream
+  ) throws IOException {
+    Path file = Files.createTempFile(spillDirectory, "upload-", ".tmp");
+    boolean complete = false;
+    long size = 0;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      size += write(channel, ByteBuffer.wrap(memory));
+      ByteBuffer buffer = ByteBuffer.wrap(chunk);
+      for (int n = chunkSize; n >= 0; n = entityStream.read(chunk)) {
+        buffer.clear().limit(n);
+        size += write(channel, buffer);
+      }
+      complete = true;
+    } finally {
+      if (!complete) {
+        Files.deleteIfExists(file);
+      }
+    }
+    spilled.inc();
+    spilledBytes.inc(size);
+    return SpooledRequestBody.spilled(file, size);
+  }
+
+  private static int write(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+    int written = buffer.remaining();
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    return written;
+  }
+
+}
@@ -0,0 +1,95 @@
+package net.opecko.http.upload;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import com.beust.jcommander.Parameter;
+import com.beust.jcommander.Parameters;
+import com.google.common.base.Strings;
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.multibindings.Multibinder;
+import com.yammer.metrics.core.MetricsRegistry;
+
+import net.opecko.http.servlet.FilterDefinition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Guice module for request body handling: the size limit on every request, and the Jersey readers
+ * for {@link SpooledRequestBody} and {@link JsonArrayStream} parameters.
+ * <p>
+ * Install it ahead of other modules contributing filters, so bodies are limited whoever reads
+ * them.
+ */
+@Parameters(separators = "=")
+public class UploadModule extends AbstractModule {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(UploadModule.class);
+
+  @Parameter(names = "--max_request_body_size",
+      description = "Largest request body accepted in bytes (0 = unlimited)")
+  private long maxRequestBodySize = 16L * 1024 * 1024;
+
+  @Parameter(names = "--upload_spill_threshold",
+      description = "Bytes of a spooled request body held in memory before the rest goes to a temporary file")
+  private int uploadSpillThreshold = 1024 * 1024;
+
+  @Parameter(names = "--upload_spill_directory",
+      description = "Directory for spilled request bodies (empty = the system temporary directory)")
+  private String uploadSpillDirectory = "";
+
+  @Override
+  protected void configure() {
+    if (maxRequestBodySize > 0) {
+      LOGGER.info("Request bodies limited to {} bytes", maxRequestBodySize);
+    } else {
+      LOGGER.info("Request bodies not limited");
+    }
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toProvider(RequestBodyLimitFilterDefinitionProvider.class)
+        .in(Scopes.SINGLETON);
+    bind(RequestBodyTooLargeExceptionMapper.class);
+    bind(JsonArrayStreamReader.class);
+  }
+
+  @Provides
+  @Singleton
+  public RequestBodyLimitFilter provideRequestBodyLimitFilter(final MetricsRegistry metricsRegistry) {
+    return new RequestBodyLimitFilter(maxRequestBodySize, metricsRegistry);
+  }
+
+  @Provides
+  @Singleton
+  public SpooledRequestBodyReader provideSpooledRequestBodyReader(final MetricsRegistry metricsRegistry) {
+    Path spillDirectory = Paths.get(
+      Strings.isNullOrEmpty(uploadSpillDirectory) ? System.getProperty("java.io.tmpdir") : uploadSpillDirectory
+    );
+    LOGGER.info("Spooling request bodies over {} bytes to {}", uploadSpillThreshold, spillDirectory);
+    return new SpooledRequestBodyReader(uploadSpillThreshold, spillDirectory, metricsRegistry);
+  }
+
+  private static final class RequestBodyLimitFilterDefinitionProvider implements Provider<FilterDefinition> {
+
+    private final RequestBodyLimitFilter requestBodyLimitFilter;
+
+    @Inject
+    private RequestBodyLimitFilterDefinitionProvider(final RequestBodyLimitFilter requestBodyLimitFilter) {
+      this.requestBodyLimitFilter = requestBodyLimitFilter;
+    }
+
+    @Override
+    public FilterDefinition get() {
+      return new FilterDefinition(requestBodyLimitFilter, "/*");
+    }
+
+  }
+
+}
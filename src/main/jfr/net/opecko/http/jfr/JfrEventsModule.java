@@ -0,0 +1,25 @@
+package net.opecko.http.jfr;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.multibindings.Multibinder;
+
+import net.opecko.http.lifecycle.ServiceTransitionListener;
+import net.opecko.http.servlet.FilterDefinition;
+
+/**
+ * Binds the Flight Recorder event emitters. {@link JfrModule} installs it by name, since it and
+ * everything it binds are only built, and only load, where the {@code jdk.jfr} API exists.
+ */
+final class JfrEventsModule extends AbstractModule {
+
+  @Override
+  protected void configure() {
+    Multibinder.newSetBinder(binder(), FilterDefinition.class)
+        .addBinding()
+        .toInstance(new FilterDefinition(new JfrRequestFilter(), "/*"));
+    Multibinder.newSetBinder(binder(), ServiceTransitionListener.class)
+        .addBinding()
+        .toInstance(new JfrServiceTransitionListener());
+  }
+
+}
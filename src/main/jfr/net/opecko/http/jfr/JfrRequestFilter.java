@@ -0,0 +1,65 @@
+package net.opecko.http.jfr;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.opecko.http.jetty.RequestArrival;
+import net.opecko.http.metrics.RouteResourceFilterFactory;
+
+/**
+ * Emits a {@link RequestEvent} around every request.
+ * <p>
+ * When no recording enables the event, the only cost is the enablement check; fields are filled
+ * in only for events that will be committed.
+ */
+public class JfrRequestFilter implements Filter {
+
+  @Override
+  public void init(final FilterConfig filterConfig) {
+    // nothing to do
+  }
+
+  @Override
+  public void doFilter(
+      final ServletRequest request,
+      final ServletResponse response,
+      final FilterChain chain
+  ) throws IOException, ServletException {
+    RequestEvent event = new RequestEvent();
+    if (!event.isEnabled()) {
+      chain.doFilter(request, response);
+      return;
+    }
+    long queueWaitNanos = RequestArrival.getNanosSinceArrival();
+    event.begin();
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        event.method = httpRequest.getMethod();
+        event.path = httpRequest.getRequestURI();
+        event.route = RouteResourceFilterFactory.getRoute(request);
+        event.status = ((HttpServletResponse) response).getStatus();
+        event.queueWait = TimeUnit.NANOSECONDS.toMillis(queueWaitNanos);
+        event.commit();
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    // nothing to do
+  }
+
+}
@@ -0,0 +1,23 @@
+package net.opecko.http.jfr;
+
+import com.google.common.util.concurrent.Service;
+
+import net.opecko.http.lifecycle.ServiceTransitionListener;
+
+/**
+ * Emits a {@link ServiceTransitionEvent} for every service state transition.
+ */
+public class JfrServiceTransitionListener implements ServiceTransitionListener {
+
+  @Override
+  public void transitioned(final Service service, final Service.State from, final Service.State to) {
+    ServiceTransitionEvent event = new ServiceTransitionEvent();
+    if (event.shouldCommit()) {
+      event.service = service.getClass().getSimpleName();
+      event.from = from.name();
+      event.to = to.name();
+      event.commit();
+    }
+  }
+
+}
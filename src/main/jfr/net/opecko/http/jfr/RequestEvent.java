@@ -0,0 +1,38 @@
+package net.opecko.http.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event spanning the handling of one HTTP request on a server thread.
+ */
+@Name("net.opecko.http.Request")
+@Label("HTTP Request")
+@Category({ "web-stack", "HTTP" })
+@Description("Handling of an HTTP request, from leaving the thread pool queue to the end of the filter chain")
+@StackTrace(false)
+public class RequestEvent extends jdk.jfr.Event {
+
+  @Label("Method")
+  String method;
+
+  @Label("Path")
+  String path;
+
+  @Label("Route")
+  @Description("Jersey route, if the request was served by a resource method")
+  String route;
+
+  @Label("Status")
+  int status;
+
+  @Label("Queue Wait")
+  @Description("Time between the request arriving on its connection and a server thread picking it up")
+  @Timespan(Timespan.MILLISECONDS)
+  long queueWait;
+
+}
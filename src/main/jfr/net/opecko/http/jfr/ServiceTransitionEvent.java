@@ -0,0 +1,26 @@
+package net.opecko.http.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event for a state transition of a managed service.
+ */
+@Name("net.opecko.http.ServiceTransition")
+@Label("Service Transition")
+@Category({ "web-stack", "Lifecycle" })
+@StackTrace(false)
+public class ServiceTransitionEvent extends jdk.jfr.Event {
+
+  @Label("Service")
+  String service;
+
+  @Label("From")
+  String from;
+
+  @Label("To")
+  String to;
+
+}